@@ -0,0 +1,152 @@
+package uk.tw.energy.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.adapter.Json.ReadingsJsonModule;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Times writing a large meter's readings, as {@code /readings/read} does, with reflection and the Java time module
+ * and with the tuned reading serializer, and counts the bytes each allocates. Readings are written as a heap store
+ * hands them out, the same objects every time so their decimals have cached their text, and as an off-heap store
+ * does, rebuilt for every response. Both mappers must write the same bytes. The median of the measured rounds is
+ * reported as JSON.
+ */
+public class ReadingSerializationBenchmark {
+
+    private static final int READINGS = 200_000;
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 30;
+    private static final Instant START = Instant.parse("2023-01-01T00:00:00Z");
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Test
+    public void shouldReportTheSavingsOfTheTunedSerializer() throws IOException {
+        ObjectMapper reflective = mapper();
+        ObjectMapper tuned = mapper().registerModule(new ReadingsJsonModule());
+        List<ElectricityReading> stored = readings();
+        assertThat(tuned.writeValueAsBytes(stored)).isEqualTo(reflective.writeValueAsBytes(stored));
+
+        Map<String, Object> stores = new LinkedHashMap<>();
+        for (boolean rebuilt : new boolean[]{false, true}) {
+            Map<String, Object> mappers = new LinkedHashMap<>();
+            Timing reflectiveTiming = time(reflective, stored, rebuilt);
+            Timing tunedTiming = time(tuned, stored, rebuilt);
+            mappers.put("reflective", reflectiveTiming.toReport());
+            mappers.put("tuned", tunedTiming.toReport());
+            mappers.put("speedUp", round(reflectiveTiming.nanosPerReading / tunedTiming.nanosPerReading));
+            mappers.put("allocationSaved", round(1 - tunedTiming.bytesPerReading / reflectiveTiming.bytesPerReading));
+            stores.put(rebuilt ? "offHeap" : "heap", mappers);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("readings", READINGS);
+        report.put("stores", stores);
+        writeReport(report);
+
+        assertThat(stores).hasSize(2);
+    }
+
+    private static final class Timing {
+
+        private final double nanosPerReading;
+        private final double bytesPerReading;
+
+        private Timing(double nanosPerReading, double bytesPerReading) {
+            this.nanosPerReading = nanosPerReading;
+            this.bytesPerReading = bytesPerReading;
+        }
+
+        private Map<String, Double> toReport() {
+            Map<String, Double> report = new LinkedHashMap<>();
+            report.put("nanosPerReading", round(nanosPerReading));
+            report.put("bytesAllocatedPerReading", round(bytesPerReading));
+            return report;
+        }
+    }
+
+    private static Timing time(ObjectMapper mapper, List<ElectricityReading> stored, boolean rebuilt) throws IOException {
+        long threadId = Thread.currentThread().threadId();
+        long[] nanos = new long[MEASURED_ROUNDS];
+        long[] bytes = new long[MEASURED_ROUNDS];
+        for (int round = 0; round < WARM_UP_ROUNDS + MEASURED_ROUNDS; round++) {
+            List<ElectricityReading> readings = rebuilt ? rebuild(stored) : stored;
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            mapper.writeValue(OutputStream.nullOutputStream(), readings);
+            long elapsed = System.nanoTime() - start;
+            long allocated = THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore;
+            if (round >= WARM_UP_ROUNDS) {
+                nanos[round - WARM_UP_ROUNDS] = elapsed;
+                bytes[round - WARM_UP_ROUNDS] = allocated;
+            }
+        }
+        return new Timing(median(nanos) / READINGS, median(bytes) / READINGS);
+    }
+
+    private static ObjectMapper mapper() {
+        return new ObjectMapper().findAndRegisterModules().configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    }
+
+    // a reading every ten minutes, some of them a few milliseconds off, with up to four decimal places
+    private static List<ElectricityReading> readings() {
+        SplittableRandom random = new SplittableRandom(42);
+        List<ElectricityReading> readings = new ArrayList<>(READINGS);
+        for (int i = 0; i < READINGS; i++) {
+            Instant time = START.plus(Duration.ofMinutes(10L * i)).plusMillis(random.nextInt(4) == 0 ? random.nextInt(1000) : 0);
+            readings.add(new ElectricityReading(time, BigDecimal.valueOf(random.nextInt(100_000), 4)));
+        }
+        return readings;
+    }
+
+    // what an off-heap store hands out: new decimals from their unscaled value and scale, without cached text
+    private static List<ElectricityReading> rebuild(List<ElectricityReading> stored) {
+        List<ElectricityReading> rebuilt = new ArrayList<>(stored.size());
+        for (ElectricityReading reading : stored) {
+            BigDecimal value = reading.getReading();
+            rebuilt.add(new ElectricityReading(reading.getTime(),
+                    BigDecimal.valueOf(value.unscaledValue().longValue(), value.scale())));
+        }
+        return rebuilt;
+    }
+
+    private static double median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static void writeReport(Map<String, Object> report) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File file = new File(System.getProperty("benchmark.reports", "build/reports/benchmark"), "readings-serialization.json");
+        file.getParentFile().mkdirs();
+        mapper.writeValue(file, report);
+        System.out.println(mapper.writeValueAsString(report));
+        System.out.println("Benchmark report written to " + file);
+    }
+}
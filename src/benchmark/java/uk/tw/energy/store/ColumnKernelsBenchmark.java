@@ -0,0 +1,173 @@
+package uk.tw.energy.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Times the scalar and the best available column kernels on their own over columns of growing size, and then as
+ * used by a large meter that keeps receiving readings older than its newest one, which is when the prefix sums are
+ * shifted and rebased: readings just a little late, and readings older than almost everything stored. Each kernel is
+ * compiled before it is timed, and the median of the measured rounds is reported as JSON.
+ */
+public class ColumnKernelsBenchmark {
+
+    private static final int JIT_WARM_UP_CALLS = 50_000;
+    private static final int WARM_UP_ROUNDS = 20;
+    private static final int MEASURED_ROUNDS = 30;
+    private static final int[] COLUMN_SIZES = {10_000, 1_000_000, 8_000_000};
+    private static final int[] METER_SIZES = {100_000, 1_000_000};
+    private static final int LATE_READINGS = 200;
+    private static final Instant START = Instant.parse("2023-01-01T00:00:00Z");
+
+    @Test
+    public void shouldReportTheSpeedUpOfTheBestKernels() throws IOException {
+        List<ColumnKernels> kernels = new ArrayList<>(List.of(ColumnKernels.scalar()));
+        if (ColumnKernels.best() != ColumnKernels.scalar()) {
+            kernels.add(ColumnKernels.best());
+        }
+        kernels.forEach(ColumnKernelsBenchmark::compile);
+
+        Map<String, Object> columns = new LinkedHashMap<>();
+        for (int size : COLUMN_SIZES) {
+            Map<String, Double> nanosPerValue = new LinkedHashMap<>();
+            for (ColumnKernels kernel : kernels) {
+                nanosPerValue.put(kernel.name(), round(timeAdd(kernel, size) / size));
+            }
+            columns.put(String.valueOf(size), withSpeedUp(nanosPerValue));
+        }
+
+        Map<String, Object> meters = new LinkedHashMap<>();
+        for (int size : METER_SIZES) {
+            Map<String, Object> lateness = new LinkedHashMap<>();
+            for (Lateness late : Lateness.values()) {
+                Map<String, Double> microsPerLateReading = new LinkedHashMap<>();
+                for (ColumnKernels kernel : kernels) {
+                    microsPerLateReading.put(kernel.name(), round(timeLateReading(kernel, size, late) / 1000));
+                }
+                lateness.put(late.key, withSpeedUp(microsPerLateReading));
+            }
+            meters.put(String.valueOf(size), lateness);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+        report.put("javaVersion", Runtime.version().toString());
+        report.put("best", ColumnKernels.best().name());
+        report.put("nanosPerValueAdded", columns);
+        report.put("microsPerLateReading", meters);
+        writeReport(report);
+
+        assertThat(columns).hasSize(COLUMN_SIZES.length);
+    }
+
+    private enum Lateness {
+        // a gateway's retry: between the two newest readings
+        RECENT("recent"),
+        // a backfill: between the two oldest readings
+        OLDEST("oldest");
+
+        private final String key;
+
+        Lateness(String key) {
+            this.key = key;
+        }
+    }
+
+    private static void compile(ColumnKernels kernel) {
+        double[] values = new double[256];
+        for (int call = 0; call < JIT_WARM_UP_CALLS; call++) {
+            kernel.add(values, call % 8, values.length, 1.0);
+        }
+    }
+
+    private static double timeAdd(ColumnKernels kernel, int size) {
+        double[] values = new SplittableRandom(42).doubles(size).toArray();
+        long[] nanos = new long[MEASURED_ROUNDS];
+        for (int round = 0; round < WARM_UP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long start = System.nanoTime();
+            kernel.add(values, 0, size, round % 2 == 0 ? 0.5 : -0.5);
+            long elapsed = System.nanoTime() - start;
+            if (round >= WARM_UP_ROUNDS) {
+                nanos[round - WARM_UP_ROUNDS] = elapsed;
+            }
+        }
+        return median(nanos);
+    }
+
+    private static double timeLateReading(ColumnKernels kernel, int size, Lateness lateness) {
+        MeterReadingHistory history = new MeterReadingHistory(Duration.ZERO, kernel);
+        SplittableRandom random = new SplittableRandom(42);
+        List<ElectricityReading> readings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            readings.add(reading(START.plus(Duration.ofMinutes(10L * i)), random));
+        }
+        history.append(readings);
+
+        Instant after = lateness == Lateness.RECENT ? START.plus(Duration.ofMinutes(10L * (size - 2))) : START;
+        int rounds = WARM_UP_ROUNDS + MEASURED_ROUNDS;
+        long[] nanos = new long[MEASURED_ROUNDS];
+        for (int round = 0; round < rounds; round++) {
+            List<ElectricityReading> late = new ArrayList<>(LATE_READINGS);
+            for (int i = 0; i < LATE_READINGS; i++) {
+                late.add(reading(after.plusNanos(1 + (long) round * LATE_READINGS + i), random));
+            }
+            long start = System.nanoTime();
+            history.append(late);
+            long elapsed = System.nanoTime() - start;
+            if (round >= WARM_UP_ROUNDS) {
+                nanos[round - WARM_UP_ROUNDS] = elapsed / LATE_READINGS;
+            }
+        }
+        assertThat(history.size()).isEqualTo(size + rounds * LATE_READINGS);
+        return median(nanos);
+    }
+
+    private static Map<String, Double> withSpeedUp(Map<String, Double> timings) {
+        Map<String, Double> withSpeedUp = new LinkedHashMap<>(timings);
+        if (timings.size() > 1) {
+            double scalar = timings.get(ColumnKernels.scalar().name());
+            double best = timings.get(ColumnKernels.best().name());
+            withSpeedUp.put("speedUp", round(scalar / best));
+        }
+        return withSpeedUp;
+    }
+
+    private static ElectricityReading reading(Instant time, SplittableRandom random) {
+        return new ElectricityReading(time, BigDecimal.valueOf(random.nextInt(10_000), 4));
+    }
+
+    private static double median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+
+    private static void writeReport(Map<String, Object> report) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File file = new File(System.getProperty("benchmark.reports", "build/reports/benchmark"), "column-kernels.json");
+        file.getParentFile().mkdirs();
+        mapper.writeValue(file, report);
+        System.out.println(mapper.writeValueAsString(report));
+        System.out.println("Benchmark report written to " + file);
+    }
+}
@@ -0,0 +1,113 @@
+package uk.tw.energy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+import uk.tw.energy.domain.MeterReadings;
+import uk.tw.energy.store.MeterReadingStore;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ClusterForwardingTest {
+
+    private static final int METERS = 40;
+
+    private static ConfigurableApplicationContext nodeA;
+    private static ConfigurableApplicationContext nodeB;
+    private static String nodeAUrl;
+    private static String nodeBUrl;
+    private final RestTemplate restTemplate = new RestTemplateBuilder().build();
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @BeforeAll
+    public static void startCluster() throws IOException {
+        int portA = freePort();
+        int portB = freePort();
+        nodeAUrl = "http://localhost:" + portA;
+        nodeBUrl = "http://localhost:" + portB;
+        nodeA = startNode(portA, nodeAUrl);
+        nodeB = startNode(portB, nodeBUrl);
+    }
+
+    @AfterAll
+    public static void stopCluster() {
+        nodeA.close();
+        nodeB.close();
+    }
+
+    @Test
+    public void givenReadingsStoredThroughOneNodeShouldReadThemThroughTheOther() throws JsonProcessingException {
+        for (int i = 0; i < METERS; i++) {
+            ResponseEntity<String> stored = restTemplate.postForEntity(nodeAUrl + "/readings/store",
+                    jsonEntity(new MeterReadingsBuilder().setSmartMeterId("cluster-meter-" + i)
+                            .generateElectricityReadings(5, Instant.now())
+                            .build()), String.class);
+            assertThat(stored.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+
+        for (int i = 0; i < METERS; i++) {
+            ResponseEntity<String> readings = restTemplate.getForEntity(nodeBUrl + "/readings/read/cluster-meter-" + i, String.class);
+            assertThat(readings.getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+    }
+
+    @Test
+    public void givenReadingsStoredShouldKeepEachMeterOnOneNodeOnly() throws JsonProcessingException {
+        for (int i = 0; i < METERS; i++) {
+            restTemplate.postForEntity(nodeBUrl + "/readings/store",
+                    jsonEntity(new MeterReadingsBuilder().setSmartMeterId("owned-meter-" + i)
+                            .generateElectricityReadings(5, Instant.now())
+                            .build()), String.class);
+        }
+
+        MeterReadingStore storeOfA = nodeA.getBean(MeterReadingStore.class);
+        MeterReadingStore storeOfB = nodeB.getBean(MeterReadingStore.class);
+        int onA = 0;
+        int onB = 0;
+        for (int i = 0; i < METERS; i++) {
+            boolean storedOnA = storeOfA.find("owned-meter-" + i).isPresent();
+            boolean storedOnB = storeOfB.find("owned-meter-" + i).isPresent();
+            assertThat(storedOnA).isNotEqualTo(storedOnB);
+            onA += storedOnA ? 1 : 0;
+            onB += storedOnB ? 1 : 0;
+        }
+        assertThat(onA).isPositive();
+        assertThat(onB).isPositive();
+    }
+
+    private HttpEntity<String> jsonEntity(MeterReadings meterReadings) throws JsonProcessingException {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return new HttpEntity<>(mapper.findAndRegisterModules().writeValueAsString(meterReadings), headers);
+    }
+
+    private static ConfigurableApplicationContext startNode(int port, String self) {
+        return new SpringApplicationBuilder(App.class).run(
+                "--server.port=" + port,
+                "--management.server.port=0",
+                "--joi.cluster.nodes=" + nodeAUrl + "," + nodeBUrl,
+                "--joi.cluster.self=" + self);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package uk.tw.energy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Latencies and errors of one operation as seen by one client; recorders of all clients are merged for the report, so
+ * recording takes no lock.
+ */
+class LatencyRecorder {
+
+    private long[] latencyNanos = new long[1024];
+    private int count;
+    private long errors;
+
+    void record(long nanos, boolean error) {
+        if (count == latencyNanos.length) {
+            latencyNanos = Arrays.copyOf(latencyNanos, count * 2);
+        }
+        latencyNanos[count++] = nanos;
+        if (error) {
+            errors++;
+        }
+    }
+
+    void merge(LatencyRecorder other) {
+        if (count + other.count > latencyNanos.length) {
+            latencyNanos = Arrays.copyOf(latencyNanos, count + other.count);
+        }
+        System.arraycopy(other.latencyNanos, 0, latencyNanos, count, other.count);
+        count += other.count;
+        errors += other.errors;
+    }
+
+    long requests() {
+        return count;
+    }
+
+    long errors() {
+        return errors;
+    }
+
+    Map<String, Object> summarise(double seconds) {
+        long[] sorted = Arrays.copyOf(latencyNanos, count);
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", count);
+        summary.put("errors", errors);
+        summary.put("errorRate", count == 0 ? 0.0 : (double) errors / count);
+        summary.put("throughputPerSecond", round(count / seconds));
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("mean", count == 0 ? 0.0 : millis(Arrays.stream(sorted).sum() / count));
+        latency.put("p50", percentile(sorted, 0.50));
+        latency.put("p90", percentile(sorted, 0.90));
+        latency.put("p99", percentile(sorted, 0.99));
+        latency.put("p999", percentile(sorted, 0.999));
+        latency.put("max", count == 0 ? 0.0 : millis(sorted[count - 1]));
+        summary.put("latencyMillis", latency);
+        return summary;
+    }
+
+    // nearest-rank percentile
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return millis(sorted[Math.max(rank - 1, 0)]);
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1_000_000.0);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+}
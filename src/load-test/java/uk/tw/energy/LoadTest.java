@@ -0,0 +1,183 @@
+package uk.tw.energy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import uk.tw.energy.Workload.Operation;
+import uk.tw.energy.generator.FleetGenerator;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the application on a synthetic fleet and has many concurrent clients ingest readings and query costs at the
+ * configured mix, then writes throughput, latency percentiles and error rates per operation as JSON. Only the
+ * requests sent after the warm-up count.
+ */
+public class LoadTest {
+
+    private static final Workload WORKLOAD = new Workload();
+    private static final Instant UNTIL = Instant.now().truncatedTo(ChronoUnit.MINUTES);
+
+    private static ConfigurableApplicationContext application;
+    private static String baseUrl;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+    // every ingested reading gets a second of its own after the seeded ones, so none is dropped as a duplicate
+    private final AtomicLong nextReadingSecond = new AtomicLong(UNTIL.getEpochSecond() + 1);
+
+    @BeforeAll
+    public static void startApplication() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        baseUrl = "http://localhost:" + port;
+        application = new SpringApplicationBuilder(App.class).run(
+                "--server.port=" + port,
+                "--management.server.port=0",
+                "--logging.level.root=WARN",
+                "--joi.seed.seed=" + WORKLOAD.seed,
+                "--joi.seed.fleet.meters=" + WORKLOAD.meters,
+                "--joi.seed.fleet.readings-per-meter=" + WORKLOAD.readingsPerMeter,
+                "--joi.seed.fleet.until=" + UNTIL);
+    }
+
+    @AfterAll
+    public static void stopApplication() {
+        application.close();
+    }
+
+    @Test
+    public void shouldSustainTheMixedWorkload() throws Exception {
+        long measureFrom = System.nanoTime() + WORKLOAD.warmUp.toNanos();
+        long measureUntil = measureFrom + WORKLOAD.duration.toNanos();
+        List<Map<Operation, LatencyRecorder>> recordersPerClient = new ArrayList<>();
+        List<Thread> clients = new ArrayList<>();
+        for (int client = 0; client < WORKLOAD.clients; client++) {
+            Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+            WORKLOAD.mix.keySet().forEach(operation -> recorders.put(operation, new LatencyRecorder()));
+            recordersPerClient.add(recorders);
+            SplittableRandom random = new SplittableRandom(WORKLOAD.seed + client);
+            clients.add(Thread.ofVirtual().start(() -> runClient(random, recorders, measureFrom, measureUntil)));
+        }
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        Map<Operation, LatencyRecorder> merged = new EnumMap<>(Operation.class);
+        LatencyRecorder total = new LatencyRecorder();
+        for (Map<Operation, LatencyRecorder> recorders : recordersPerClient) {
+            recorders.forEach((operation, recorder) -> {
+                merged.computeIfAbsent(operation, key -> new LatencyRecorder()).merge(recorder);
+                total.merge(recorder);
+            });
+        }
+        Map<String, Object> report = report(merged, total);
+        writeReport(report);
+
+        assertThat(total.requests()).isPositive();
+        assertThat((double) total.errors() / total.requests()).isLessThanOrEqualTo(WORKLOAD.maxErrorRate);
+    }
+
+    private void runClient(SplittableRandom random, Map<Operation, LatencyRecorder> recorders,
+                           long measureFrom, long measureUntil) {
+        while (true) {
+            Operation operation = WORKLOAD.nextOperation(random);
+            HttpRequest request = request(operation, FleetGenerator.meterId(random.nextInt(WORKLOAD.meters)), random);
+            long start = System.nanoTime();
+            if (start >= measureUntil) {
+                return;
+            }
+            boolean error;
+            try {
+                error = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() >= 400;
+            } catch (IOException e) {
+                error = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (start >= measureFrom) {
+                recorders.get(operation).record(System.nanoTime() - start, error);
+            }
+        }
+    }
+
+    private HttpRequest request(Operation operation, String smartMeterId, SplittableRandom random) {
+        return switch (operation) {
+            case INGEST -> HttpRequest.newBuilder(URI.create(baseUrl + "/readings/store"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(ingestBody(smartMeterId, random)))
+                    .build();
+            case COMPARE_ALL -> get("/price-plans/compare-all/" + smartMeterId);
+            case RECOMMEND -> get("/price-plans/recommend/" + smartMeterId + "?limit=2");
+            case DAILY_COST -> get("/smart-meters/" + smartMeterId + "/daily-cost");
+            case WEEKLY_COST -> get("/smart-meters/" + smartMeterId + "/costs?duration=last-week");
+        };
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build();
+    }
+
+    private String ingestBody(String smartMeterId, SplittableRandom random) {
+        long firstSecond = nextReadingSecond.getAndAdd(WORKLOAD.ingestBatch);
+        StringBuilder body = new StringBuilder("{\"smartMeterId\":\"").append(smartMeterId).append("\",\"electricityReadings\":[");
+        for (int i = 0; i < WORKLOAD.ingestBatch; i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append("{\"time\":\"").append(Instant.ofEpochSecond(firstSecond + i))
+                    .append("\",\"reading\":").append(Math.round(random.nextDouble() * 20_000) / 10_000.0).append('}');
+        }
+        return body.append("]}").toString();
+    }
+
+    private static Map<String, Object> report(Map<Operation, LatencyRecorder> recorders, LatencyRecorder total) {
+        double seconds = WORKLOAD.duration.toNanos() / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("version", System.getProperty("loadTest.version", "unspecified"));
+        report.put("startedAt", UNTIL.toString());
+        report.put("processors", Runtime.getRuntime().availableProcessors());
+        report.put("workload", WORKLOAD.describe());
+        report.put("total", total.summarise(seconds));
+        Map<String, Object> operations = new LinkedHashMap<>();
+        recorders.forEach((operation, recorder) -> operations.put(operation.key, recorder.summarise(seconds)));
+        report.put("operations", operations);
+        return report;
+    }
+
+    private static void writeReport(Map<String, Object> report) throws IOException {
+        ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        File file = new File(System.getProperty("loadTest.report", "build/reports/load-test/load-test-report.json"));
+        file.getParentFile().mkdirs();
+        mapper.writeValue(file, report);
+        System.out.println(mapper.writeValueAsString(report));
+        System.out.println("Load test report written to " + file);
+    }
+}
@@ -0,0 +1,103 @@
+package uk.tw.energy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * What the load test does, read from {@code loadTest.*} system properties so that Gradle project properties of the
+ * same name override the defaults.
+ */
+class Workload {
+
+    enum Operation {
+        INGEST("ingest"),
+        COMPARE_ALL("compare-all"),
+        RECOMMEND("recommend"),
+        DAILY_COST("daily-cost"),
+        WEEKLY_COST("weekly-cost");
+
+        final String key;
+
+        Operation(String key) {
+            this.key = key;
+        }
+
+        static Operation of(String key) {
+            for (Operation operation : values()) {
+                if (operation.key.equals(key)) {
+                    return operation;
+                }
+            }
+            throw new IllegalArgumentException("Unknown operation " + key);
+        }
+    }
+
+    final int clients = Integer.getInteger("loadTest.clients", 64);
+    final int meters = Integer.getInteger("loadTest.meters", 2000);
+    final int readingsPerMeter = Integer.getInteger("loadTest.readingsPerMeter", 1008);
+    final int ingestBatch = Integer.getInteger("loadTest.ingestBatch", 10);
+    final Duration warmUp = Duration.parse(System.getProperty("loadTest.warmUp", "PT10S"));
+    final Duration duration = Duration.parse(System.getProperty("loadTest.duration", "PT30S"));
+    final double maxErrorRate = Double.parseDouble(System.getProperty("loadTest.maxErrorRate", "0.01"));
+    final long seed = Long.getLong("loadTest.seed", 42);
+    final Map<Operation, Integer> mix = parseMix(System.getProperty("loadTest.mix",
+            "ingest=40,compare-all=20,recommend=15,daily-cost=15,weekly-cost=10"));
+
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+
+    Workload() {
+        List<Operation> weighted = new ArrayList<>(mix.keySet());
+        operations = weighted.toArray(new Operation[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+        if (total <= 0) {
+            throw new IllegalArgumentException("loadTest.mix needs at least one positive weight");
+        }
+    }
+
+    Operation nextOperation(SplittableRandom random) {
+        int pick = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (pick < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    Map<String, Object> describe() {
+        Map<String, Object> description = new LinkedHashMap<>();
+        description.put("clients", clients);
+        description.put("meters", meters);
+        description.put("readingsPerMeter", readingsPerMeter);
+        description.put("ingestBatch", ingestBatch);
+        description.put("warmUp", warmUp.toString());
+        description.put("duration", duration.toString());
+        description.put("seed", seed);
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        mix.forEach((operation, weight) -> weights.put(operation.key, weight));
+        description.put("mix", weights);
+        return description;
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] keyAndWeight = entry.trim().split("=");
+            int weight = Integer.parseInt(keyAndWeight[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.of(keyAndWeight[0].trim()), weight);
+            }
+        }
+        return weights;
+    }
+}
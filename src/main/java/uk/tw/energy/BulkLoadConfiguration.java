@@ -0,0 +1,40 @@
+package uk.tw.energy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.tw.energy.adapter.Cluster.MeterRouter;
+import uk.tw.energy.loader.BulkReadingLoader;
+import uk.tw.energy.service.MeterReadingService;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Imports the files listed in {@code joi.bulk-load.files} once the application has started. Files are read from the
+ * node's own disk, so only an operator can point it at one.
+ */
+@Configuration
+@ConditionalOnProperty("joi.bulk-load.files")
+public class BulkLoadConfiguration {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BulkLoadConfiguration.class);
+
+    @Bean
+    public ApplicationRunner bulkLoadRunner(@Value("${joi.bulk-load.files}") List<Path> files,
+                                            @Value("${joi.bulk-load.threads:0}") int threads,
+                                            MeterReadingService meterReadingService, MeterRouter meterRouter) {
+        BulkReadingLoader loader = new BulkReadingLoader(meterReadingService,
+                smartMeterId -> meterRouter.remoteOwnerOf(smartMeterId).isEmpty(),
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+        return arguments -> {
+            for (Path file : files) {
+                LOG.info("Bulk loaded {}", loader.load(file));
+            }
+        };
+    }
+}
@@ -0,0 +1,36 @@
+package uk.tw.energy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.tw.energy.adapter.Cluster.ConsistentHashMeterRouter;
+import uk.tw.energy.adapter.Cluster.MeterForwardingFilter;
+import uk.tw.energy.adapter.Cluster.MeterRouter;
+
+import java.util.List;
+import java.util.Optional;
+
+@Configuration
+public class ClusterConfiguration {
+
+    @Bean
+    public MeterRouter meterRouter(@Value("${joi.cluster.nodes:}") List<String> nodes,
+                                   @Value("${joi.cluster.self:}") String self,
+                                   @Value("${joi.cluster.virtual-nodes:64}") int virtualNodes) {
+        if (nodes.isEmpty()) {
+            return smartMeterId -> Optional.empty();
+        }
+        return new ConsistentHashMeterRouter(nodes, self, virtualNodes);
+    }
+
+    @Bean
+    @ConditionalOnProperty("joi.cluster.nodes")
+    public FilterRegistrationBean<MeterForwardingFilter> meterForwardingFilter(MeterRouter meterRouter,
+                                                                               @Value("${joi.cluster.self:}") String self,
+                                                                               ObjectMapper objectMapper) {
+        return new FilterRegistrationBean<>(new MeterForwardingFilter(meterRouter, self, objectMapper));
+    }
+}
@@ -0,0 +1,24 @@
+package uk.tw.energy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import uk.tw.energy.service.AverageConsumptionModel;
+import uk.tw.energy.service.ConsumptionModel;
+import uk.tw.energy.service.TrapezoidalConsumptionModel;
+
+@Configuration
+public class ConsumptionModelConfiguration {
+
+    @Bean
+    public ConsumptionModel consumptionModel(@Value("${joi.consumption.model:average}") String model) {
+        switch (model) {
+            case "average":
+                return new AverageConsumptionModel();
+            case "trapezoidal":
+                return new TrapezoidalConsumptionModel();
+            default:
+                throw new IllegalArgumentException("Unknown consumption model " + model + ", expected average or trapezoidal");
+        }
+    }
+}
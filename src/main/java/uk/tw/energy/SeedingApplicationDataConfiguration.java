@@ -2,20 +2,31 @@ package uk.tw.energy;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import uk.tw.energy.adapter.Cluster.MeterRouter;
+import uk.tw.energy.adapter.Json.ReadingsJsonModule;
 import uk.tw.energy.domain.ElectricityReading;
 import uk.tw.energy.domain.PricePlan;
 import uk.tw.energy.generator.ElectricityReadingsGenerator;
+import uk.tw.energy.generator.FleetGenerator;
+import uk.tw.energy.store.MeterIdDictionary;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.OffHeapArena;
+import uk.tw.energy.store.ReadingChangeFeed;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import static java.util.Collections.emptyList;
 
@@ -36,17 +47,81 @@ public class SeedingApplicationDataConfiguration {
     }
 
     @Bean
-    public Map<String, List<ElectricityReading>> perMeterElectricityReadings() {
-        final Map<String, List<ElectricityReading>> readings = new HashMap<>();
-        final ElectricityReadingsGenerator electricityReadingsGenerator = new ElectricityReadingsGenerator();
-        smartMeterToPricePlanAccounts()
+    public MeterIdDictionary meterIdDictionary() {
+        return new MeterIdDictionary();
+    }
+
+    @Bean
+    public MeterReadingStore meterReadingStore(@Value("${joi.store.shards:0}") int shards,
+                                               @Value("${joi.consumption.max-gap:PT1H}") Duration maxGap,
+                                               @Value("${joi.seed.seed:0}") long seed,
+                                               @Value("${joi.seed.fleet.meters:0}") int fleetMeters,
+                                               @Value("${joi.seed.fleet.readings-per-meter:1008}") int readingsPerMeter,
+                                               @Value("${joi.seed.fleet.interval:PT10M}") Duration interval,
+                                               @Value("${joi.seed.fleet.until:}") String until,
+                                               @Value("${joi.store.backend:heap}") String backend,
+                                               @Value("${joi.store.off-heap.capacity:1GB}") DataSize offHeapCapacity,
+                                               @Value("${joi.store.off-heap.chunk-size:64MB}") DataSize offHeapChunkSize,
+                                               MeterIdDictionary meterIdDictionary, MeterRouter meterRouter) {
+        final MeterReadingStore meterReadingStore = new MeterReadingStore(
+                shards > 0 ? shards : Runtime.getRuntime().availableProcessors(), maxGap, meterIdDictionary,
+                offHeapArena(backend, offHeapCapacity, offHeapChunkSize));
+        final ElectricityReadingsGenerator electricityReadingsGenerator = new ElectricityReadingsGenerator(seed);
+        // every node generates every meter's readings, so that a seed gives the same readings however the meters are
+        // spread, and keeps those of the meters it owns
+        new TreeMap<>(demoAccounts())
                 .keySet()
-                .forEach(smartMeterId -> readings.put(smartMeterId, electricityReadingsGenerator.generate(20, Instant.now())));
-        return readings;
+                .forEach(smartMeterId -> {
+                    List<ElectricityReading> readings = electricityReadingsGenerator.generate(20, Instant.now());
+                    if (meterRouter.remoteOwnerOf(smartMeterId).isEmpty()) {
+                        meterReadingStore.getOrCreate(smartMeterId).append(readings);
+                    }
+                });
+        if (fleetMeters > 0) {
+            Instant lastReading = !until.isEmpty() ? Instant.parse(until)
+                    : Instant.ofEpochSecond(Instant.now().getEpochSecond() / interval.getSeconds() * interval.getSeconds());
+            new FleetGenerator(seed, fleetMeters, readingsPerMeter, interval, lastReading, Runtime.getRuntime().availableProcessors())
+                    .generate((smartMeterId, readings) -> {
+                        if (meterRouter.remoteOwnerOf(smartMeterId).isEmpty()) {
+                            meterReadingStore.getOrCreate(smartMeterId).append(readings);
+                        }
+                    });
+        }
+        return meterReadingStore;
     }
 
     @Bean
-    public Map<String, String> smartMeterToPricePlanAccounts() {
+    public ReadingChangeFeed readingChangeFeed(@Value("${joi.feed.retained-readings:1000000}") long retainedReadings,
+                                               @Value("${joi.feed.retained-heap:64MB}") DataSize retainedHeap,
+                                               MeterReadingStore meterReadingStore) {
+        return new ReadingChangeFeed(meterReadingStore.getShardCount(), retainedReadings, retainedHeap.toBytes());
+    }
+
+    private static OffHeapArena offHeapArena(String backend, DataSize capacity, DataSize chunkSize) {
+        switch (backend) {
+            case "heap":
+                return null;
+            case "off-heap":
+                return new OffHeapArena(capacity.toBytes(), Math.toIntExact(chunkSize.toBytes()));
+            default:
+                throw new IllegalArgumentException("Unknown store backend " + backend + ", expected heap or off-heap");
+        }
+    }
+
+    /**
+     * The demo meters, plus the meters of the synthetic fleet spread evenly over the price plans.
+     */
+    @Bean
+    public Map<String, String> smartMeterToPricePlanAccounts(@Value("${joi.seed.fleet.meters:0}") int fleetMeters) {
+        final Map<String, String> smartMeterToPricePlanAccounts = demoAccounts();
+        final List<String> pricePlanIds = List.of(MOST_EVIL_PRICE_PLAN_ID, RENEWABLES_PRICE_PLAN_ID, STANDARD_PRICE_PLAN_ID);
+        for (int meter = 0; meter < fleetMeters; meter++) {
+            smartMeterToPricePlanAccounts.put(FleetGenerator.meterId(meter), pricePlanIds.get(meter % pricePlanIds.size()));
+        }
+        return smartMeterToPricePlanAccounts;
+    }
+
+    private static Map<String, String> demoAccounts() {
         final Map<String, String> smartMeterToPricePlanAccounts = new HashMap<>();
         smartMeterToPricePlanAccounts.put("smart-meter-0", MOST_EVIL_PRICE_PLAN_ID);
         smartMeterToPricePlanAccounts.put("smart-meter-1", RENEWABLES_PRICE_PLAN_ID);
@@ -61,6 +136,7 @@ public class SeedingApplicationDataConfiguration {
     public ObjectMapper objectMapper(Jackson2ObjectMapperBuilder builder) {
         ObjectMapper objectMapper = builder.createXmlMapper(false).build();
         objectMapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+        objectMapper.registerModule(new ReadingsJsonModule());
         return objectMapper;
     }
 }
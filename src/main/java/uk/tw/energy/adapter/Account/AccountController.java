@@ -0,0 +1,46 @@
+package uk.tw.energy.adapter.Account;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import uk.tw.energy.domain.PricePlanAssignment;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.PricePlanService;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/accounts")
+public class AccountController {
+
+    private final AccountService accountService;
+    private final PricePlanService pricePlanService;
+
+    public AccountController(AccountService accountService, PricePlanService pricePlanService) {
+        this.accountService = accountService;
+        this.pricePlanService = pricePlanService;
+    }
+
+    @PostMapping("/{smartMeterId}/price-plans")
+    public ResponseEntity<List<PricePlanAssignment>> assignPricePlan(@PathVariable String smartMeterId,
+                                                                     @RequestBody PricePlanAssignment assignment) {
+        if (assignment.getPricePlanId() == null || !pricePlanService.hasPricePlan(assignment.getPricePlanId())) {
+            throw new IllegalArgumentException("Unknown price plan " + assignment.getPricePlanId());
+        }
+        accountService.assignPricePlan(smartMeterId, assignment.getPricePlanId(),
+                assignment.getEffectiveFrom(), assignment.getEffectiveTo());
+        return ResponseEntity.ok(accountService.getPricePlanAssignments(smartMeterId));
+    }
+
+    @GetMapping("/{smartMeterId}/price-plans")
+    public ResponseEntity<List<PricePlanAssignment>> getPricePlanAssignments(@PathVariable String smartMeterId) {
+        List<PricePlanAssignment> assignments = accountService.getPricePlanAssignments(smartMeterId);
+        return assignments.isEmpty()
+                ? ResponseEntity.notFound().build()
+                : ResponseEntity.ok(assignments);
+    }
+}
@@ -0,0 +1,38 @@
+package uk.tw.energy.adapter.Cluster;
+
+import uk.tw.energy.store.MeterHashing;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+
+public class ConsistentHashMeterRouter implements MeterRouter {
+
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+    private final String self;
+
+    public ConsistentHashMeterRouter(List<String> nodes, String self, int virtualNodesPerNode) {
+        if (!nodes.contains(self)) {
+            throw new IllegalArgumentException("Node " + self + " is not part of the cluster " + nodes);
+        }
+        this.self = self;
+        for (String node : nodes) {
+            for (int i = 0; i < virtualNodesPerNode; i++) {
+                ring.put(MeterHashing.hash64(node + "#" + i), node);
+            }
+        }
+    }
+
+    public String ownerOf(String smartMeterId) {
+        Map.Entry<Long, String> owner = ring.ceilingEntry(MeterHashing.hash64(smartMeterId));
+        return owner != null ? owner.getValue() : ring.firstEntry().getValue();
+    }
+
+    @Override
+    public Optional<String> remoteOwnerOf(String smartMeterId) {
+        String owner = ownerOf(smartMeterId);
+        return owner.equals(self) ? Optional.empty() : Optional.of(owner);
+    }
+}
@@ -0,0 +1,346 @@
+package uk.tw.energy.adapter.Cluster;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.UriUtils;
+import uk.tw.energy.adapter.SmartMeter.controller.SmartMeterBatchStream;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Sends requests for smart meters owned by another node to that node and relays its response. A batch request for
+ * smart meters of several nodes is split by owner, this node included, and the lines of every part are relayed as they
+ * arrive.
+ */
+public class MeterForwardingFilter extends OncePerRequestFilter {
+
+    public static final String FORWARDED_HEADER = "X-Joi-Forwarded";
+    private static final String STORE_PATH = "/readings/store";
+    private static final Set<String> BATCH_PATHS = Set.of(
+            "/price-plans/compare-all", "/price-plans/recommend", "/smart-meters/costs");
+    private static final String APPLICATION_NDJSON = "application/x-ndjson";
+    private static final List<Pattern> METER_PATHS = List.of(
+            Pattern.compile("^/readings/(?:read|peak|load-profile)/([^/]+)$"),
+            Pattern.compile("^/price-plans/(?:compare-all|recommend)/([^/]+)$"),
+            Pattern.compile("^/smart-meters/([^/]+)/[^/]+$"),
+            Pattern.compile("^/accounts/([^/]+)/price-plans$"));
+    private static final List<String> FORWARDED_REQUEST_HEADERS = List.of(
+            "Content-Type", "Accept", "If-None-Match", "If-Modified-Since");
+    private static final List<String> RELAYED_RESPONSE_HEADERS = List.of(
+            "Content-Type", "ETag", "Last-Modified");
+
+    private final MeterRouter meterRouter;
+    private final String self;
+    private final ObjectMapper objectMapper;
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    /**
+     * @param self the base URL of this node, which answers for its own part of a batch split between nodes
+     */
+    public MeterForwardingFilter(MeterRouter meterRouter, String self, ObjectMapper objectMapper) {
+        this.meterRouter = meterRouter;
+        this.self = self;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (request.getHeader(FORWARDED_HEADER) != null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        byte[] body = null;
+        String smartMeterId;
+        if ("POST".equals(request.getMethod())) {
+            body = request.getInputStream().readAllBytes();
+            request = new CachedBodyRequest(request, body);
+        }
+        if (body != null && BATCH_PATHS.contains(path)) {
+            ObjectNode batch = batchOf(body);
+            Map<String, List<String>> smartMeterIdsByOwner = batch == null ? Map.of() : smartMeterIdsByOwner(batch);
+            if (smartMeterIdsByOwner.size() > 1) {
+                forwardBatch(smartMeterIdsByOwner, batch, request, response);
+                return;
+            }
+            smartMeterId = smartMeterIdsByOwner.isEmpty() ? null : smartMeterIdsByOwner.values().iterator().next().get(0);
+        } else if (STORE_PATH.equals(path)) {
+            smartMeterId = body == null ? null : smartMeterIdOf(body);
+        } else {
+            smartMeterId = smartMeterIdOf(path);
+        }
+
+        Optional<String> owner = smartMeterId == null ? Optional.empty() : meterRouter.remoteOwnerOf(smartMeterId);
+        if (owner.isEmpty()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        forward(owner.get(), request, body, response);
+    }
+
+    private String smartMeterIdOf(byte[] body) {
+        try {
+            return objectMapper.readTree(body).path("smartMeterId").asText(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // a batch that does not list its smart meters is left for the controller to turn away
+    private ObjectNode batchOf(byte[] body) {
+        try {
+            JsonNode batch = objectMapper.readTree(body);
+            if (batch instanceof ObjectNode && batch.path("smartMeterIds").isArray() && !batch.path("smartMeterIds").isEmpty()) {
+                return (ObjectNode) batch;
+            }
+        } catch (IOException e) {
+            // not JSON
+        }
+        return null;
+    }
+
+    // the distinct smart meters of the batch by the node that owns them, in the order they were asked for; none when
+    // the batch is one the controller turns away, so that it is turned away whole
+    private Map<String, List<String>> smartMeterIdsByOwner(ObjectNode batch) {
+        Map<String, List<String>> smartMeterIdsByOwner = new LinkedHashMap<>();
+        Set<String> seen = new HashSet<>();
+        for (JsonNode smartMeterId : batch.path("smartMeterIds")) {
+            if (!smartMeterId.isTextual() || smartMeterId.asText().isEmpty()) {
+                return Map.of();
+            }
+            if (seen.add(smartMeterId.asText())) {
+                if (seen.size() > SmartMeterBatchStream.MAX_SMART_METERS) {
+                    return Map.of();
+                }
+                String owner = meterRouter.remoteOwnerOf(smartMeterId.asText()).orElse(self);
+                smartMeterIdsByOwner.computeIfAbsent(owner, node -> new ArrayList<>()).add(smartMeterId.asText());
+            }
+        }
+        return smartMeterIdsByOwner;
+    }
+
+    private static String smartMeterIdOf(String path) {
+        for (Pattern meterPath : METER_PATHS) {
+            Matcher matcher = meterPath.matcher(path);
+            if (matcher.matches()) {
+                return UriUtils.decode(matcher.group(1), StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    private static HttpRequest.Builder forwardedRequest(String owner, HttpServletRequest request, byte[] body) {
+        String query = request.getQueryString();
+        HttpRequest.Builder forwarded = HttpRequest.newBuilder(
+                        URI.create(owner + request.getRequestURI() + (query != null ? "?" + query : "")))
+                .header(FORWARDED_HEADER, "true")
+                .method(request.getMethod(), body == null
+                        ? HttpRequest.BodyPublishers.noBody()
+                        : HttpRequest.BodyPublishers.ofByteArray(body));
+        for (String header : FORWARDED_REQUEST_HEADERS) {
+            String value = request.getHeader(header);
+            if (value != null) {
+                forwarded.header(header, value);
+            }
+        }
+        return forwarded;
+    }
+
+    private void forward(String owner, HttpServletRequest request, byte[] body, HttpServletResponse response)
+            throws IOException {
+        HttpResponse<InputStream> ownerResponse;
+        try {
+            ownerResponse = httpClient.send(forwardedRequest(owner, request, body).build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException e) {
+            response.sendError(HttpStatus.BAD_GATEWAY.value(), "Owner node " + owner + " is unreachable");
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value());
+            return;
+        }
+
+        response.setStatus(ownerResponse.statusCode());
+        for (String header : RELAYED_RESPONSE_HEADERS) {
+            ownerResponse.headers().firstValue(header).ifPresent(value -> response.setHeader(header, value));
+        }
+        // relayed as it arrives so that event streams reach the client event by event
+        try (InputStream ownerBody = ownerResponse.body()) {
+            OutputStream relayed = response.getOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int read = ownerBody.read(buffer); read != -1; read = ownerBody.read(buffer)) {
+                relayed.write(buffer, 0, read);
+                relayed.flush();
+            }
+        }
+    }
+
+    // the parts go to their owners at once, each on a thread of its own; whatever a part leaves unanswered, because its
+    // owner failed or could not be reached, gets a failure line per smart meter as a single request would have
+    private void forwardBatch(Map<String, List<String>> smartMeterIdsByOwner, ObjectNode batch, HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(APPLICATION_NDJSON);
+        OutputStream relayed = response.getOutputStream();
+        try (ExecutorService parts = Executors.newVirtualThreadPerTaskExecutor()) {
+            smartMeterIdsByOwner.forEach((owner, smartMeterIds) ->
+                    parts.execute(() -> forwardBatchPart(owner, smartMeterIds, batch, request, relayed)));
+        }
+    }
+
+    private void forwardBatchPart(String owner, List<String> smartMeterIds, ObjectNode batch, HttpServletRequest request,
+                                  OutputStream relayed) {
+        Set<String> unanswered = new LinkedHashSet<>(smartMeterIds);
+        HttpStatus failure = HttpStatus.BAD_GATEWAY;
+        String error = "Owner node " + owner + " is unreachable";
+        try {
+            ObjectNode part = batch.deepCopy();
+            part.set("smartMeterIds", objectMapper.valueToTree(smartMeterIds));
+            HttpResponse<Stream<String>> ownerResponse = httpClient.send(
+                    forwardedRequest(owner, request, objectMapper.writeValueAsBytes(part)).build(),
+                    HttpResponse.BodyHandlers.ofLines());
+            try (Stream<String> lines = ownerResponse.body()) {
+                if (ownerResponse.statusCode() != HttpStatus.OK.value()) {
+                    error = "Owner node " + owner + " answered " + ownerResponse.statusCode();
+                } else {
+                    lines.filter(line -> !line.isBlank()).forEach(line -> {
+                        writeLine(relayed, line);
+                        unanswered.remove(smartMeterIdOfLine(line));
+                    });
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // the owner, or the client, went away; the rest of the part is answered below if the client is still there
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure = HttpStatus.SERVICE_UNAVAILABLE;
+            error = "Interrupted while waiting for owner node " + owner;
+        }
+        try {
+            for (String smartMeterId : unanswered) {
+                Map<String, Object> line = new LinkedHashMap<>();
+                line.put("smartMeterId", smartMeterId);
+                line.put("status", failure.value());
+                line.put("error", error);
+                writeLine(relayed, objectMapper.writeValueAsString(line));
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // the client went away
+        }
+    }
+
+    private String smartMeterIdOfLine(String line) {
+        try {
+            return objectMapper.readTree(line).path("smartMeterId").asText(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void writeLine(OutputStream relayed, String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        synchronized (relayed) {
+            try {
+                relayed.write(bytes);
+                relayed.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private static class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream bodyStream = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return bodyStream.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // the whole body is already in memory, so it is ready at once and the listener is called straight away
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    if (readListener == null) {
+                        throw new NullPointerException("readListener");
+                    }
+                    try {
+                        if (!isFinished()) {
+                            readListener.onDataAvailable();
+                        }
+                        if (isFinished()) {
+                            readListener.onAllDataRead();
+                        }
+                    } catch (IOException | RuntimeException e) {
+                        readListener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return bodyStream.read();
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) {
+                    return bodyStream.read(buffer, offset, length);
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package uk.tw.energy.adapter.Cluster;
+
+import java.util.Optional;
+
+public interface MeterRouter {
+
+    /**
+     * @return the base URL of the node that owns the smart meter, or empty when this node owns it
+     */
+    Optional<String> remoteOwnerOf(String smartMeterId);
+}
@@ -0,0 +1,67 @@
+package uk.tw.energy.adapter.Fleet;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import uk.tw.energy.adapter.Fleet.dto.response.FleetAggregateResponse;
+import uk.tw.energy.adapter.Fleet.dto.response.FleetLoadProfileResponse;
+import uk.tw.energy.adapter.SmartMeter.controller.MeterReadingController;
+import uk.tw.energy.domain.FleetAggregate;
+import uk.tw.energy.service.FleetAggregateService;
+
+import java.time.Instant;
+import java.util.List;
+
+@RestController
+@RequestMapping("/fleet")
+public class FleetAggregateController {
+
+    private final FleetAggregateService fleetAggregateService;
+
+    public FleetAggregateController(FleetAggregateService fleetAggregateService) {
+        this.fleetAggregateService = fleetAggregateService;
+    }
+
+    @GetMapping("/costs")
+    public ResponseEntity<FleetAggregateResponse> getFleetCosts(
+            @RequestParam(value = "groupBy", defaultValue = "price-plan") String groupBy,
+            @RequestParam(value = "from")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            Instant from,
+            @RequestParam(value = "to")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            Instant to
+    ) {
+        List<FleetAggregate> groups = fleetAggregateService.aggregate(groupingOf(groupBy), from, to);
+        return ResponseEntity.ok(FleetAggregateResponse.builder()
+                .groupBy(groupBy)
+                .from(from)
+                .to(to)
+                .groups(groups)
+                .build());
+    }
+
+    @GetMapping("/load-profile")
+    public ResponseEntity<FleetLoadProfileResponse> getFleetLoadProfile(
+            @RequestParam(value = "quantiles", defaultValue = MeterReadingController.DEFAULT_QUANTILES) List<Double> quantiles
+    ) {
+        return ResponseEntity.ok(FleetLoadProfileResponse.builder()
+                .quantiles(quantiles)
+                .hours(fleetAggregateService.loadProfile().describe(quantiles))
+                .build());
+    }
+
+    private static FleetAggregateService.Grouping groupingOf(String groupBy) {
+        switch (groupBy) {
+            case "price-plan":
+                return FleetAggregateService.Grouping.PRICE_PLAN;
+            case "supplier":
+                return FleetAggregateService.Grouping.SUPPLIER;
+            default:
+                throw new IllegalArgumentException("groupBy must be price-plan or supplier");
+        }
+    }
+}
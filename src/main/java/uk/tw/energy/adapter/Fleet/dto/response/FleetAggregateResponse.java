@@ -0,0 +1,17 @@
+package uk.tw.energy.adapter.Fleet.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import uk.tw.energy.domain.FleetAggregate;
+
+import java.time.Instant;
+import java.util.List;
+
+@Builder
+@Getter
+public class FleetAggregateResponse {
+    private String groupBy;
+    private Instant from;
+    private Instant to;
+    private List<FleetAggregate> groups;
+}
@@ -0,0 +1,14 @@
+package uk.tw.energy.adapter.Fleet.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import uk.tw.energy.domain.LoadProfileHour;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class FleetLoadProfileResponse {
+    private List<Double> quantiles;
+    private List<LoadProfileHour> hours;
+}
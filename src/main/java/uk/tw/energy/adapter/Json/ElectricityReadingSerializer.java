@@ -0,0 +1,171 @@
+package uk.tw.energy.adapter.Json;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Writes a reading as {@code {"time":"2020-11-29T08:00:00Z","reading":0.0503}}, exactly what reflection and the
+ * Java time module write with dates as ISO-8601 strings, but without going through a {@code DateTimeFormatter} or
+ * building a string for either value: the time and the reading are formatted into a small char array, which the
+ * generator copies straight into its output. The array is made per reading rather than kept per thread, as requests
+ * run on short-lived virtual threads that would each make their own anyway. Times after 9999 or before 1970 and
+ * readings that print in scientific notation are rare enough to be left to {@link Instant#toString()} and the
+ * generator.
+ */
+public class ElectricityReadingSerializer extends StdSerializer<ElectricityReading> {
+
+    static final int BUFFER_LENGTH = 32;
+
+    private static final long LAST_FAST_EPOCH_SECOND = 253_402_300_799L; // 9999-12-31T23:59:59Z
+    private static final int MAX_FAST_SCALE = 18;
+
+    private static final long[] TENS = new long[MAX_FAST_SCALE + 1];
+
+    static {
+        TENS[0] = 1;
+        for (int i = 1; i < TENS.length; i++) {
+            TENS[i] = TENS[i - 1] * 10;
+        }
+    }
+
+    public ElectricityReadingSerializer() {
+        super(ElectricityReading.class);
+    }
+
+    @Override
+    public void serialize(ElectricityReading electricityReading, JsonGenerator generator, SerializerProvider provider)
+            throws IOException {
+        // shared by both values, as the generator copies what it is handed before the next value is formatted
+        char[] buffer = new char[BUFFER_LENGTH];
+        generator.writeStartObject(electricityReading);
+        generator.writeFieldName("time");
+        Instant time = electricityReading.getTime();
+        if (time == null) {
+            generator.writeNull();
+        } else {
+            int length = formatInstant(time, buffer);
+            if (length < 0) {
+                generator.writeString(time.toString());
+            } else {
+                generator.writeString(buffer, 0, length);
+            }
+        }
+        generator.writeFieldName("reading");
+        BigDecimal reading = electricityReading.getReading();
+        if (reading == null) {
+            generator.writeNull();
+        } else {
+            int length = formatDecimal(reading, buffer);
+            if (length < 0) {
+                generator.writeNumber(reading);
+            } else {
+                generator.writeNumber(buffer, 0, length);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * @return the length of {@code time} written to {@code buffer} as {@link java.time.format.DateTimeFormatter#ISO_INSTANT}
+     * would, with the fraction of a second in groups of three digits, or -1 when it is outside 1970 to 9999
+     */
+    static int formatInstant(Instant time, char[] buffer) {
+        long epochSecond = time.getEpochSecond();
+        if (epochSecond < 0 || epochSecond > LAST_FAST_EPOCH_SECOND) {
+            return -1;
+        }
+        int secondOfDay = (int) (epochSecond % 86_400);
+        // civil date from days since the epoch, in 400-year eras starting on 1 March
+        long days = epochSecond / 86_400 + 719_468;
+        long era = days / 146_097;
+        int dayOfEra = (int) (days - era * 146_097);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        int year = (int) (yearOfEra + era * 400) + (month <= 2 ? 1 : 0);
+
+        writeDigits(buffer, 0, year, 4);
+        buffer[4] = '-';
+        writeDigits(buffer, 5, month, 2);
+        buffer[7] = '-';
+        writeDigits(buffer, 8, day, 2);
+        buffer[10] = 'T';
+        writeDigits(buffer, 11, secondOfDay / 3600, 2);
+        buffer[13] = ':';
+        writeDigits(buffer, 14, secondOfDay / 60 % 60, 2);
+        buffer[16] = ':';
+        writeDigits(buffer, 17, secondOfDay % 60, 2);
+        int length = 19;
+        int nano = time.getNano();
+        if (nano != 0) {
+            buffer[length++] = '.';
+            if (nano % 1_000_000 == 0) {
+                writeDigits(buffer, length, nano / 1_000_000, 3);
+                length += 3;
+            } else if (nano % 1000 == 0) {
+                writeDigits(buffer, length, nano / 1000, 6);
+                length += 6;
+            } else {
+                writeDigits(buffer, length, nano, 9);
+                length += 9;
+            }
+        }
+        buffer[length++] = 'Z';
+        return length;
+    }
+
+    /**
+     * @return the length of {@code value} written to {@code buffer} as {@link BigDecimal#toString()} would, or -1
+     * when that would be scientific notation or the unscaled value does not fit in a long
+     */
+    static int formatDecimal(BigDecimal value, char[] buffer) {
+        int scale = value.scale();
+        int precision = value.precision();
+        // toString switches to scientific notation for negative scales and below an adjusted exponent of -6
+        if (scale < 0 || scale > MAX_FAST_SCALE || precision > MAX_FAST_SCALE || precision - scale - 1 < -6) {
+            return -1;
+        }
+        long unscaled = value.unscaledValue().longValue();
+        int length = 0;
+        if (unscaled < 0) {
+            buffer[length++] = '-';
+            unscaled = -unscaled;
+        }
+        if (scale == 0) {
+            writeDigits(buffer, length, unscaled, precision);
+            return length + precision;
+        }
+        if (precision <= scale) {
+            buffer[length++] = '0';
+            buffer[length++] = '.';
+            for (int zero = precision; zero < scale; zero++) {
+                buffer[length++] = '0';
+            }
+            writeDigits(buffer, length, unscaled, precision);
+            return length + precision;
+        }
+        long power = TENS[scale];
+        int integerDigits = precision - scale;
+        writeDigits(buffer, length, unscaled / power, integerDigits);
+        length += integerDigits;
+        buffer[length++] = '.';
+        writeDigits(buffer, length, unscaled % power, scale);
+        return length + scale;
+    }
+
+    // the last `digits` decimal digits of the value, zero-padded on the left
+    private static void writeDigits(char[] buffer, int at, long value, int digits) {
+        for (int i = at + digits - 1; i >= at; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+    }
+}
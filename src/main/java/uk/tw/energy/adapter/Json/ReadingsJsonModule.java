@@ -0,0 +1,15 @@
+package uk.tw.energy.adapter.Json;
+
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import uk.tw.energy.domain.ElectricityReading;
+
+/**
+ * The serializers of the types that make up the largest responses, which leave the shape of the JSON as it was.
+ */
+public class ReadingsJsonModule extends SimpleModule {
+
+    public ReadingsJsonModule() {
+        super("joi-readings");
+        addSerializer(ElectricityReading.class, new ElectricityReadingSerializer());
+    }
+}
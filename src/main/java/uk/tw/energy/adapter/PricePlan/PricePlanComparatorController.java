@@ -1,20 +1,34 @@
 package uk.tw.energy.adapter.PricePlan;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import uk.tw.energy.adapter.SmartMeter.controller.SmartMeterBatchStream;
+import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundException;
+import uk.tw.energy.adapter.SmartMeter.dto.request.SmartMeterBatchRequest;
+import uk.tw.energy.domain.MeterVersion;
 import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.CostComputationExecutor;
+import uk.tw.energy.service.MeterVersionService;
 import uk.tw.energy.service.PricePlanService;
+import uk.tw.energy.store.MeterIdDictionary;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/price-plans")
@@ -22,19 +36,37 @@ public class PricePlanComparatorController {
 
     public final static String PRICE_PLAN_ID_KEY = "pricePlanId";
     public final static String PRICE_PLAN_COMPARISONS_KEY = "pricePlanComparisons";
+    public final static String SMART_METER_ID_KEY = "smartMeterId";
+    public final static String RECOMMENDATIONS_KEY = "recommendations";
     private final PricePlanService pricePlanService;
     private final AccountService accountService;
+    private final CostComputationExecutor costComputationExecutor;
+    private final MeterVersionService meterVersionService;
+    private final MeterIdDictionary meterIds;
+    private final ObjectMapper objectMapper;
 
-    public PricePlanComparatorController(PricePlanService pricePlanService, AccountService accountService) {
+    public PricePlanComparatorController(PricePlanService pricePlanService, AccountService accountService,
+                                         CostComputationExecutor costComputationExecutor,
+                                         MeterVersionService meterVersionService, MeterIdDictionary meterIds,
+                                         ObjectMapper objectMapper) {
         this.pricePlanService = pricePlanService;
         this.accountService = accountService;
+        this.costComputationExecutor = costComputationExecutor;
+        this.meterVersionService = meterVersionService;
+        this.meterIds = meterIds;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/compare-all/{smartMeterId}")
-    public ResponseEntity<Map<String, Object>> calculatedCostForEachPricePlan(@PathVariable String smartMeterId) {
-        String pricePlanId = accountService.getPricePlanIdForSmartMeterId(smartMeterId);
-        Optional<Map<String, BigDecimal>> costsForPricePlans =
-                pricePlanService.getCostOfElectricityReadingsForEachPricePlan(smartMeterId);
+    public ResponseEntity<Map<String, Object>> calculatedCostForEachPricePlan(@PathVariable String smartMeterId,
+                                                                              WebRequest request) {
+        int meterHandle = meterIds.handleOf(smartMeterId);
+        Optional<MeterVersion> version = meterVersionService.getCostsVersion(meterHandle);
+        if (isNotModified(version, request)) {
+            return null;
+        }
+        String pricePlanId = accountService.getPricePlanIdForSmartMeterId(meterHandle);
+        Optional<Map<String, BigDecimal>> costsForPricePlans = costsForEachPricePlan(smartMeterId, meterHandle, version);
 
         if (costsForPricePlans.isEmpty()) {
             return ResponseEntity.notFound().build();
@@ -49,21 +81,76 @@ public class PricePlanComparatorController {
 
     @GetMapping("/recommend/{smartMeterId}")
     public ResponseEntity<List<Map.Entry<String, BigDecimal>>> recommendCheapestPricePlans(@PathVariable String smartMeterId,
-                                                                                           @RequestParam(value = "limit", required = false) Integer limit) {
-        Optional<Map<String, BigDecimal>> consumptionsForPricePlans =
-                pricePlanService.getCostOfElectricityReadingsForEachPricePlan(smartMeterId);
+                                                                                           @RequestParam(value = "limit", required = false) Integer limit,
+                                                                                           WebRequest request) {
+        int meterHandle = meterIds.handleOf(smartMeterId);
+        Optional<MeterVersion> version = meterVersionService.getCostsVersion(meterHandle);
+        if (isNotModified(version, request)) {
+            return null;
+        }
+        Optional<Map<String, BigDecimal>> consumptionsForPricePlans = costsForEachPricePlan(smartMeterId, meterHandle, version);
 
         if (consumptionsForPricePlans.isEmpty()) {
             return ResponseEntity.notFound().build();
         }
 
-        List<Map.Entry<String, BigDecimal>> recommendations = new ArrayList<>(consumptionsForPricePlans.get().entrySet());
+        return ResponseEntity.ok(cheapestFirst(consumptionsForPricePlans.get(), limit));
+    }
+
+    @PostMapping("/compare-all")
+    public ResponseEntity<StreamingResponseBody> calculatedCostForEachPricePlanOfEachMeter(
+            @RequestBody SmartMeterBatchRequest batchRequest) {
+        return SmartMeterBatchStream.stream(SmartMeterBatchStream.smartMeterIdsOf(batchRequest), smartMeterId -> {
+            int meterHandle = meterIds.handleOf(smartMeterId);
+            Map<String, BigDecimal> costsForPricePlans = pricePlanService
+                    .getCostOfElectricityReadingsForEachPricePlan(meterHandle)
+                    .orElseThrow(ReadingsNotFoundException::new);
+            Map<String, Object> pricePlanComparisons = new LinkedHashMap<>();
+            pricePlanComparisons.put(SMART_METER_ID_KEY, smartMeterId);
+            pricePlanComparisons.put(PRICE_PLAN_ID_KEY, accountService.getPricePlanIdForSmartMeterId(meterHandle));
+            pricePlanComparisons.put(PRICE_PLAN_COMPARISONS_KEY, costsForPricePlans);
+            return pricePlanComparisons;
+        }, costComputationExecutor, objectMapper);
+    }
+
+    @PostMapping("/recommend")
+    public ResponseEntity<StreamingResponseBody> recommendCheapestPricePlansForEachMeter(
+            @RequestBody SmartMeterBatchRequest batchRequest,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        return SmartMeterBatchStream.stream(SmartMeterBatchStream.smartMeterIdsOf(batchRequest), smartMeterId -> {
+            Map<String, BigDecimal> consumptionsForPricePlans = pricePlanService
+                    .getCostOfElectricityReadingsForEachPricePlan(meterIds.handleOf(smartMeterId))
+                    .orElseThrow(ReadingsNotFoundException::new);
+            Map<String, Object> recommendations = new LinkedHashMap<>();
+            recommendations.put(SMART_METER_ID_KEY, smartMeterId);
+            recommendations.put(RECOMMENDATIONS_KEY, cheapestFirst(consumptionsForPricePlans, limit));
+            return recommendations;
+        }, costComputationExecutor, objectMapper);
+    }
+
+    private static List<Map.Entry<String, BigDecimal>> cheapestFirst(Map<String, BigDecimal> costsForPricePlans,
+                                                                    Integer limit) {
+        List<Map.Entry<String, BigDecimal>> recommendations = new ArrayList<>(costsForPricePlans.entrySet());
         recommendations.sort(Map.Entry.comparingByValue());
 
         if (limit != null && limit < recommendations.size()) {
             recommendations = recommendations.subList(0, limit);
         }
+        return recommendations;
+    }
+
+    // requests for the same version of the meter's data share one computation; comparing and recommending included
+    private Optional<Map<String, BigDecimal>> costsForEachPricePlan(String smartMeterId, int meterHandle,
+                                                                    Optional<MeterVersion> version) {
+        Supplier<Optional<Map<String, BigDecimal>>> costs =
+                () -> pricePlanService.getCostOfElectricityReadingsForEachPricePlan(meterHandle);
+        return version.isPresent()
+                ? costComputationExecutor.compute("price-plan-costs/" + smartMeterId + "/" + version.get().getTag(), costs)
+                : costComputationExecutor.compute(costs);
+    }
 
-        return ResponseEntity.ok(recommendations);
+    private static boolean isNotModified(Optional<MeterVersion> version, WebRequest request) {
+        return version.isPresent()
+                && request.checkNotModified(version.get().getTag(), version.get().getLastModified().toEpochMilli());
     }
 }
@@ -0,0 +1,85 @@
+package uk.tw.energy.adapter.PricePlan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import uk.tw.energy.adapter.PricePlan.dto.request.TariffSimulationRequest;
+import uk.tw.energy.domain.FleetCost;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.service.TariffSimulationService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.emptyList;
+
+@RestController
+@RequestMapping("/price-plans")
+public class TariffSimulationController {
+
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final TariffSimulationService tariffSimulationService;
+    private final ObjectMapper objectMapper;
+
+    public TariffSimulationController(TariffSimulationService tariffSimulationService, ObjectMapper objectMapper) {
+        this.tariffSimulationService = tariffSimulationService;
+        this.objectMapper = objectMapper;
+    }
+
+    @PostMapping("/simulate")
+    public ResponseEntity<StreamingResponseBody> simulate(@RequestBody TariffSimulationRequest simulationRequest) {
+        List<PricePlan> candidatePricePlans = simulationRequest.getPricePlans() == null ? emptyList()
+                : simulationRequest.getPricePlans().stream().map(TariffSimulationController::toPricePlan).collect(Collectors.toList());
+        tariffSimulationService.checkCandidates(candidatePricePlans);
+
+        StreamingResponseBody body = outputStream -> {
+            try {
+                Map<String, FleetCost> fleet = tariffSimulationService.simulate(candidatePricePlans,
+                        meterCost -> writeLine(outputStream, meterCost));
+                writeLine(outputStream, Map.of("fleet", fleet));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+    }
+
+    private void writeLine(OutputStream outputStream, Object line) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(line));
+            outputStream.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static PricePlan toPricePlan(TariffSimulationRequest.CandidatePricePlan candidate) {
+        List<PricePlan.PeakTimeMultiplier> peakTimeMultipliers = candidate.getPeakTimeMultipliers() == null ? emptyList()
+                : candidate.getPeakTimeMultipliers().stream()
+                .map(TariffSimulationController::toPeakTimeMultiplier)
+                .collect(Collectors.toList());
+        List<PricePlan.ConsumptionBand> consumptionBands = candidate.getConsumptionBands() == null ? emptyList()
+                : candidate.getConsumptionBands().stream()
+                .map(band -> new PricePlan.ConsumptionBand(band.getUpToKwh(), band.getUnitRate()))
+                .collect(Collectors.toList());
+        return new PricePlan(candidate.getPlanName(), candidate.getEnergySupplier(), candidate.getUnitRate(), peakTimeMultipliers,
+                consumptionBands);
+    }
+
+    private static PricePlan.PeakTimeMultiplier toPeakTimeMultiplier(TariffSimulationRequest.PeakTimeMultiplier multiplier) {
+        if (multiplier.getDayOfWeek() == null || multiplier.getMultiplier() == null) {
+            throw new IllegalArgumentException("A peak time multiplier needs a day of week and a multiplier");
+        }
+        return new PricePlan.PeakTimeMultiplier(multiplier.getDayOfWeek(), multiplier.getMultiplier());
+    }
+}
@@ -0,0 +1,33 @@
+package uk.tw.energy.adapter.PricePlan.dto.request;
+
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.util.List;
+
+@Getter
+public class TariffSimulationRequest {
+    private List<CandidatePricePlan> pricePlans;
+
+    @Getter
+    public static class CandidatePricePlan {
+        private String planName;
+        private String energySupplier;
+        private BigDecimal unitRate;
+        private List<PeakTimeMultiplier> peakTimeMultipliers;
+        private List<ConsumptionBand> consumptionBands;
+    }
+
+    @Getter
+    public static class PeakTimeMultiplier {
+        private DayOfWeek dayOfWeek;
+        private BigDecimal multiplier;
+    }
+
+    @Getter
+    public static class ConsumptionBand {
+        private BigDecimal upToKwh;
+        private BigDecimal unitRate;
+    }
+}
@@ -0,0 +1,46 @@
+package uk.tw.energy.adapter.SmartMeter.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import uk.tw.energy.service.LiveCostService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/smart-meters")
+public class LiveCostController {
+
+    private final LiveCostService liveCostService;
+    private final Duration timeout;
+
+    public LiveCostController(LiveCostService liveCostService,
+                              @Value("${joi.live.timeout:PT30M}") Duration timeout) {
+        this.liveCostService = liveCostService;
+        this.timeout = timeout;
+    }
+
+    @GetMapping(value = "/{smartMeterId}/live-costs", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToLiveCosts(@PathVariable("smartMeterId") String smartMeterId) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Runnable unsubscribe = liveCostService.subscribe(smartMeterId, liveCost -> {
+            try {
+                emitter.send(SseEmitter.event().name("cost").data(liveCost, MediaType.APPLICATION_JSON));
+            } catch (IOException e) {
+                // the client went away: end the response as well as the subscription
+                emitter.completeWithError(e);
+                throw new UncheckedIOException(e);
+            }
+        });
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(error -> unsubscribe.run());
+        return emitter;
+    }
+}
@@ -1,5 +1,6 @@
 package uk.tw.energy.adapter.SmartMeter.controller;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -8,11 +9,22 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import uk.tw.energy.adapter.SmartMeter.dto.response.SmartMeterLoadProfileResponse;
+import uk.tw.energy.adapter.SmartMeter.dto.response.SmartMeterPeakDemandResponse;
+import uk.tw.energy.adapter.SmartMeter.dto.response.SmartMeterReadingFeedResponse;
 import uk.tw.energy.domain.ElectricityReading;
 import uk.tw.energy.domain.MeterReadings;
+import uk.tw.energy.domain.MeterVersion;
 import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.MeterVersionService;
+import uk.tw.energy.store.LoadProfile;
+import uk.tw.energy.store.ReadingExtremes;
+import uk.tw.energy.store.ReadingFeedPage;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,10 +33,14 @@ import java.util.Optional;
 @ControllerAdvice
 public class MeterReadingController {
 
+    public static final String DEFAULT_QUANTILES = "0.5,0.95";
+
     private final MeterReadingService meterReadingService;
+    private final MeterVersionService meterVersionService;
 
-    public MeterReadingController(MeterReadingService meterReadingService) {
+    public MeterReadingController(MeterReadingService meterReadingService, MeterVersionService meterVersionService) {
         this.meterReadingService = meterReadingService;
+        this.meterVersionService = meterVersionService;
     }
 
     @PostMapping("/store")
@@ -32,7 +48,8 @@ public class MeterReadingController {
         if (!isMeterReadingsValid(meterReadings)) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
-        meterReadingService.storeReadings(meterReadings.getSmartMeterId(), meterReadings.getElectricityReadings());
+        meterReadingService.storeReadings(meterReadings.getSmartMeterId(), meterReadings.getElectricityReadings(),
+                meterReadings.getIdempotencyKey());
         return ResponseEntity.ok().build();
     }
 
@@ -40,14 +57,71 @@ public class MeterReadingController {
         String smartMeterId = meterReadings.getSmartMeterId();
         List<ElectricityReading> electricityReadings = meterReadings.getElectricityReadings();
         return smartMeterId != null && !smartMeterId.isEmpty()
-                && electricityReadings != null && !electricityReadings.isEmpty();
+                && electricityReadings != null && !electricityReadings.isEmpty()
+                && electricityReadings.stream().allMatch(reading -> reading != null && reading.getTime() != null && reading.getReading() != null);
     }
 
     @GetMapping("/read/{smartMeterId}")
-    public ResponseEntity readReadings(@PathVariable String smartMeterId) {
+    public ResponseEntity readReadings(@PathVariable String smartMeterId, WebRequest request) {
+        Optional<MeterVersion> version = meterVersionService.getReadingsVersion(smartMeterId);
+        if (version.isPresent() && request.checkNotModified(version.get().getTag(), version.get().getLastModified().toEpochMilli())) {
+            return null;
+        }
         Optional<List<ElectricityReading>> readings = meterReadingService.getReadings(smartMeterId);
         return readings.isPresent()
                 ? ResponseEntity.ok(readings.get())
                 : ResponseEntity.notFound().build();
     }
+
+    @GetMapping("/peak/{smartMeterId}")
+    public ResponseEntity<SmartMeterPeakDemandResponse> readPeakDemand(
+            @PathVariable String smartMeterId,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            Instant from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+            Instant to
+    ) {
+        Optional<ReadingExtremes> extremes = meterReadingService.getReadingExtremes(smartMeterId, from, to);
+        return extremes.map(peak -> ResponseEntity.ok(SmartMeterPeakDemandResponse.builder()
+                        .smartMeterId(smartMeterId)
+                        .maxReading(peak.getMaxReading())
+                        .maxReadingTime(peak.getMaxReadingTime())
+                        .minReading(peak.getMinReading())
+                        .minReadingTime(peak.getMinReadingTime())
+                        .build()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/load-profile/{smartMeterId}")
+    public ResponseEntity<SmartMeterLoadProfileResponse> readLoadProfile(
+            @PathVariable String smartMeterId,
+            @RequestParam(value = "quantiles", defaultValue = DEFAULT_QUANTILES) List<Double> quantiles
+    ) {
+        Optional<LoadProfile> loadProfile = meterReadingService.getLoadProfile(smartMeterId);
+        return loadProfile.map(profile -> ResponseEntity.ok(SmartMeterLoadProfileResponse.builder()
+                        .smartMeterId(smartMeterId)
+                        .quantiles(quantiles)
+                        .hours(profile.describe(quantiles))
+                        .build()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/feed")
+    public ResponseEntity<SmartMeterReadingFeedResponse> readFeed(
+            @RequestParam(value = "from", defaultValue = "0") long from,
+            @RequestParam(value = "limit", defaultValue = "1000") int limit,
+            @RequestParam(value = "shard", required = false) Integer shard
+    ) {
+        ReadingFeedPage page = meterReadingService.getChanges(from, limit, shard);
+        return ResponseEntity.ok(SmartMeterReadingFeedResponse.builder()
+                .from(from)
+                .shard(shard)
+                .nextOffset(page.getNextOffset())
+                .earliestOffset(page.getEarliestOffset())
+                .endOffset(page.getEndOffset())
+                .batches(page.getBatches())
+                .build());
+    }
 }
@@ -1,25 +1,36 @@
 package uk.tw.energy.adapter.SmartMeter.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundException;
+import uk.tw.energy.adapter.SmartMeter.dto.request.SmartMeterBatchRequest;
 import uk.tw.energy.adapter.SmartMeter.dto.response.SmartMeterDailyCostsResponse;
 import uk.tw.energy.adapter.SmartMeter.dto.response.SmartMeterWeeklyCostsResponse;
 import uk.tw.energy.domain.DayOfWeekCost;
+import uk.tw.energy.domain.MeterVersion;
+import uk.tw.energy.service.CostComputationExecutor;
 import uk.tw.energy.service.MeterReadingCostService;
+import uk.tw.energy.service.MeterVersionService;
 
-import javax.validation.constraints.PastOrPresent;
+import jakarta.validation.constraints.PastOrPresent;
 import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDate;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/smart-meters")
@@ -27,9 +38,17 @@ import java.util.List;
 public class MeterReadingCostController {
 
     private final MeterReadingCostService meterReadingCostService;
+    private final CostComputationExecutor costComputationExecutor;
+    private final MeterVersionService meterVersionService;
+    private final ObjectMapper objectMapper;
 
-    public MeterReadingCostController(MeterReadingCostService meterReadingCostService) {
+    public MeterReadingCostController(MeterReadingCostService meterReadingCostService,
+                                      CostComputationExecutor costComputationExecutor,
+                                      MeterVersionService meterVersionService, ObjectMapper objectMapper) {
         this.meterReadingCostService = meterReadingCostService;
+        this.costComputationExecutor = costComputationExecutor;
+        this.meterVersionService = meterVersionService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping("/{smartMeterId}/costs")
@@ -42,14 +61,9 @@ public class MeterReadingCostController {
             @RequestParam(value = "duration")
             String duration
     ) {
-        if (!duration.matches("(?i)^last.*week$")) {
-            throw new ReadingsNotFoundException();
-        }
-        if (enteredDate == null) {
-            enteredDate = LocalDate.now();
-        }
-        Instant date = enteredDate.atStartOfDay(ZoneId.systemDefault()).toInstant();
-        BigDecimal lastWeekCostOfTheDate = meterReadingCostService.getLastWeekCostOfTheDate(smartMeterId, date);
+        Instant date = lastWeekOf(enteredDate, duration);
+        BigDecimal lastWeekCostOfTheDate = costComputationExecutor.compute(
+                () -> meterReadingCostService.getLastWeekCostOfTheDate(smartMeterId, date));
         SmartMeterWeeklyCostsResponse smartMeterWeeklyCostsResponse = SmartMeterWeeklyCostsResponse.builder()
                 .smartMeterId(smartMeterId)
                 .costs(lastWeekCostOfTheDate)
@@ -57,13 +71,48 @@ public class MeterReadingCostController {
         return ResponseEntity.ok(smartMeterWeeklyCostsResponse);
     }
 
+    @PostMapping("/costs")
+    public ResponseEntity<StreamingResponseBody> getLastWeekOfDateCostsOfEachMeter(
+            @RequestBody SmartMeterBatchRequest batchRequest,
+            @RequestParam(value = "enteredDate", required = false)
+            @DateTimeFormat(pattern = "yyyy-MM-dd")
+            @PastOrPresent(message = "must be a date in the past or in the present")
+            LocalDate enteredDate,
+            @RequestParam(value = "duration")
+            String duration
+    ) {
+        Instant date = lastWeekOf(enteredDate, duration);
+        return SmartMeterBatchStream.stream(SmartMeterBatchStream.smartMeterIdsOf(batchRequest),
+                smartMeterId -> SmartMeterWeeklyCostsResponse.builder()
+                        .smartMeterId(smartMeterId)
+                        .costs(meterReadingCostService.getLastWeekCostOfTheDate(smartMeterId, date))
+                        .build(),
+                costComputationExecutor, objectMapper);
+    }
+
     @GetMapping("{smartMeterId}/daily-cost")
-    public ResponseEntity<SmartMeterDailyCostsResponse> getDayOfWeekCost(@PathVariable("smartMeterId") String smartMeterId) {
-        List<DayOfWeekCost> daysOfWeekCosts = meterReadingCostService.getDayOfWeekCost(smartMeterId);
+    public ResponseEntity<SmartMeterDailyCostsResponse> getDayOfWeekCost(@PathVariable("smartMeterId") String smartMeterId,
+                                                                         WebRequest request) {
+        Optional<MeterVersion> version = meterVersionService.getCostsVersion(smartMeterId);
+        if (version.isPresent() && request.checkNotModified(version.get().getTag(), version.get().getLastModified().toEpochMilli())) {
+            return null;
+        }
+        Supplier<List<DayOfWeekCost>> dailyCosts = () -> meterReadingCostService.getDayOfWeekCost(smartMeterId);
+        List<DayOfWeekCost> daysOfWeekCosts = version.isPresent()
+                ? costComputationExecutor.compute("daily-costs/" + smartMeterId + "/" + version.get().getTag(), dailyCosts)
+                : costComputationExecutor.compute(dailyCosts);
         SmartMeterDailyCostsResponse smartMeterDailyCostsResponse = SmartMeterDailyCostsResponse.builder()
                 .smartMeterId(smartMeterId)
                 .dailyCosts(daysOfWeekCosts)
                 .build();
         return ResponseEntity.ok(smartMeterDailyCostsResponse);
     }
+
+    private static Instant lastWeekOf(LocalDate enteredDate, String duration) {
+        if (!duration.matches("(?i)^last.*week$")) {
+            throw new ReadingsNotFoundException();
+        }
+        LocalDate date = enteredDate == null ? LocalDate.now() : enteredDate;
+        return date.atStartOfDay(ZoneId.systemDefault()).toInstant();
+    }
 }
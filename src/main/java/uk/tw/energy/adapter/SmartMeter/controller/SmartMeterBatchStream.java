@@ -0,0 +1,111 @@
+package uk.tw.energy.adapter.SmartMeter.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.method.annotation.ExceptionHandlerMethodResolver;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import uk.tw.energy.adapter.PricePlan.TariffSimulationController;
+import uk.tw.energy.adapter.SmartMeter.controller.exception.ExceptionHandle;
+import uk.tw.energy.adapter.SmartMeter.dto.request.SmartMeterBatchRequest;
+import uk.tw.energy.service.CostComputationExecutor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Answers a batch of smart meters as newline-delimited JSON, computing the meters in parallel on the compute pool and
+ * writing one line per meter as soon as its computation finishes. A meter whose computation fails gets a line with
+ * the status and message its single-meter request would have been answered with, from the same {@link ExceptionHandle}
+ * handlers, and the rest of the batch goes on.
+ */
+public final class SmartMeterBatchStream {
+
+    public static final int MAX_SMART_METERS = 1000;
+
+    private static final Logger LOG = LoggerFactory.getLogger(SmartMeterBatchStream.class);
+    private static final String INTERNAL_ERROR = "Internal server error.";
+    private static final ExceptionHandle EXCEPTION_HANDLE = new ExceptionHandle();
+    private static final ExceptionHandlerMethodResolver EXCEPTION_HANDLERS = new ExceptionHandlerMethodResolver(ExceptionHandle.class);
+
+    private SmartMeterBatchStream() {
+    }
+
+    /**
+     * @return the distinct smart meter ids of the batch, in the order they were asked for
+     */
+    public static List<String> smartMeterIdsOf(SmartMeterBatchRequest batchRequest) {
+        if (batchRequest == null || batchRequest.getSmartMeterIds() == null || batchRequest.getSmartMeterIds().isEmpty()) {
+            throw new IllegalArgumentException("smartMeterIds must list at least one smart meter");
+        }
+        LinkedHashSet<String> smartMeterIds = new LinkedHashSet<>(batchRequest.getSmartMeterIds());
+        if (smartMeterIds.contains(null) || smartMeterIds.contains("")) {
+            throw new IllegalArgumentException("smartMeterIds must not contain an empty id");
+        }
+        if (smartMeterIds.size() > MAX_SMART_METERS) {
+            throw new IllegalArgumentException("smartMeterIds may list at most " + MAX_SMART_METERS + " smart meters");
+        }
+        return new ArrayList<>(smartMeterIds);
+    }
+
+    /**
+     * @param line computes the line of one smart meter, on a compute thread
+     */
+    public static ResponseEntity<StreamingResponseBody> stream(List<String> smartMeterIds, Function<String, Object> line,
+                                                               CostComputationExecutor costComputationExecutor,
+                                                               ObjectMapper objectMapper) {
+        StreamingResponseBody body = outputStream -> {
+            try {
+                costComputationExecutor.computeEach(smartMeterIds, line, (smartMeterId, result, failure) ->
+                        writeLine(objectMapper, outputStream, failure == null ? result : failureLine(smartMeterId, failure)));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(TariffSimulationController.APPLICATION_NDJSON).body(body);
+    }
+
+    private static Map<String, Object> failureLine(String smartMeterId, RuntimeException failure) {
+        ResponseEntity<?> response = responseTo(failure);
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("smartMeterId", smartMeterId);
+        line.put("status", response.getStatusCode().value());
+        line.put("error", response.getBody());
+        return line;
+    }
+
+    // the handler of the single-meter endpoints answers the failure; one it has none for is logged, and its line only
+    // says that the meter failed, as the message may give away more than the client should see
+    private static ResponseEntity<?> responseTo(RuntimeException failure) {
+        Method handler = EXCEPTION_HANDLERS.resolveMethod(failure);
+        if (handler != null) {
+            try {
+                return (ResponseEntity<?>) handler.invoke(EXCEPTION_HANDLE, failure);
+            } catch (ReflectiveOperationException e) {
+                failure.addSuppressed(e);
+            }
+        }
+        LOG.error("Smart meter computation failed", failure);
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(INTERNAL_ERROR);
+    }
+
+    private static void writeLine(ObjectMapper objectMapper, OutputStream outputStream, Object line) {
+        try {
+            outputStream.write(objectMapper.writeValueAsBytes(line));
+            outputStream.write('\n');
+            outputStream.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
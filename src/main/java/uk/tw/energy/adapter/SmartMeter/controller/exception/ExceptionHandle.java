@@ -7,8 +7,10 @@ import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
+import uk.tw.energy.store.StoreFullException;
 
-import javax.validation.ConstraintViolationException;
+import jakarta.validation.ConstraintViolationException;
+import java.util.concurrent.RejectedExecutionException;
 
 @ControllerAdvice
 public class ExceptionHandle {
@@ -39,4 +41,14 @@ public class ExceptionHandle {
     public ResponseEntity<String> ConstraintViolationExceptionHandler(MissingServletRequestParameterException exception) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body("Unknown date range.");
     }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> RejectedExecutionExceptionHandler(RejectedExecutionException exception) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body("Too many cost calculations in progress.");
+    }
+
+    @ExceptionHandler(StoreFullException.class)
+    public ResponseEntity<String> StoreFullExceptionHandler(StoreFullException exception) {
+        return ResponseEntity.status(HttpStatus.INSUFFICIENT_STORAGE).body(exception.getMessage());
+    }
 }
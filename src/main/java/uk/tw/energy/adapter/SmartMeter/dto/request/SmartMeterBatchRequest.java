@@ -0,0 +1,10 @@
+package uk.tw.energy.adapter.SmartMeter.dto.request;
+
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+public class SmartMeterBatchRequest {
+    private List<String> smartMeterIds;
+}
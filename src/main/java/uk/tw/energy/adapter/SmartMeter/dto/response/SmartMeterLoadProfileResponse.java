@@ -0,0 +1,15 @@
+package uk.tw.energy.adapter.SmartMeter.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import uk.tw.energy.domain.LoadProfileHour;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class SmartMeterLoadProfileResponse {
+    private String smartMeterId;
+    private List<Double> quantiles;
+    private List<LoadProfileHour> hours;
+}
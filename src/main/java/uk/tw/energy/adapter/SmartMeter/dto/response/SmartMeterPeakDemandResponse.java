@@ -0,0 +1,17 @@
+package uk.tw.energy.adapter.SmartMeter.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+@Builder
+@Getter
+public class SmartMeterPeakDemandResponse {
+    private String smartMeterId;
+    private BigDecimal maxReading;
+    private Instant maxReadingTime;
+    private BigDecimal minReading;
+    private Instant minReadingTime;
+}
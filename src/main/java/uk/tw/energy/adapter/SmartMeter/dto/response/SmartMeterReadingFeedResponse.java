@@ -0,0 +1,18 @@
+package uk.tw.energy.adapter.SmartMeter.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+import uk.tw.energy.store.ReadingBatch;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class SmartMeterReadingFeedResponse {
+    private long from;
+    private Integer shard;
+    private long nextOffset;
+    private long earliestOffset;
+    private long endOffset;
+    private List<ReadingBatch> batches;
+}
@@ -0,0 +1,65 @@
+package uk.tw.energy.adapter.Store;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import uk.tw.energy.adapter.Store.dto.response.StoreUsageResponse;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingChangeFeed;
+import uk.tw.energy.store.StoreUsage;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+
+/**
+ * Heap and off-heap memory side by side on the management port: what the JVM's heap holds in all, what of it the
+ * readings, the load profiles and the change feed are estimated to take, and what the off-heap store has reserved and
+ * handed out.
+ */
+@Component
+@Endpoint(id = "store")
+public class StoreUsageEndpoint {
+
+    private final MeterReadingStore meterReadingStore;
+    private final ReadingChangeFeed changeFeed;
+
+    public StoreUsageEndpoint(MeterReadingStore meterReadingStore, ReadingChangeFeed changeFeed) {
+        this.meterReadingStore = meterReadingStore;
+        this.changeFeed = changeFeed;
+    }
+
+    @ReadOperation
+    public StoreUsageResponse usage() {
+        StoreUsage usage = meterReadingStore.usage().toBuilder()
+                .feedReadings(changeFeed.getReadingsHeld())
+                .feedHeapBytes(changeFeed.heapBytes())
+                .build();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        BufferPoolMXBean direct = ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()
+                .filter(pool -> pool.getName().equals("direct"))
+                .findFirst()
+                .orElseThrow();
+        return StoreUsageResponse.builder()
+                .backend(usage.getBackend())
+                .meters(usage.getMeters())
+                .readings(usage.getReadings())
+                .feedReadings(usage.getFeedReadings())
+                .heap(StoreUsageResponse.Heap.builder()
+                        .usedBytes(heap.getUsed())
+                        .committedBytes(heap.getCommitted())
+                        .maxBytes(heap.getMax())
+                        .readingsEstimateBytes(usage.getHeapBytes() - usage.getLoadProfileHeapBytes())
+                        .loadProfilesEstimateBytes(usage.getLoadProfileHeapBytes())
+                        .feedEstimateBytes(usage.getFeedHeapBytes())
+                        .build())
+                .offHeap(StoreUsageResponse.OffHeap.builder()
+                        .capacityBytes(usage.getOffHeapCapacityBytes())
+                        .reservedBytes(usage.getOffHeapReservedBytes())
+                        .usedBytes(usage.getOffHeapUsedBytes())
+                        .slabs(usage.getOffHeapSlabs())
+                        .directBufferBytes(direct.getMemoryUsed())
+                        .build())
+                .build();
+    }
+}
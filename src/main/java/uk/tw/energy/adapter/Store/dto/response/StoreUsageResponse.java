@@ -0,0 +1,36 @@
+package uk.tw.energy.adapter.Store.dto.response;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder
+@Getter
+public class StoreUsageResponse {
+    private String backend;
+    private long meters;
+    private long readings;
+    private long feedReadings;
+    private Heap heap;
+    private OffHeap offHeap;
+
+    @Builder
+    @Getter
+    public static class Heap {
+        private long usedBytes;
+        private long committedBytes;
+        private long maxBytes;
+        private long readingsEstimateBytes;
+        private long loadProfilesEstimateBytes;
+        private long feedEstimateBytes;
+    }
+
+    @Builder
+    @Getter
+    public static class OffHeap {
+        private long capacityBytes;
+        private long reservedBytes;
+        private long usedBytes;
+        private long slabs;
+        private long directBufferBytes;     // every direct buffer in the JVM, the store's chunks among them
+    }
+}
@@ -0,0 +1,17 @@
+package uk.tw.energy.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+@Builder
+@Getter
+@AllArgsConstructor
+public class FleetAggregate {
+    private String key;
+    private long meters;
+    private BigDecimal consumedKwh;
+    private BigDecimal cost;
+}
@@ -0,0 +1,18 @@
+package uk.tw.energy.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+
+@Builder
+@Getter
+@AllArgsConstructor
+public class FleetCost {
+    private long meters;
+    private BigDecimal totalCost;
+    private BigDecimal averageCost;
+    private BigDecimal minCost;
+    private BigDecimal maxCost;
+}
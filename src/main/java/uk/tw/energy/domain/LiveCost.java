@@ -0,0 +1,21 @@
+package uk.tw.energy.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+@Builder
+@Getter
+@AllArgsConstructor
+public class LiveCost {
+    private String smartMeterId;
+    private String pricePlanId;
+    private int readings;
+    private Instant lastReadingTime;
+    private BigDecimal currentCost;
+    private Map<String, BigDecimal> pricePlanComparisons;
+}
@@ -0,0 +1,17 @@
+package uk.tw.energy.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Builder
+@Getter
+@AllArgsConstructor
+public class LoadProfileHour {
+    private int hourOfDay;
+    private long readings;
+    private Map<String, BigDecimal> quantiles;    // kW at each requested quantile, keyed by the quantile
+}
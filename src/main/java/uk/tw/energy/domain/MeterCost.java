@@ -0,0 +1,16 @@
+package uk.tw.energy.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+@Builder
+@Getter
+@AllArgsConstructor
+public class MeterCost {
+    private String smartMeterId;
+    private Map<String, BigDecimal> costs;
+}
@@ -6,11 +6,17 @@ public class MeterReadings {
 
     private List<ElectricityReading> electricityReadings;
     private String smartMeterId;
+    private String idempotencyKey; // optional, identifies a batch that a gateway may send again
     public MeterReadings() { }
 
     public MeterReadings(String smartMeterId, List<ElectricityReading> electricityReadings) {
+        this(smartMeterId, electricityReadings, null);
+    }
+
+    public MeterReadings(String smartMeterId, List<ElectricityReading> electricityReadings, String idempotencyKey) {
         this.smartMeterId = smartMeterId;
         this.electricityReadings = electricityReadings;
+        this.idempotencyKey = idempotencyKey;
     }
 
     public List<ElectricityReading> getElectricityReadings() {
@@ -20,4 +26,8 @@ public class MeterReadings {
     public String getSmartMeterId() {
         return smartMeterId;
     }
+
+    public String getIdempotencyKey() {
+        return idempotencyKey;
+    }
 }
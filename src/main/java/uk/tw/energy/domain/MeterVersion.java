@@ -0,0 +1,18 @@
+package uk.tw.energy.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.Instant;
+
+/**
+ * Identifies the state a smart meter's data is in: the tag changes whenever anything a response is computed from
+ * does, so equal tags mean an identical response.
+ */
+@Getter
+@AllArgsConstructor
+public class MeterVersion {
+
+    private final String tag;
+    private final Instant lastModified;
+}
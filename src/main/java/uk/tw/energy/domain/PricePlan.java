@@ -5,17 +5,50 @@ import java.time.DayOfWeek;
 import java.time.LocalDateTime;
 import java.util.List;
 
+import static java.util.Collections.emptyList;
+
 public class PricePlan {
     private final String energySupplier;
     private final String planName;
     private final BigDecimal unitRate; // unit price per kWh
     private final List<PeakTimeMultiplier> peakTimeMultipliers;
+    private final List<ConsumptionBand> consumptionBands;
+    // band i starts bandStartsKwh[i] into the billing period, where bandStartCosts[i] has been charged already
+    private final BigDecimal[] bandStartsKwh;
+    private final BigDecimal[] bandStartCosts;
+    private final BigDecimal[] bandRates;
 
     public PricePlan(String planName, String energySupplier, BigDecimal unitRate, List<PeakTimeMultiplier> peakTimeMultipliers) {
+        this(planName, energySupplier, unitRate, peakTimeMultipliers, emptyList());
+    }
+
+    /**
+     * @param consumptionBands the rates of the first kWh consumed in each billing period, in increasing order of
+     *                         their upper bounds; whatever is consumed beyond the last band is charged at the unit rate
+     */
+    public PricePlan(String planName, String energySupplier, BigDecimal unitRate, List<PeakTimeMultiplier> peakTimeMultipliers,
+                     List<ConsumptionBand> consumptionBands) {
         this.planName = planName;
         this.energySupplier = energySupplier;
         this.unitRate = unitRate;
         this.peakTimeMultipliers = peakTimeMultipliers;
+        this.consumptionBands = consumptionBands == null ? emptyList() : List.copyOf(consumptionBands);
+        int bands = this.consumptionBands.size();
+        this.bandStartsKwh = new BigDecimal[bands + 1];
+        this.bandStartCosts = new BigDecimal[bands + 1];
+        this.bandRates = new BigDecimal[bands + 1];
+        bandStartsKwh[0] = BigDecimal.ZERO;
+        bandStartCosts[0] = BigDecimal.ZERO;
+        for (int i = 0; i < bands; i++) {
+            ConsumptionBand band = this.consumptionBands.get(i);
+            if (band.upToKwh == null || band.unitRate == null || band.upToKwh.compareTo(bandStartsKwh[i]) <= 0) {
+                throw new IllegalArgumentException("Consumption bands need a unit rate and increasing upper bounds above zero");
+            }
+            bandRates[i] = band.unitRate;
+            bandStartsKwh[i + 1] = band.upToKwh;
+            bandStartCosts[i + 1] = bandStartCosts[i].add(band.upToKwh.subtract(bandStartsKwh[i]).multiply(band.unitRate));
+        }
+        bandRates[bands] = unitRate;
     }
 
     public String getEnergySupplier() {
@@ -30,6 +63,43 @@ public class PricePlan {
         return unitRate;
     }
 
+    public boolean hasPeakTimeMultipliers() {
+        return peakTimeMultipliers != null && !peakTimeMultipliers.isEmpty();
+    }
+
+    public boolean hasConsumptionBands() {
+        return !consumptionBands.isEmpty();
+    }
+
+    public List<ConsumptionBand> getConsumptionBands() {
+        return consumptionBands;
+    }
+
+    /**
+     * @return the cost of the energy consumed from {@code fromKwh} until {@code toKwh} into a billing period, each kWh
+     * at the rate of the band it falls in; a binary search over the bands and two multiplications, however many kWh
+     */
+    public BigDecimal getCostOfConsumption(BigDecimal fromKwh, BigDecimal toKwh) {
+        if (!hasConsumptionBands()) {
+            return toKwh.subtract(fromKwh).multiply(unitRate);
+        }
+        return cumulativeCost(toKwh).subtract(cumulativeCost(fromKwh));
+    }
+
+    private BigDecimal cumulativeCost(BigDecimal kwh) {
+        int low = 0;
+        int high = bandStartsKwh.length - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (bandStartsKwh[middle].compareTo(kwh) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return bandStartCosts[low].add(kwh.subtract(bandStartsKwh[low]).multiply(bandRates[low]));
+    }
+
     public BigDecimal getPrice(LocalDateTime dateTime) {
         return peakTimeMultipliers.stream()
                 .filter(multiplier -> multiplier.dayOfWeek.equals(dateTime.getDayOfWeek()))
@@ -38,7 +108,7 @@ public class PricePlan {
                 .orElse(unitRate);
     }
 
-    static class PeakTimeMultiplier {
+    public static class PeakTimeMultiplier {
 
         DayOfWeek dayOfWeek;
         BigDecimal multiplier;
@@ -48,4 +118,26 @@ public class PricePlan {
             this.multiplier = multiplier;
         }
     }
+
+    /**
+     * The rate of the energy consumed in a billing period up to {@code upToKwh}, past the bound of the band before.
+     */
+    public static class ConsumptionBand {
+
+        final BigDecimal upToKwh;
+        final BigDecimal unitRate;
+
+        public ConsumptionBand(BigDecimal upToKwh, BigDecimal unitRate) {
+            this.upToKwh = upToKwh;
+            this.unitRate = unitRate;
+        }
+
+        public BigDecimal getUpToKwh() {
+            return upToKwh;
+        }
+
+        public BigDecimal getUnitRate() {
+            return unitRate;
+        }
+    }
 }
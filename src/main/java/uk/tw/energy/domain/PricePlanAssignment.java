@@ -0,0 +1,29 @@
+package uk.tw.energy.domain;
+
+import java.time.Instant;
+
+public class PricePlanAssignment {
+
+    private String pricePlanId;
+    private Instant effectiveFrom; // inclusive, null for since the meter was first assigned a plan
+    private Instant effectiveTo; // exclusive, null for until further notice
+    public PricePlanAssignment() { }
+
+    public PricePlanAssignment(String pricePlanId, Instant effectiveFrom, Instant effectiveTo) {
+        this.pricePlanId = pricePlanId;
+        this.effectiveFrom = effectiveFrom;
+        this.effectiveTo = effectiveTo;
+    }
+
+    public String getPricePlanId() {
+        return pricePlanId;
+    }
+
+    public Instant getEffectiveFrom() {
+        return effectiveFrom;
+    }
+
+    public Instant getEffectiveTo() {
+        return effectiveTo;
+    }
+}
@@ -1,28 +1,84 @@
 package uk.tw.energy.generator;
 
 import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.store.MeterHashing;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
 
 public class ElectricityReadingsGenerator {
 
-    public List<ElectricityReading> generate(int number, Instant date) {
-        List<ElectricityReading> readings = new ArrayList<>();
-        Random readingRandomiser = new Random();
-        for (int i = 0; i < number; i++) {
-            double positiveRandomValue = Math.abs(readingRandomiser.nextGaussian());
-            BigDecimal randomReading = BigDecimal.valueOf(positiveRandomValue).setScale(4, RoundingMode.CEILING);
-            ElectricityReading electricityReading = new ElectricityReading(date.minusSeconds(i * 10L), randomReading);
-            readings.add(electricityReading);
+    private static final double SECONDS_PER_HOUR = 3600.0;
+
+    private final long seed;
+    private final SplittableRandom random;
+
+    public ElectricityReadingsGenerator() {
+        this(System.nanoTime());
+    }
+
+    /**
+     * @param seed generators with the same seed generate the same readings
+     */
+    public ElectricityReadingsGenerator(long seed) {
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * @return {@code number} readings ten seconds apart, in time order and ending at {@code date}
+     */
+    public synchronized List<ElectricityReading> generate(int number, Instant date) {
+        List<ElectricityReading> readings = new ArrayList<>(number);
+        for (int i = number - 1; i >= 0; i--) {
+            double positiveRandomValue = Math.abs(random.nextGaussian());
+            readings.add(new ElectricityReading(date.minusSeconds(i * 10L), kw(Math.ceil(positiveRandomValue * 10_000))));
         }
+        return readings;
+    }
+
+    /**
+     * A household's load over the day: a base load with a morning and a larger evening peak, whose sizes and times
+     * vary from meter to meter, and noise on top. The readings only depend on the seed and the smart meter id, so
+     * meters can be generated in any order and on any thread.
+     *
+     * @return {@code count} readings {@code interval} apart, in time order and starting at {@code from}
+     */
+    public List<ElectricityReading> generateDailyLoad(String smartMeterId, Instant from, Duration interval, int count) {
+        SplittableRandom meterRandom = new SplittableRandom(seed ^ MeterHashing.hash64(smartMeterId));
+        double baseKw = 0.15 + 0.25 * meterRandom.nextDouble();
+        double morningPeakKw = 0.3 + 0.9 * meterRandom.nextDouble();
+        double eveningPeakKw = 0.8 + 1.7 * meterRandom.nextDouble();
+        double morningPeakHour = 7.0 + 0.75 * meterRandom.nextGaussian();
+        double eveningPeakHour = 18.5 + meterRandom.nextGaussian();
 
-        readings.sort(Comparator.comparing(ElectricityReading::getTime));
+        List<ElectricityReading> readings = new ArrayList<>(count);
+        long intervalSeconds = interval.getSeconds();
+        long epochSecond = from.getEpochSecond();
+        for (int i = 0; i < count; i++, epochSecond += intervalSeconds) {
+            double hourOfDay = Math.floorMod(epochSecond, 86_400L) / SECONDS_PER_HOUR;
+            double load = baseKw
+                    + morningPeakKw * peak(hourOfDay, morningPeakHour, 1.0)
+                    + eveningPeakKw * peak(hourOfDay, eveningPeakHour, 1.75);
+            double noisyLoad = Math.max(0.0, load * (1.0 + 0.15 * meterRandom.nextGaussian()));
+            readings.add(new ElectricityReading(Instant.ofEpochSecond(epochSecond, from.getNano()),
+                    kw(Math.round(noisyLoad * 10_000))));
+        }
         return readings;
     }
+
+    // a bell curve around the peak hour, wrapping around midnight
+    private static double peak(double hourOfDay, double peakHour, double width) {
+        double distance = Math.abs(hourOfDay - peakHour);
+        distance = Math.min(distance, 24.0 - distance);
+        return Math.exp(-distance * distance / (2 * width * width));
+    }
+
+    private static BigDecimal kw(double tenThousandths) {
+        return BigDecimal.valueOf((long) tenThousandths, 4);
+    }
 }
@@ -0,0 +1,127 @@
+package uk.tw.energy.generator;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+
+/**
+ * A synthetic fleet of {@code fleet-meter-<n>} smart meters with daily load curves, generated in parallel and handed
+ * over one meter at a time, so the fleet never has to fit in memory twice. The same seed gives the same fleet however
+ * many threads generate it.
+ */
+public class FleetGenerator {
+
+    private static final String METER_ID_PREFIX = "fleet-meter-";
+
+    private final ElectricityReadingsGenerator generator;
+    private final int meters;
+    private final int readingsPerMeter;
+    private final Duration interval;
+    private final Instant from;
+    private final int threads;
+
+    /**
+     * @param until the time of every meter's last reading
+     */
+    public FleetGenerator(long seed, int meters, int readingsPerMeter, Duration interval, Instant until, int threads) {
+        this.generator = new ElectricityReadingsGenerator(seed);
+        this.meters = meters;
+        this.readingsPerMeter = readingsPerMeter;
+        this.interval = interval;
+        this.from = until.minus(interval.multipliedBy(Math.max(readingsPerMeter - 1, 0)));
+        this.threads = threads;
+    }
+
+    public static String meterId(int index) {
+        return METER_ID_PREFIX + index;
+    }
+
+    /**
+     * @param sink called with each meter's readings, from several threads at once
+     */
+    public void generate(BiConsumer<String, List<ElectricityReading>> sink) {
+        forEachPart(part -> generatePart(part, sink));
+    }
+
+    /**
+     * Writes the fleet as CSV in the format the bulk loader reads, one file per thread.
+     *
+     * @return the files written
+     */
+    public List<Path> writeCsv(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        for (int part = 0; part < threads; part++) {
+            files.add(directory.resolve("fleet-readings-" + part + ".csv"));
+        }
+        try {
+            forEachPart(part -> {
+                try (BufferedWriter writer = Files.newBufferedWriter(files.get(part), StandardCharsets.UTF_8)) {
+                    writer.write("smartMeterId,time,reading\n");
+                    generatePart(part, (smartMeterId, readings) -> write(writer, smartMeterId, readings));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return files;
+    }
+
+    private void forEachPart(IntConsumer generatePart) {
+        List<CompletableFuture<Void>> parts = new ArrayList<>();
+        try (ExecutorService workers = Executors.newFixedThreadPool(threads)) {
+            for (int part = 0; part < threads; part++) {
+                int thisPart = part;
+                parts.add(CompletableFuture.runAsync(() -> generatePart.accept(thisPart), workers));
+            }
+            CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // part k generates the meters [k * meters / threads, (k + 1) * meters / threads)
+    private void generatePart(int part, BiConsumer<String, List<ElectricityReading>> sink) {
+        int firstMeter = (int) ((long) part * meters / threads);
+        int lastMeter = (int) ((long) (part + 1) * meters / threads);
+        for (int meter = firstMeter; meter < lastMeter; meter++) {
+            String smartMeterId = meterId(meter);
+            sink.accept(smartMeterId, generator.generateDailyLoad(smartMeterId, from, interval, readingsPerMeter));
+        }
+    }
+
+    private static void write(BufferedWriter writer, String smartMeterId, List<ElectricityReading> readings) {
+        try {
+            for (ElectricityReading reading : readings) {
+                writer.write(smartMeterId);
+                writer.write(',');
+                writer.write(reading.getTime().toString());
+                writer.write(',');
+                writer.write(reading.getReading().toPlainString());
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
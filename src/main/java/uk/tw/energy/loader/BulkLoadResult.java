@@ -0,0 +1,31 @@
+package uk.tw.energy.loader;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Getter
+@AllArgsConstructor
+public class BulkLoadResult {
+
+    private final Path file;
+    private final long bytes;
+    private final long stored;
+    private final long duplicates; // timestamps the meter already had
+    private final long rejected; // lines that are not a reading
+    private final long skipped; // readings of meters another node owns
+    private final Duration elapsed;
+
+    public long getRowsPerSecond() {
+        long rows = stored + duplicates + rejected + skipped;
+        return elapsed.isZero() ? rows : rows * 1_000_000_000L / elapsed.toNanos();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d readings stored, %d duplicates, %d rejected, %d skipped in %d ms (%d rows/s)",
+                file, stored, duplicates, rejected, skipped, elapsed.toMillis(), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,231 @@
+package uk.tw.energy.loader;
+
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.service.MeterReadingService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Loads historical readings from CSV ({@code smartMeterId,time,reading}) or newline-delimited JSON files. The file is
+ * memory-mapped and cut at line boundaries into chunks that are parsed in parallel, each straight from the mapped
+ * bytes, and stored in batches per meter. Files sorted by meter keep every meter's readings within one chunk, apart
+ * from the meters the cuts fall on. The readings are history rather than news, so they bypass the change feed and
+ * the live cost updates.
+ */
+public class BulkReadingLoader {
+
+    private static final long MAX_CHUNK_BYTES = 1L << 30;
+    private static final int BATCH_SIZE = 4096;
+    private static final byte[] CSV_HEADER = "smartMeterId,".getBytes(StandardCharsets.US_ASCII);
+
+    private final MeterReadingService meterReadingService;
+    private final Predicate<String> ownsMeter;
+    private final int threads;
+
+    /**
+     * @param ownsMeter whether this node keeps the smart meter's readings; rows of other meters are skipped
+     */
+    public BulkReadingLoader(MeterReadingService meterReadingService, Predicate<String> ownsMeter, int threads) {
+        this.meterReadingService = meterReadingService;
+        this.ownsMeter = ownsMeter;
+        this.threads = threads;
+    }
+
+    public BulkLoadResult load(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long[] bounds = chunkBounds(channel, size);
+            List<CompletableFuture<ChunkLoader>> chunks = new ArrayList<>();
+            try (ExecutorService workers = Executors.newFixedThreadPool(threads)) {
+                for (int i = 0; i < bounds.length - 1; i++) {
+                    long chunkStart = bounds[i];
+                    long chunkEnd = bounds[i + 1];
+                    chunks.add(CompletableFuture.supplyAsync(() -> loadChunk(channel, chunkStart, chunkEnd), workers));
+                }
+                CompletableFuture.allOf(chunks.toArray(new CompletableFuture[0])).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) e.getCause()).getCause();
+                }
+                throw e;
+            }
+            long stored = 0;
+            long duplicates = 0;
+            long rejected = 0;
+            long skipped = 0;
+            for (CompletableFuture<ChunkLoader> chunk : chunks) {
+                ChunkLoader loaded = chunk.join();
+                stored += loaded.stored;
+                duplicates += loaded.duplicates;
+                rejected += loaded.rejected;
+                skipped += loaded.skipped;
+            }
+            return new BulkLoadResult(file, size, stored, duplicates, rejected, skipped,
+                    Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private long[] chunkBounds(FileChannel channel, long size) throws IOException {
+        int chunks = (int) Math.max(1, Math.max(threads, (size + MAX_CHUNK_BYTES - 1) / MAX_CHUNK_BYTES));
+        long[] bounds = new long[chunks + 1];
+        bounds[chunks] = size;
+        for (int i = 1; i < chunks; i++) {
+            bounds[i] = nextLineStart(channel, Math.max(bounds[i - 1], size / chunks * i), size);
+        }
+        return bounds;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        if (position == 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(512);
+        // a cut right after a newline already is a line start
+        for (long offset = position - 1; offset < size; offset += buffer.limit()) {
+            buffer.clear();
+            if (channel.read(buffer, offset) <= 0) {
+                break;
+            }
+            buffer.flip();
+            for (int i = 0; i < buffer.limit(); i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    private ChunkLoader loadChunk(FileChannel channel, long start, long end) {
+        ChunkLoader loader = new ChunkLoader();
+        if (end <= start) {
+            return loader;
+        }
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            loader.load(buffer, start == 0);
+            return loader;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final class ChunkLoader {
+
+        private final ReadingLineParser parser = new ReadingLineParser();
+        private final List<ElectricityReading> batch = new ArrayList<>(BATCH_SIZE);
+        private byte[] meterIdBytes = new byte[64];
+        private int meterIdLength = -1;
+        private String meterId;
+        private boolean owned;
+        private long stored;
+        private long duplicates;
+        private long rejected;
+        private long skipped;
+
+        void load(ByteBuffer buffer, boolean startOfFile) {
+            int limit = buffer.limit();
+            int position = 0;
+            while (position < limit) {
+                int lineEnd = position;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int contentEnd = lineEnd > position && buffer.get(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+                boolean header = startOfFile && position == 0 && startsWith(buffer, position, contentEnd, CSV_HEADER);
+                if (contentEnd > position && !header) {
+                    loadLine(buffer, position, contentEnd);
+                }
+                position = lineEnd + 1;
+            }
+            flush();
+        }
+
+        private void loadLine(ByteBuffer buffer, int start, int end) {
+            if (!parser.splitLine(buffer, start, end)) {
+                rejected++;
+                return;
+            }
+            switchMeter(buffer, parser.meterIdStart, parser.meterIdEnd);
+            if (!owned) {
+                skipped++;
+                return;
+            }
+            if (!parser.parseTime(buffer, parser.timeStart, parser.timeEnd)
+                    || !parser.parseReading(buffer, parser.readingStart, parser.readingEnd)) {
+                rejected++;
+                return;
+            }
+            batch.add(new ElectricityReading(Instant.ofEpochSecond(parser.epochSecond, parser.nanos),
+                    BigDecimal.valueOf(parser.unscaledReading, parser.readingScale)));
+            if (batch.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        // a String is only made for the meter id when it differs from the previous line's
+        private void switchMeter(ByteBuffer buffer, int start, int end) {
+            int length = end - start;
+            if (length == meterIdLength && sameBytes(buffer, start, length)) {
+                return;
+            }
+            flush();
+            if (length > meterIdBytes.length) {
+                meterIdBytes = new byte[Math.max(length, meterIdBytes.length * 2)];
+            }
+            buffer.get(start, meterIdBytes, 0, length);
+            meterIdLength = length;
+            meterId = new String(meterIdBytes, 0, length, StandardCharsets.UTF_8);
+            owned = ownsMeter.test(meterId);
+        }
+
+        private boolean sameBytes(ByteBuffer buffer, int start, int length) {
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(start + i) != meterIdBytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            int accepted = meterReadingService.loadReadings(meterId, batch);
+            stored += accepted;
+            duplicates += batch.size() - accepted;
+            batch.clear();
+        }
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int start, int end, byte[] prefix) {
+        if (end - start < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer.get(start + i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,267 @@
+package uk.tw.energy.loader;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Parses the fields of one reading straight out of a byte buffer: an ISO-8601 instant and a plain decimal, neither
+ * going through a String. Lines are either {@code smartMeterId,time,reading} or a JSON object with those three keys.
+ */
+final class ReadingLineParser {
+
+    private static final byte[] SMART_METER_ID_KEY = "smartMeterId".getBytes();
+    private static final byte[] TIME_KEY = "time".getBytes();
+    private static final byte[] READING_KEY = "reading".getBytes();
+    private static final int[] DAYS_IN_MONTH = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+    // field bounds of the last line parsed, as [start, end) positions in the buffer
+    int meterIdStart;
+    int meterIdEnd;
+    int timeStart;
+    int timeEnd;
+    int readingStart;
+    int readingEnd;
+
+    // values of the last time and reading parsed
+    long epochSecond;
+    int nanos;
+    long unscaledReading;
+    int readingScale;
+
+    /**
+     * @return whether the line held a smart meter id, a time and a reading, whose bounds are then set
+     */
+    boolean splitLine(ByteBuffer buffer, int start, int end) {
+        return buffer.get(start) == '{' ? splitJson(buffer, start, end) : splitCsv(buffer, start, end);
+    }
+
+    /**
+     * Parses {@code yyyy-MM-ddTHH:mm:ss[.fffffffff](Z|+HH:mm|-HH:mm)}.
+     */
+    boolean parseTime(ByteBuffer buffer, int start, int end) {
+        int length = end - start;
+        if (length < 20 || buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-' || buffer.get(start + 10) != 'T'
+                || buffer.get(start + 13) != ':' || buffer.get(start + 16) != ':') {
+            return false;
+        }
+        int year = digits(buffer, start, 4);
+        int month = digits(buffer, start + 5, 2);
+        int day = digits(buffer, start + 8, 2);
+        int hour = digits(buffer, start + 11, 2);
+        int minute = digits(buffer, start + 14, 2);
+        int second = digits(buffer, start + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+        int position = start + 19;
+        int fraction = 0;
+        if (buffer.get(position) == '.') {
+            int fractionDigits = 0;
+            for (position++; position < end && isDigit(buffer.get(position)); position++, fractionDigits++) {
+                if (fractionDigits == 9) {
+                    return false;
+                }
+                fraction = fraction * 10 + (buffer.get(position) - '0');
+            }
+            if (fractionDigits == 0) {
+                return false;
+            }
+            for (int i = fractionDigits; i < 9; i++) {
+                fraction *= 10;
+            }
+        }
+        int offsetSeconds;
+        if (position == end - 1 && buffer.get(position) == 'Z') {
+            offsetSeconds = 0;
+        } else if (position == end - 6 && (buffer.get(position) == '+' || buffer.get(position) == '-')
+                && buffer.get(position + 3) == ':') {
+            int offsetHours = digits(buffer, position + 1, 2);
+            int offsetMinutes = digits(buffer, position + 4, 2);
+            if (offsetHours < 0 || offsetHours > 18 || offsetMinutes < 0 || offsetMinutes > 59) {
+                return false;
+            }
+            offsetSeconds = (buffer.get(position) == '-' ? -1 : 1) * (offsetHours * 3600 + offsetMinutes * 60);
+        } else {
+            return false;
+        }
+        epochSecond = epochDay(year, month, day) * 86400 + hour * 3600L + minute * 60L + second - offsetSeconds;
+        nanos = fraction;
+        return true;
+    }
+
+    /**
+     * Parses an optionally signed decimal without exponent of up to 18 significant digits.
+     */
+    boolean parseReading(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        boolean negative = position < end && buffer.get(position) == '-';
+        if (negative) {
+            position++;
+        }
+        long unscaled = 0;
+        int digits = 0;
+        int scale = -1;
+        for (; position < end; position++) {
+            byte b = buffer.get(position);
+            if (b == '.' && scale < 0) {
+                scale = 0;
+            } else if (isDigit(b)) {
+                if (++digits > 18) {
+                    return false;
+                }
+                unscaled = unscaled * 10 + (b - '0');
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else {
+                return false;
+            }
+        }
+        if (digits == 0 || scale == 0) {
+            return false;
+        }
+        unscaledReading = negative ? -unscaled : unscaled;
+        readingScale = Math.max(scale, 0);
+        return true;
+    }
+
+    private boolean splitCsv(ByteBuffer buffer, int start, int end) {
+        int firstComma = indexOf(buffer, start, end, (byte) ',');
+        int secondComma = firstComma < 0 ? -1 : indexOf(buffer, firstComma + 1, end, (byte) ',');
+        if (secondComma < 0 || firstComma == start) {
+            return false;
+        }
+        meterIdStart = start;
+        meterIdEnd = firstComma;
+        timeStart = firstComma + 1;
+        timeEnd = secondComma;
+        readingStart = secondComma + 1;
+        readingEnd = end;
+        return true;
+    }
+
+    private boolean splitJson(ByteBuffer buffer, int start, int end) {
+        meterIdStart = -1;
+        timeStart = -1;
+        readingStart = -1;
+        int position = start + 1;
+        while (position < end) {
+            position = skipWhitespace(buffer, position, end);
+            if (position >= end || buffer.get(position) == '}') {
+                break;
+            }
+            if (buffer.get(position) != '"') {
+                return false;
+            }
+            int keyStart = position + 1;
+            int keyEnd = indexOf(buffer, keyStart, end, (byte) '"');
+            if (keyEnd < 0) {
+                return false;
+            }
+            position = skipWhitespace(buffer, keyEnd + 1, end);
+            if (position >= end || buffer.get(position) != ':') {
+                return false;
+            }
+            position = skipWhitespace(buffer, position + 1, end);
+            if (position >= end) {
+                return false;
+            }
+            int valueStart;
+            int valueEnd;
+            if (buffer.get(position) == '"') {
+                valueStart = position + 1;
+                valueEnd = indexOf(buffer, valueStart, end, (byte) '"');
+                if (valueEnd < 0 || indexOf(buffer, valueStart, valueEnd, (byte) '\\') >= 0) {
+                    return false;
+                }
+                position = valueEnd + 1;
+            } else {
+                valueStart = position;
+                while (position < end && buffer.get(position) != ',' && buffer.get(position) != '}'
+                        && !isWhitespace(buffer.get(position))) {
+                    position++;
+                }
+                valueEnd = position;
+            }
+            if (matches(buffer, keyStart, keyEnd, SMART_METER_ID_KEY)) {
+                meterIdStart = valueStart;
+                meterIdEnd = valueEnd;
+            } else if (matches(buffer, keyStart, keyEnd, TIME_KEY)) {
+                timeStart = valueStart;
+                timeEnd = valueEnd;
+            } else if (matches(buffer, keyStart, keyEnd, READING_KEY)) {
+                readingStart = valueStart;
+                readingEnd = valueEnd;
+            }
+            position = skipWhitespace(buffer, position, end);
+            if (position < end && buffer.get(position) == ',') {
+                position++;
+            }
+        }
+        return meterIdStart >= 0 && meterIdEnd > meterIdStart && timeStart >= 0 && readingStart >= 0;
+    }
+
+    // days since 1970-01-01 of a proleptic Gregorian date
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+        return month == 2 && leapYear ? 29 : DAYS_IN_MONTH[month - 1];
+    }
+
+    // the value of count decimal digits, or -1 when any of them is not a digit
+    private static int digits(ByteBuffer buffer, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            byte b = buffer.get(i);
+            if (!isDigit(b)) {
+                return -1;
+            }
+            value = value * 10 + (b - '0');
+        }
+        return value;
+    }
+
+    private static int indexOf(ByteBuffer buffer, int start, int end, byte b) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, int end, byte[] expected) {
+        if (end - start != expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(start + i) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(ByteBuffer buffer, int position, int end) {
+        while (position < end && isWhitespace(buffer.get(position))) {
+            position++;
+        }
+        return position;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+}
@@ -1,19 +1,121 @@
 package uk.tw.energy.service;
 
 import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.PricePlanAssignment;
+import uk.tw.energy.store.HandleTable;
+import uk.tw.energy.store.MeterIdDictionary;
 
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @Service
 public class AccountService {
 
-    private final Map<String, String> smartMeterToPricePlanAccounts;
+    private final MeterIdDictionary meterIds;
+    private final List<String> pricePlanIds = new CopyOnWriteArrayList<>();
+    private final HandleTable<PricePlanTimeline> timelinesByMeter = new HandleTable<>();
 
-    public AccountService(Map<String, String> smartMeterToPricePlanAccounts) {
-        this.smartMeterToPricePlanAccounts = smartMeterToPricePlanAccounts;
+    public AccountService(Map<String, String> smartMeterToPricePlanAccounts, MeterIdDictionary meterIds) {
+        this.meterIds = meterIds;
+        smartMeterToPricePlanAccounts.forEach((smartMeterId, pricePlanId) ->
+                assignPricePlan(smartMeterId, pricePlanId, null, null));
     }
 
     public String getPricePlanIdForSmartMeterId(String smartMeterId) {
-        return smartMeterToPricePlanAccounts.get(smartMeterId);
+        return getPricePlanIdForSmartMeterId(smartMeterId, Instant.now());
+    }
+
+    public String getPricePlanIdForSmartMeterId(String smartMeterId, Instant time) {
+        return pricePlanId(timelineOf(smartMeterId).planIndexAt(time));
+    }
+
+    /**
+     * Like {@link #getPricePlanIdForSmartMeterId(String)}, for a smart meter whose handle the caller resolved once
+     * for the whole request.
+     */
+    public String getPricePlanIdForSmartMeterId(int meterHandle) {
+        return pricePlanId(timelineOf(meterHandle).planIndexAt(Instant.now()));
+    }
+
+    /**
+     * @return the plans in force for the smart meter during {@code [from, to)}, in time order and clipped to it
+     */
+    public List<PricePlanAssignment> getPricePlanAssignments(String smartMeterId, Instant from, Instant to) {
+        List<PricePlanAssignment> assignments = new ArrayList<>();
+        timelineOf(smartMeterId).forEachStretch(from, to, (planIndex, stretchFrom, stretchTo) ->
+                assignments.add(new PricePlanAssignment(pricePlanId(planIndex), stretchFrom, stretchTo)));
+        return assignments;
+    }
+
+    /**
+     * @return every plan the smart meter has been assigned, with open ends left null
+     */
+    public List<PricePlanAssignment> getPricePlanAssignments(String smartMeterId) {
+        List<PricePlanAssignment> assignments = new ArrayList<>();
+        timelineOf(smartMeterId).forEachStretch(Instant.MIN, Instant.MAX, (planIndex, stretchFrom, stretchTo) ->
+                assignments.add(new PricePlanAssignment(pricePlanId(planIndex),
+                        stretchFrom.equals(Instant.MIN) ? null : stretchFrom,
+                        stretchTo.equals(Instant.MAX) ? null : stretchTo)));
+        return assignments;
+    }
+
+    /**
+     * @return how many times the smart meter has been assigned a plan
+     */
+    public long getPricePlanVersion(String smartMeterId) {
+        return timelineOf(smartMeterId).version();
+    }
+
+    public long getPricePlanVersion(int meterHandle) {
+        return timelineOf(meterHandle).version();
+    }
+
+    public Instant getPricePlansAssignedAt(String smartMeterId) {
+        return timelineOf(smartMeterId).assignedAt();
+    }
+
+    public Instant getPricePlansAssignedAt(int meterHandle) {
+        return timelineOf(meterHandle).assignedAt();
+    }
+
+    /**
+     * Puts the smart meter on the plan from {@code effectiveFrom} (null for since forever) until {@code effectiveTo}
+     * (null for until further notice), replacing whatever plan it was on during that time.
+     */
+    public synchronized void assignPricePlan(String smartMeterId, String pricePlanId, Instant effectiveFrom, Instant effectiveTo) {
+        Instant from = effectiveFrom == null ? Instant.MIN : effectiveFrom;
+        Instant to = effectiveTo == null ? Instant.MAX : effectiveTo;
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("A price plan must be effective from before it is effective to");
+        }
+        int handle = meterIds.intern(smartMeterId);
+        PricePlanTimeline timeline = timelinesByMeter.get(handle);
+        timelinesByMeter.set(handle, (timeline == null ? PricePlanTimeline.EMPTY : timeline)
+                .assign(pricePlanIndex(pricePlanId), from, to));
+    }
+
+    private PricePlanTimeline timelineOf(String smartMeterId) {
+        return timelineOf(meterIds.handleOf(smartMeterId));
+    }
+
+    private PricePlanTimeline timelineOf(int handle) {
+        PricePlanTimeline timeline = handle == MeterIdDictionary.UNKNOWN ? null : timelinesByMeter.get(handle);
+        return timeline == null ? PricePlanTimeline.EMPTY : timeline;
+    }
+
+    private String pricePlanId(short planIndex) {
+        return planIndex == PricePlanTimeline.NO_PRICE_PLAN ? null : pricePlanIds.get(planIndex);
+    }
+
+    private short pricePlanIndex(String pricePlanId) {
+        int index = pricePlanIds.indexOf(pricePlanId);
+        if (index < 0) {
+            index = pricePlanIds.size();
+            pricePlanIds.add(pricePlanId);
+        }
+        return (short) index;
     }
 }
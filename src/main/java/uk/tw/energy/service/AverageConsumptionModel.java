@@ -0,0 +1,25 @@
+package uk.tw.energy.service;
+
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Average reading multiplied by the time between the first and the last reading.
+ */
+public class AverageConsumptionModel implements ConsumptionModel {
+
+    @Override
+    public BigDecimal consumedKwh(ReadingWindow readingWindow) {
+        if (readingWindow.getCount() == 0) {
+            return BigDecimal.ZERO;
+        }
+        BigDecimal average = BigDecimal.valueOf(readingWindow.getSummedReadings() / readingWindow.getCount());
+        return average.multiply(hours(readingWindow.getTimeElapsed()));
+    }
+
+    private static BigDecimal hours(Duration timeElapsed) {
+        return BigDecimal.valueOf(timeElapsed.getSeconds() / 3600.0);
+    }
+}
@@ -0,0 +1,57 @@
+package uk.tw.energy.service;
+
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Prices the consumption of a window against a plan. Consumption bands start over every billing period, a calendar
+ * month in the system time zone, so a window is split where months begin and each part is priced from what the meter
+ * had consumed since its month began. Both are read off the meter's prefix sums, which keeps a window to a few lookups
+ * per month it spans, however many readings it holds. The stretch between the last reading of a month and the first of
+ * the next is billed to the later month, so the parts of a window add up to the whole of it.
+ */
+final class BillingPeriodPricing {
+
+    private BillingPeriodPricing() {
+    }
+
+    static BigDecimal cost(PricePlan pricePlan, ReadingWindow window, ConsumptionModel consumptionModel) {
+        return cost(pricePlan, window, consumptionModel.consumedKwh(window), consumptionModel);
+    }
+
+    /**
+     * @param consumedKwh what the model makes of the whole window, which prices a plan without bands on its own
+     * @return the cost, unrounded
+     */
+    static BigDecimal cost(PricePlan pricePlan, ReadingWindow window, BigDecimal consumedKwh, ConsumptionModel consumptionModel) {
+        if (!pricePlan.hasConsumptionBands()) {
+            return consumedKwh.multiply(pricePlan.getUnitRate());
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        BigDecimal cost = BigDecimal.ZERO;
+        Instant end = window.getLast().plusNanos(1);
+        Instant from = window.getFirst();
+        while (from.isBefore(end)) {
+            ZonedDateTime monthStart = from.atZone(zone).toLocalDate().withDayOfMonth(1).atStartOfDay(zone);
+            Instant nextMonth = monthStart.plusMonths(1).toInstant();
+            Instant to = nextMonth.isBefore(end) ? nextMonth : end;
+            Instant periodStart = window.lastReadingBefore(monthStart.toInstant()).orElse(monthStart.toInstant());
+            boolean firstPart = from.equals(window.getFirst());
+            ReadingWindow part = firstPart && to.equals(end) ? window : window.within(firstPart ? from : periodStart, to);
+            if (part.getCount() > 1) {
+                BigDecimal consumedBefore = firstPart
+                        ? consumptionModel.consumedKwh(window.within(periodStart, from.plusNanos(1)))
+                        : BigDecimal.ZERO;
+                BigDecimal consumedInPart = part == window ? consumedKwh : consumptionModel.consumedKwh(part);
+                cost = cost.add(pricePlan.getCostOfConsumption(consumedBefore, consumedBefore.add(consumedInPart)));
+            }
+            from = to;
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,13 @@
+package uk.tw.energy.service;
+
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+
+/**
+ * Turns power readings (kW) into energy consumed (kWh).
+ */
+public interface ConsumptionModel {
+
+    BigDecimal consumedKwh(ReadingWindow readingWindow);
+}
@@ -0,0 +1,155 @@
+package uk.tw.energy.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool for CPU-bound cost computations. Request threads park on the result, so with virtual threads
+ * enabled the number of open requests is independent of the number of threads doing the arithmetic. Identical
+ * requests arriving together can share a single computation.
+ */
+@Component
+public class CostComputationExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final ConcurrentHashMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    public CostComputationExecutor(@Value("${joi.compute.threads:0}") int threads,
+                                   @Value("${joi.compute.queue-capacity:1024}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), computeThreadFactory(), new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    public <T> T compute(Supplier<T> computation) {
+        return join(CompletableFuture.supplyAsync(computation, executor));
+    }
+
+    /**
+     * Like {@link #compute(Supplier)}, except that callers asking with the same key while a computation for it is
+     * still running share that computation and its result (or exception) instead of queueing their own. The key is
+     * expected to name the query and the version of the data it reads, so callers only ever share with callers that
+     * would have computed the same result, and nothing is kept once the computation finishes.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T compute(String key, Supplier<T> computation) {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            return (T) join(running);
+        }
+        try {
+            CompletableFuture.supplyAsync(computation, executor).whenComplete((result, failure) -> {
+                inFlight.remove(key, flight);
+                if (failure == null) {
+                    flight.complete(result);
+                } else {
+                    flight.completeExceptionally(failure);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        return (T) join(flight);
+    }
+
+    /**
+     * Computes one result per item on the pool and hands each result, or the exception computing it threw, to
+     * {@code onResult} on the calling thread as soon as it is ready. At most one item per pool thread is computed at a
+     * time, so that a large batch neither fills the queue nor holds other requests back for long. An item the pool
+     * has no room for while none of the batch is running is handed over with the {@link RejectedExecutionException}.
+     */
+    public <I, T> void computeEach(List<I> items, Function<I, T> computation, ItemResult<I, T> onResult) {
+        BlockingQueue<Runnable> completions = new LinkedBlockingQueue<>();
+        int parallelism = executor.getMaximumPoolSize();
+        int next = 0;
+        int running = 0;
+        while (next < items.size() || running > 0) {
+            while (running < parallelism && next < items.size()) {
+                I item = items.get(next);
+                try {
+                    CompletableFuture.supplyAsync(() -> computation.apply(item), executor).whenComplete(
+                            (result, failure) -> completions.add(() -> onResult.accept(item, result, unwrap(failure))));
+                    running++;
+                    next++;
+                } catch (RejectedExecutionException e) {
+                    // a computation of the batch completes just before its thread is free again, so while any is
+                    // running the item is tried again once one has completed
+                    if (running > 0) {
+                        break;
+                    }
+                    next++;
+                    onResult.accept(item, null, e);
+                }
+            }
+            if (running > 0) {
+                try {
+                    completions.take().run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CompletionException(e);
+                }
+                running--;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface ItemResult<I, T> {
+        /**
+         * @param failure the exception computing the item threw, in which case {@code result} is null
+         */
+        void accept(I item, T result, RuntimeException failure);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private static <T> T join(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable failure) {
+        if (failure == null) {
+            return null;
+        }
+        Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+        return cause instanceof RuntimeException ? (RuntimeException) cause : new CompletionException(cause);
+    }
+
+    private static ThreadFactory computeThreadFactory() {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "cost-compute-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package uk.tw.energy.service;
+
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.FleetAggregate;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.domain.PricePlanAssignment;
+import uk.tw.energy.store.LoadProfile;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Consumption and cost of every meter on this node over a time range, grouped by price plan or by supplier, and the
+ * load profile of the whole fleet. Each shard reduces its own meters into its own accumulators on its own thread, so
+ * nothing is shared until the per-shard results are merged.
+ */
+@Service
+public class FleetAggregateService {
+
+    public enum Grouping {
+        PRICE_PLAN(PricePlan::getPlanName),
+        SUPPLIER(PricePlan::getEnergySupplier);
+
+        private final Function<PricePlan, String> key;
+
+        Grouping(Function<PricePlan, String> key) {
+            this.key = key;
+        }
+    }
+
+    private final MeterReadingStore meterReadingStore;
+    private final AccountService accountService;
+    private final ConsumptionModel consumptionModel;
+    private final Map<String, PricePlan> pricePlansById;
+
+    public FleetAggregateService(MeterReadingStore meterReadingStore, AccountService accountService,
+                                 ConsumptionModel consumptionModel, List<PricePlan> pricePlans) {
+        this.meterReadingStore = meterReadingStore;
+        this.accountService = accountService;
+        this.consumptionModel = consumptionModel;
+        this.pricePlansById = pricePlans.stream().collect(Collectors.toMap(PricePlan::getPlanName, Function.identity()));
+    }
+
+    public List<FleetAggregate> aggregate(Grouping grouping, Instant from, Instant to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("The range must start before it ends");
+        }
+        List<Map<String, Accumulator>> shardAggregates = meterReadingStore.scanShards(shard -> {
+            Map<String, Accumulator> aggregates = new HashMap<>();
+            shard.forEach((smartMeterId, history) -> {
+                for (PricePlanAssignment assignment : accountService.getPricePlanAssignments(smartMeterId, from, to)) {
+                    PricePlan pricePlan = pricePlansById.get(assignment.getPricePlanId());
+                    ReadingWindow window = history.window(assignment.getEffectiveFrom(), assignment.getEffectiveTo());
+                    if (pricePlan == null || window.getCount() < 2) {
+                        continue;
+                    }
+                    BigDecimal consumedKwh = consumptionModel.consumedKwh(window);
+                    aggregates.computeIfAbsent(grouping.key.apply(pricePlan), key -> new Accumulator())
+                            .add(smartMeterId, consumedKwh, BillingPeriodPricing.cost(pricePlan, window, consumedKwh, consumptionModel));
+                }
+            });
+            return aggregates;
+        });
+
+        Map<String, Accumulator> fleet = new TreeMap<>();
+        shardAggregates.forEach(aggregates -> aggregates.forEach((key, accumulator) ->
+                fleet.merge(key, accumulator, Accumulator::merge)));
+        return fleet.entrySet().stream()
+                .map(entry -> entry.getValue().toAggregate(entry.getKey()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return the load profiles of every meter on this node merged into one
+     */
+    public LoadProfile loadProfile() {
+        LoadProfile fleet = new LoadProfile();
+        meterReadingStore.scanShards(shard -> {
+            LoadProfile profile = new LoadProfile();
+            shard.forEach((smartMeterId, history) -> history.mergeLoadProfileInto(profile));
+            return profile;
+        }).forEach(fleet::merge);
+        return fleet;
+    }
+
+    private static class Accumulator {
+
+        private long meters;
+        private String lastSmartMeterId;
+        private BigDecimal consumedKwh = BigDecimal.ZERO;
+        private BigDecimal cost = BigDecimal.ZERO;
+
+        // a meter's stretches arrive one after another, so comparing with the last meter counts each meter once
+        private void add(String smartMeterId, BigDecimal kwh, BigDecimal kwhCost) {
+            if (!smartMeterId.equals(lastSmartMeterId)) {
+                meters++;
+                lastSmartMeterId = smartMeterId;
+            }
+            consumedKwh = consumedKwh.add(kwh);
+            cost = cost.add(kwhCost);
+        }
+
+        // meters live in exactly one shard, so merging shards never counts a meter twice
+        private Accumulator merge(Accumulator other) {
+            meters += other.meters;
+            consumedKwh = consumedKwh.add(other.consumedKwh);
+            cost = cost.add(other.cost);
+            return this;
+        }
+
+        private FleetAggregate toAggregate(String key) {
+            return FleetAggregate.builder()
+                    .key(key)
+                    .meters(meters)
+                    .consumedKwh(consumedKwh.setScale(3, RoundingMode.HALF_UP))
+                    .cost(cost.setScale(1, RoundingMode.HALF_UP))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package uk.tw.energy.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Service;
+import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundException;
+import uk.tw.energy.domain.LiveCost;
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pushes the running cost of a smart meter to its subscribers whenever new readings are stored. The cost is read off
+ * the meter's prefix sums, which storing the readings already brought up to date, and is computed once per update
+ * for all subscribers of the meter. Updates of a meter that arrive while one is pending are folded into it. Updates
+ * are sent from a virtual thread, one meter at a time on one thread, so subscribers hold no thread of their own and
+ * see the updates of a meter in the order they were stored.
+ */
+@Service
+public class LiveCostService {
+
+    private final MeterReadingService meterReadingService;
+    private final PricePlanService pricePlanService;
+    private final AccountService accountService;
+    private final Map<String, List<Consumer<LiveCost>>> subscribers = new ConcurrentHashMap<>();
+    private final Set<String> pendingMeters = ConcurrentHashMap.newKeySet();
+    private final Set<String> publishingMeters = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final ExecutorService dispatcher = Executors.newVirtualThreadPerTaskExecutor();
+
+    public LiveCostService(MeterReadingService meterReadingService, PricePlanService pricePlanService,
+                           AccountService accountService, MeterRegistry meterRegistry) {
+        this.meterReadingService = meterReadingService;
+        this.pricePlanService = pricePlanService;
+        this.accountService = accountService;
+        Gauge.builder("joi.live.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open live cost subscriptions")
+                .register(meterRegistry);
+        meterReadingService.addReadingsListener(this::readingsStored);
+    }
+
+    /**
+     * Sends the current cost straight away and again after every batch of new readings. A subscriber that throws is
+     * dropped.
+     *
+     * @return cancels the subscription
+     */
+    public Runnable subscribe(String smartMeterId, Consumer<LiveCost> subscriber) {
+        if (meterReadingService.getReadingWindow(smartMeterId).isEmpty()) {
+            throw new ReadingsNotFoundException();
+        }
+        subscribers.compute(smartMeterId, (id, meterSubscribers) -> {
+            List<Consumer<LiveCost>> updated = meterSubscribers == null ? new CopyOnWriteArrayList<>() : meterSubscribers;
+            updated.add(subscriber);
+            return updated;
+        });
+        subscriberCount.incrementAndGet();
+        readingsStored(smartMeterId);
+        return () -> unsubscribe(smartMeterId, subscriber);
+    }
+
+    public LiveCost getLiveCost(String smartMeterId) {
+        ReadingWindow window = meterReadingService.getReadingWindow(smartMeterId).orElseThrow(ReadingsNotFoundException::new);
+        String pricePlanId = accountService.getPricePlanIdForSmartMeterId(smartMeterId);
+        Map<String, BigDecimal> pricePlanComparisons = window.getCount() < 2
+                ? Collections.emptyMap()
+                : pricePlanService.getCostOfReadingWindowForEachPricePlan(window);
+        return LiveCost.builder()
+                .smartMeterId(smartMeterId)
+                .pricePlanId(pricePlanId)
+                .readings(window.getCount())
+                .lastReadingTime(window.getCount() == 0 ? null : window.getLast())
+                .currentCost(pricePlanId == null ? null : pricePlanComparisons.get(pricePlanId))
+                .pricePlanComparisons(pricePlanComparisons)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdown();
+    }
+
+    private void readingsStored(String smartMeterId) {
+        if (subscribers.containsKey(smartMeterId) && pendingMeters.add(smartMeterId) && publishingMeters.add(smartMeterId)) {
+            dispatcher.execute(() -> publishPending(smartMeterId));
+        }
+    }
+
+    // only the thread that set the publishing flag sends, and it checks for a pending update again after clearing the
+    // flag, so an update pending while it let go is sent either by it or by the thread that set the flag next
+    private void publishPending(String smartMeterId) {
+        do {
+            while (pendingMeters.remove(smartMeterId)) {
+                publish(smartMeterId);
+            }
+            publishingMeters.remove(smartMeterId);
+        } while (pendingMeters.contains(smartMeterId) && publishingMeters.add(smartMeterId));
+    }
+
+    private void publish(String smartMeterId) {
+        List<Consumer<LiveCost>> meterSubscribers = subscribers.get(smartMeterId);
+        if (meterSubscribers == null) {
+            return;
+        }
+        LiveCost liveCost = getLiveCost(smartMeterId);
+        for (Consumer<LiveCost> subscriber : meterSubscribers) {
+            try {
+                subscriber.accept(liveCost);
+            } catch (RuntimeException e) {
+                unsubscribe(smartMeterId, subscriber);
+            }
+        }
+    }
+
+    private void unsubscribe(String smartMeterId, Consumer<LiveCost> subscriber) {
+        subscribers.computeIfPresent(smartMeterId, (id, meterSubscribers) -> {
+            if (meterSubscribers.remove(subscriber)) {
+                subscriberCount.decrementAndGet();
+            }
+            return meterSubscribers.isEmpty() ? null : meterSubscribers;
+        });
+    }
+}
@@ -1,10 +1,16 @@
 package uk.tw.energy.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 import uk.tw.energy.adapter.SmartMeter.controller.exception.PricePlanNotMatchedException;
 import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundException;
 import uk.tw.energy.domain.DayOfWeekCost;
 import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.PricePlanAssignment;
+import uk.tw.energy.store.MeterReadingHistory;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingWindow;
 
 import java.math.BigDecimal;
 import java.time.DayOfWeek;
@@ -14,37 +20,51 @@ import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
 public class MeterReadingCostService {
-    private final Map<String, List<ElectricityReading>> meterAssociatedReadings;
+    private final MeterReadingStore meterReadingStore;
     private final AccountService accountService;
     private final PricePlanService pricePlanService;
+    private final Timer lastWeekFilterTimer;
+    private final Timer groupByDayOfWeekTimer;
+    private final Timer groupByDateTimer;
 
-    public MeterReadingCostService(Map<String, List<ElectricityReading>> meterAssociatedReadings,
+    public MeterReadingCostService(MeterReadingStore meterReadingStore,
                                    AccountService accountService,
-                                   PricePlanService pricePlanService) {
-        this.meterAssociatedReadings = meterAssociatedReadings;
+                                   PricePlanService pricePlanService,
+                                   MeterRegistry meterRegistry) {
+        this.meterReadingStore = meterReadingStore;
         this.accountService = accountService;
         this.pricePlanService = pricePlanService;
+        this.lastWeekFilterTimer = Timer.builder("joi.readings.grouping")
+                .description("Time spent grouping readings before pricing them")
+                .tag("stage", "last-week")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+        this.groupByDayOfWeekTimer = Timer.builder("joi.readings.grouping")
+                .description("Time spent grouping readings before pricing them")
+                .tag("stage", "day-of-week")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+        this.groupByDateTimer = Timer.builder("joi.readings.grouping")
+                .description("Time spent grouping readings before pricing them")
+                .tag("stage", "date")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
     }
 
     public BigDecimal getLastWeekCostOfTheDate(String smartMeterId, Instant enteredDate) {
-        List<ElectricityReading> thisReadings = meterAssociatedReadings.get(smartMeterId);
-        if (thisReadings == null) {throw new ReadingsNotFoundException();}
-        String pricePlanId = accountService.getPricePlanIdForSmartMeterId(smartMeterId);
-        if (pricePlanId==null) {throw new PricePlanNotMatchedException(smartMeterId);}
-        List<ElectricityReading> lastWeekReadings = thisReadings.stream()
-                .filter(reading -> isWithinLastWeek(reading.getTime(), enteredDate))
-                .collect(Collectors.toList());
-        return pricePlanService.calculateCost(lastWeekReadings, pricePlanId);
-    }
-
-    private boolean isWithinLastWeek(Instant readingTime, Instant enteredDate) {
+        MeterReadingHistory history = meterReadingStore.find(smartMeterId)
+                .orElseThrow(ReadingsNotFoundException::new);
+        long filterStart = System.nanoTime();
         LocalDateTime thisWeekSunday = LocalDateTime.ofInstant(enteredDate, ZoneId.systemDefault())
                 .with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY));
         LocalDateTime lastWeekSunday = thisWeekSunday
@@ -55,25 +75,141 @@ public class MeterReadingCostService {
                 .withNano(0);
         Instant lastWeekStart = lastWeekSunday.toInstant(ZoneOffset.UTC);
         Instant lastWeekEnd = lastWeekStart.plus(7, ChronoUnit.DAYS);
-        return readingTime.isAfter(lastWeekStart) && readingTime.isBefore(lastWeekEnd);
+        // both ends of last week are exclusive
+        Instant from = lastWeekStart.plusNanos(1);
+        List<PricePlanAssignment> assignments = accountService.getPricePlanAssignments(smartMeterId, from, lastWeekEnd);
+        if (assignments.isEmpty()) {throw new PricePlanNotMatchedException(smartMeterId);}
+        List<ReadingWindow> lastWeekReadings = assignments.stream()
+                .map(assignment -> history.window(max(from, startOf(assignment)), min(lastWeekEnd, endOf(assignment))))
+                .collect(Collectors.toList());
+        lastWeekFilterTimer.record(System.nanoTime() - filterStart, TimeUnit.NANOSECONDS);
+
+        if (assignments.size() == 1) {
+            return pricePlanService.calculateCost(lastWeekReadings.get(0), assignments.get(0).getPricePlanId());
+        }
+        // a plan held for less than two readings was not held for any measurable consumption
+        BigDecimal cost = null;
+        for (int i = 0; i < assignments.size(); i++) {
+            if (lastWeekReadings.get(i).getCount() > 1) {
+                BigDecimal planCost = pricePlanService.calculateCost(lastWeekReadings.get(i), assignments.get(i).getPricePlanId());
+                cost = cost == null ? planCost : cost.add(planCost);
+            }
+        }
+        if (cost == null) {throw new ReadingsNotFoundException();}
+        return cost;
     }
 
     public List<DayOfWeekCost> getDayOfWeekCost(String smartMeterId) {
-        List<ElectricityReading> readings = meterAssociatedReadings.get(smartMeterId);
+        MeterReadingHistory history = meterReadingStore.find(smartMeterId)
+                .orElseThrow(ReadingsNotFoundException::new);
+        List<ElectricityReading> readings = history.snapshot();
         String pricePlanId = accountService.getPricePlanIdForSmartMeterId(smartMeterId);
+        if (pricePlanId==null) {throw new PricePlanNotMatchedException(smartMeterId);}
 
+        long groupingStart = System.nanoTime();
         Map<DayOfWeek, List<ElectricityReading>> dailyOfWeekReadings = readings.stream()
                 .collect(Collectors.groupingBy(
                         reading -> reading.getTime().atZone(ZoneId.systemDefault()).toLocalDate().getDayOfWeek(),
                         TreeMap::new, Collectors.toList()));
+        groupByDayOfWeekTimer.record(System.nanoTime() - groupingStart, TimeUnit.NANOSECONDS);
+
+        long windowStart = System.nanoTime();
+        Map<DayOfWeek, DailyWindows> dailyOfWeekWindows = dailyWindowsByDayOfWeek(smartMeterId, history);
+        groupByDateTimer.record(System.nanoTime() - windowStart, TimeUnit.NANOSECONDS);
 
         return dailyOfWeekReadings.keySet().stream()
                 .map(dayOfWeek -> DayOfWeekCost.builder()
                         .dayOfWeek(dayOfWeek)
-                        .cost(pricePlanService.calculateCostByDateAndAddUp(dailyOfWeekReadings.get(dayOfWeek), pricePlanId))
-                        .currentPricePlanRank(pricePlanService.getRankForCurrentPricePlan(dailyOfWeekReadings.get(dayOfWeek), pricePlanId))
+                        .cost(dailyOfWeekWindows.get(dayOfWeek).byPricePlan.entrySet().stream()
+                                .map(plan -> pricePlanService.calculateCostByDateAndAddUp(plan.getValue(), plan.getKey()))
+                                .reduce(BigDecimal::add)
+                                .orElse(BigDecimal.ZERO))
+                        .currentPricePlanRank(pricePlanService.getRankForCurrentPricePlan(dailyOfWeekWindows.get(dayOfWeek).all, pricePlanId))
                         .dailyElectricityReadings(dailyOfWeekReadings.get(dayOfWeek))
                         .build())
                 .collect(Collectors.toList());
     }
+
+    // Days are priced per UTC date within each local day of week, so the history is cut at every local and every UTC
+    // midnight; those day windows rank the current plan. Each day is cut again at every plan switch to price it on the
+    // plan in force at the time, walking the plan assignments once. The stretch from the last reading before a switch
+    // to the first one after it is billed to the later plan, and a plan held for less than two readings of a day that
+    // was switched is skipped, as it was not held for any measurable consumption.
+    private Map<DayOfWeek, DailyWindows> dailyWindowsByDayOfWeek(String smartMeterId, MeterReadingHistory history) {
+        Map<DayOfWeek, DailyWindows> windows = new TreeMap<>();
+        ReadingWindow all = history.window();
+        if (all.getCount() == 0) {
+            return windows;
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        Instant end = all.getLast().plusNanos(1);
+        Instant dayFrom = all.getFirst();
+        List<PricePlanAssignment> assignments = accountService.getPricePlanAssignments(smartMeterId, dayFrom, end);
+        int current = 0;
+        while (dayFrom.isBefore(end)) {
+            Instant dayTo = min(end, min(nextMidnight(dayFrom, zone), nextMidnight(dayFrom, ZoneOffset.UTC)));
+            ReadingWindow day = history.window(dayFrom, dayTo);
+            if (day.getCount() > 0) {
+                DailyWindows daily = windows.computeIfAbsent(dayFrom.atZone(zone).getDayOfWeek(), dayOfWeek -> new DailyWindows());
+                daily.all.add(day);
+                List<Map.Entry<String, ReadingWindow>> pieces = new ArrayList<>();
+                boolean switched = false;
+                Instant from = dayFrom;
+                while (from.isBefore(dayTo)) {
+                    while (current < assignments.size() && !endOf(assignments.get(current)).isAfter(from)) {
+                        current++;
+                    }
+                    Instant to = dayTo;
+                    String pricePlanId = null;
+                    if (current < assignments.size()) {
+                        PricePlanAssignment assignment = assignments.get(current);
+                        if (startOf(assignment).isAfter(from)) {
+                            to = min(to, startOf(assignment));
+                        } else {
+                            to = min(to, endOf(assignment));
+                            pricePlanId = assignment.getPricePlanId();
+                        }
+                    }
+                    if (pricePlanId != null) {
+                        Instant pieceFrom = from.equals(dayFrom) ? from : max(dayFrom, history.lastReadingBefore(from).orElse(from));
+                        pieces.add(Map.entry(pricePlanId, history.window(pieceFrom, to)));
+                    }
+                    switched |= to.isBefore(dayTo);
+                    from = to;
+                }
+                for (Map.Entry<String, ReadingWindow> piece : pieces) {
+                    if (piece.getValue().getCount() > (switched ? 1 : 0)) {
+                        daily.byPricePlan.computeIfAbsent(piece.getKey(), plan -> new ArrayList<>()).add(piece.getValue());
+                    }
+                }
+            }
+            dayFrom = dayTo;
+        }
+        return windows;
+    }
+
+    private static class DailyWindows {
+        private final List<ReadingWindow> all = new ArrayList<>();
+        private final Map<String, List<ReadingWindow>> byPricePlan = new LinkedHashMap<>();
+    }
+
+    private static Instant startOf(PricePlanAssignment assignment) {
+        return assignment.getEffectiveFrom() == null ? Instant.MIN : assignment.getEffectiveFrom();
+    }
+
+    private static Instant endOf(PricePlanAssignment assignment) {
+        return assignment.getEffectiveTo() == null ? Instant.MAX : assignment.getEffectiveTo();
+    }
+
+    private static Instant nextMidnight(Instant time, ZoneId zone) {
+        return time.atZone(zone).toLocalDate().plusDays(1).atStartOfDay(zone).toInstant();
+    }
+
+    private static Instant min(Instant first, Instant second) {
+        return first.isBefore(second) ? first : second;
+    }
+
+    private static Instant max(Instant first, Instant second) {
+        return first.isAfter(second) ? first : second;
+    }
 }
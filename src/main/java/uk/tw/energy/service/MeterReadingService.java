@@ -1,30 +1,147 @@
 package uk.tw.energy.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.stereotype.Service;
 import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.store.LoadProfile;
+import uk.tw.energy.store.MeterReadingHistory;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingChangeFeed;
+import uk.tw.energy.store.ReadingExtremes;
+import uk.tw.energy.store.ReadingFeedPage;
+import uk.tw.energy.store.ReadingWindow;
 
-import java.util.ArrayList;
+import java.time.Instant;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 @Service
 public class MeterReadingService {
 
-    private final Map<String, List<ElectricityReading>> meterAssociatedReadings;
+    private final MeterReadingStore meterReadingStore;
+    private final ReadingChangeFeed changeFeed;
+    private final MeterRegistry meterRegistry;
+    private final Counter readingsIngested;
+    private final Counter duplicateReadings;
+    private final List<Consumer<String>> readingsListeners = new CopyOnWriteArrayList<>();
 
-    public MeterReadingService(Map<String, List<ElectricityReading>> meterAssociatedReadings) {
-        this.meterAssociatedReadings = meterAssociatedReadings;
+    public MeterReadingService(MeterReadingStore meterReadingStore, ReadingChangeFeed changeFeed,
+                               MeterRegistry meterRegistry) {
+        this.meterReadingStore = meterReadingStore;
+        this.changeFeed = changeFeed;
+        this.meterRegistry = meterRegistry;
+        this.readingsIngested = Counter.builder("joi.readings.ingested")
+                .description("Electricity readings accepted by storeReadings")
+                .baseUnit("readings")
+                .register(meterRegistry);
+        this.duplicateReadings = Counter.builder("joi.readings.duplicates")
+                .description("Electricity readings dropped because their timestamp or batch was already stored")
+                .baseUnit("readings")
+                .register(meterRegistry);
+        meterReadingStore.scanShards(shard -> {
+            shard.forEach(this::registerMeterGauges);
+            return null;
+        });
     }
 
     public Optional<List<ElectricityReading>> getReadings(String smartMeterId) {
-        return Optional.ofNullable(meterAssociatedReadings.get(smartMeterId));
+        return meterReadingStore.find(smartMeterId).map(MeterReadingHistory::snapshot);
+    }
+
+    public Optional<ReadingWindow> getReadingWindow(String smartMeterId) {
+        return meterReadingStore.find(smartMeterId).map(MeterReadingHistory::window);
+    }
+
+    public Optional<ReadingWindow> getReadingWindow(int meterHandle) {
+        return meterReadingStore.find(meterHandle).map(MeterReadingHistory::window);
+    }
+
+    public Optional<ReadingWindow> getReadingWindow(String smartMeterId, Instant from, Instant to) {
+        return meterReadingStore.find(smartMeterId).map(history -> history.window(from, to));
+    }
+
+    public Optional<ReadingExtremes> getReadingExtremes(String smartMeterId, Instant from, Instant to) {
+        return meterReadingStore.find(smartMeterId).flatMap(history -> history.extremes(from, to));
+    }
+
+    public Optional<LoadProfile> getLoadProfile(String smartMeterId) {
+        return meterReadingStore.find(smartMeterId).map(history -> {
+            LoadProfile loadProfile = new LoadProfile();
+            history.mergeLoadProfileInto(loadProfile);
+            return loadProfile;
+        });
     }
 
     public void storeReadings(String smartMeterId, List<ElectricityReading> electricityReadings) {
-        if (!meterAssociatedReadings.containsKey(smartMeterId)) {
-            meterAssociatedReadings.put(smartMeterId, new ArrayList<>());
+        storeReadings(smartMeterId, electricityReadings, null);
+    }
+
+    public int storeReadings(String smartMeterId, List<ElectricityReading> electricityReadings, String idempotencyKey) {
+        MeterReadingHistory history = historyOf(smartMeterId);
+        int shard = meterReadingStore.shardFor(smartMeterId).getIndex();
+        int accepted = history.append(electricityReadings, idempotencyKey,
+                acceptedReadings -> changeFeed.publish(smartMeterId, shard, acceptedReadings));
+        readingsIngested.increment(accepted);
+        duplicateReadings.increment(electricityReadings.size() - accepted);
+        if (accepted > 0) {
+            readingsListeners.forEach(listener -> listener.accept(smartMeterId));
         }
-        meterAssociatedReadings.get(smartMeterId).addAll(electricityReadings);
+        return accepted;
+    }
+
+    /**
+     * Stores historical readings the way the seed data is stored: they are not published to the change feed, not
+     * counted as ingested, and the readings listeners are not told, so that a bulk import neither floods the feed nor
+     * pushes a live cost update per batch.
+     *
+     * @return the number of readings accepted; readings whose timestamp is already stored are dropped
+     */
+    public int loadReadings(String smartMeterId, List<ElectricityReading> electricityReadings) {
+        return historyOf(smartMeterId).append(electricityReadings);
+    }
+
+    /**
+     * @param shard the shard whose batches to read, or null for every shard
+     * @return up to {@code limit} batches of readings stored from offset {@code from} on
+     */
+    public ReadingFeedPage getChanges(long from, int limit, Integer shard) {
+        return changeFeed.read(from, limit, shard == null ? ReadingChangeFeed.ANY_SHARD : shard);
+    }
+
+    /**
+     * @param listener told the smart meter id, on the storing thread, after new readings of that meter were stored
+     */
+    public void addReadingsListener(Consumer<String> listener) {
+        readingsListeners.add(listener);
+    }
+
+    private MeterReadingHistory historyOf(String smartMeterId) {
+        boolean newMeter = meterReadingStore.find(smartMeterId).isEmpty();
+        MeterReadingHistory history = meterReadingStore.getOrCreate(smartMeterId);
+        if (newMeter) {
+            registerMeterGauges(smartMeterId, history);
+        }
+        return history;
+    }
+
+    private void registerMeterGauges(String smartMeterId, MeterReadingHistory history) {
+        Gauge.builder("joi.meter.readings", history, MeterReadingHistory::size)
+                .description("Readings held for the smart meter")
+                .tag("smartMeterId", smartMeterId)
+                .register(meterRegistry);
+        Gauge.builder("joi.meter.heap.estimate", history, MeterReadingHistory::heapBytes)
+                .description("Estimated heap held by the smart meter's readings and load profile")
+                .tag("smartMeterId", smartMeterId)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("joi.meter.off-heap", history, MeterReadingHistory::offHeapBytes)
+                .description("Direct memory held by the smart meter's readings")
+                .tag("smartMeterId", smartMeterId)
+                .baseUnit("bytes")
+                .register(meterRegistry);
     }
 }
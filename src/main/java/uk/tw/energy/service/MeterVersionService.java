@@ -0,0 +1,66 @@
+package uk.tw.energy.service;
+
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.MeterVersion;
+import uk.tw.energy.store.MeterIdDictionary;
+import uk.tw.energy.store.MeterReadingHistory;
+import uk.tw.energy.store.MeterReadingStore;
+
+import java.time.Instant;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Versions of a smart meter's data, cheap enough to check before any cost is computed. Tags start with the time this
+ * node started, so versions counted by an earlier run over different readings never match.
+ */
+@Service
+public class MeterVersionService {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final MeterReadingStore meterReadingStore;
+    private final AccountService accountService;
+    private final MeterIdDictionary meterIds;
+
+    public MeterVersionService(MeterReadingStore meterReadingStore, AccountService accountService,
+                               MeterIdDictionary meterIds) {
+        this.meterReadingStore = meterReadingStore;
+        this.accountService = accountService;
+        this.meterIds = meterIds;
+    }
+
+    /**
+     * @return the version of the meter's readings, or empty for a meter without any
+     */
+    public Optional<MeterVersion> getReadingsVersion(String smartMeterId) {
+        return meterReadingStore.find(smartMeterId)
+                .map(history -> new MeterVersion(epoch + "-" + history.version(), history.lastModified()));
+    }
+
+    /**
+     * @return the version of everything the meter's costs depend on: its readings, its plan assignments and the plan
+     * it is on now, which a scheduled switch changes without an assignment
+     */
+    public Optional<MeterVersion> getCostsVersion(String smartMeterId) {
+        return getCostsVersion(meterIds.handleOf(smartMeterId));
+    }
+
+    /**
+     * Like {@link #getCostsVersion(String)}, for a smart meter whose handle the caller resolved once for the whole
+     * request.
+     */
+    public Optional<MeterVersion> getCostsVersion(int meterHandle) {
+        Optional<MeterReadingHistory> history = meterReadingStore.find(meterHandle);
+        if (history.isEmpty()) {
+            return Optional.empty();
+        }
+        String currentPricePlanId = accountService.getPricePlanIdForSmartMeterId(meterHandle);
+        Instant readingsModified = history.get().lastModified();
+        Instant pricePlansModified = accountService.getPricePlansAssignedAt(meterHandle);
+        return Optional.of(new MeterVersion(
+                epoch + "-" + history.get().version()
+                        + "-" + accountService.getPricePlanVersion(meterHandle)
+                        + "-" + Integer.toHexString(Objects.hashCode(currentPricePlanId)),
+                readingsModified.isAfter(pricePlansModified) ? readingsModified : pricePlansModified));
+    }
+}
@@ -1,20 +1,18 @@
 package uk.tw.energy.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Service;
 import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundException;
-import uk.tw.energy.domain.ElectricityReading;
 import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.store.ReadingWindow;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
-import java.time.Duration;
-import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.ZoneOffset;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 @Service
@@ -22,23 +20,39 @@ public class PricePlanService {
 
     private final List<PricePlan> pricePlans;
     private final MeterReadingService meterReadingService;
+    private final ConsumptionModel consumptionModel;
+    private final Timer calculateCostTimer;
 
-    public PricePlanService(List<PricePlan> pricePlans, MeterReadingService meterReadingService) {
+    public PricePlanService(List<PricePlan> pricePlans, MeterReadingService meterReadingService,
+                            ConsumptionModel consumptionModel, MeterRegistry meterRegistry) {
         this.pricePlans = pricePlans;
         this.meterReadingService = meterReadingService;
+        this.consumptionModel = consumptionModel;
+        this.calculateCostTimer = Timer.builder("joi.cost.calculation")
+                .description("Time spent pricing readings against one price plan")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
     }
 
     public Optional<Map<String, BigDecimal>> getCostOfElectricityReadingsForEachPricePlan(String smartMeterId) {
-        Optional<List<ElectricityReading>> electricityReadings = meterReadingService.getReadings(smartMeterId);
+        Optional<ReadingWindow> electricityReadings = meterReadingService.getReadingWindow(smartMeterId);
 
-        return electricityReadings.map(readings -> pricePlans.stream().collect(
-                Collectors.toMap(PricePlan::getPlanName, t -> calculateCost(readings, t.getPlanName()))));
+        return electricityReadings.map(this::getCostOfReadingWindowForEachPricePlan);
     }
 
+    public Optional<Map<String, BigDecimal>> getCostOfElectricityReadingsForEachPricePlan(int meterHandle) {
+        return meterReadingService.getReadingWindow(meterHandle).map(this::getCostOfReadingWindowForEachPricePlan);
+    }
+
+    public Map<String, BigDecimal> getCostOfReadingWindowForEachPricePlan(ReadingWindow readingWindow) {
+        return pricePlans.stream().collect(
+                Collectors.toMap(PricePlan::getPlanName, t -> calculateCost(readingWindow, t.getPlanName())));
+    }
 
-    public Integer getRankForCurrentPricePlan(List<ElectricityReading> dailyReadings, String pricePlanId) {
+
+    public Integer getRankForCurrentPricePlan(List<ReadingWindow> dailyWindows, String pricePlanId) {
         Map<String, BigDecimal> dailyCostForEachPricePlan = pricePlans.stream().collect(
-                Collectors.toMap(PricePlan::getPlanName, t -> calculateCostByDateAndAddUp(dailyReadings, t.getPlanName())));
+                Collectors.toMap(PricePlan::getPlanName, t -> calculateCostByDateAndAddUp(dailyWindows, t.getPlanName())));
 
         List<String> sortedCostOfPricePlans = dailyCostForEachPricePlan.entrySet().stream()
                 .sorted(Map.Entry.comparingByValue())
@@ -47,50 +61,30 @@ public class PricePlanService {
         return sortedCostOfPricePlans.indexOf(pricePlanId);
     }
 
-    public BigDecimal calculateCostByDateAndAddUp(List<ElectricityReading> dailyReadings, String pricePlanId) {
-        Map<LocalDate, List<ElectricityReading>> readingsByDate = dailyReadings.stream()
-                .collect(Collectors.groupingBy(reading -> LocalDateTime.ofInstant(reading.getTime(), ZoneOffset.UTC).toLocalDate()));
-
-        return readingsByDate.values().stream()
+    public BigDecimal calculateCostByDateAndAddUp(List<ReadingWindow> dailyWindows, String pricePlanId) {
+        return dailyWindows.stream()
                 .map(readings -> calculateCost(readings, pricePlanId))
                 .reduce(BigDecimal.ZERO, BigDecimal::add);
     }
 
-    private BigDecimal calculateConsumed(List<ElectricityReading> electricityReadings) {
-        BigDecimal average = calculateAverageReading(electricityReadings);
-        BigDecimal timeElapsed = calculateTimeElapsed(electricityReadings);
-        return average.multiply(timeElapsed);
-    }
-
-    public BigDecimal calculateCost(List<ElectricityReading> electricityReadings, String pricePlanId) {
-        if (electricityReadings.isEmpty()) {throw new ReadingsNotFoundException();}
-        if (electricityReadings.size() == 1) {throw new IllegalArgumentException("Invalid reading");}
-        PricePlan pricePlan = pricePlans.stream()
-                .filter(p -> p.getPlanName().equals(pricePlanId))
-                .findFirst()
-                .get();
-        BigDecimal energyConsumed = calculateConsumed(electricityReadings);
-
-        return energyConsumed.multiply(pricePlan.getUnitRate()).setScale(1, RoundingMode.HALF_UP);
+    public BigDecimal calculateCost(ReadingWindow readingWindow, String pricePlanId) {
+        if (readingWindow.getCount() == 0) {throw new ReadingsNotFoundException();}
+        if (readingWindow.getCount() == 1) {throw new IllegalArgumentException("Invalid reading");}
+        long start = System.nanoTime();
+        BigDecimal cost = BillingPeriodPricing.cost(getPricePlan(pricePlanId), readingWindow, consumptionModel)
+                .setScale(1, RoundingMode.HALF_UP);
+        calculateCostTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return cost;
     }
 
-    private BigDecimal calculateAverageReading(List<ElectricityReading> electricityReadings) {
-        BigDecimal summedReadings = electricityReadings.stream()
-                .map(ElectricityReading::getReading)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        return summedReadings.divide(BigDecimal.valueOf(electricityReadings.size()), RoundingMode.HALF_UP);
+    public boolean hasPricePlan(String pricePlanId) {
+        return pricePlans.stream().anyMatch(p -> p.getPlanName().equals(pricePlanId));
     }
 
-    private BigDecimal calculateTimeElapsed(List<ElectricityReading> electricityReadings) {
-        ElectricityReading first = electricityReadings.stream()
-                .min(Comparator.comparing(ElectricityReading::getTime))
-                .get();
-        ElectricityReading last = electricityReadings.stream()
-                .max(Comparator.comparing(ElectricityReading::getTime))
+    private PricePlan getPricePlan(String pricePlanId) {
+        return pricePlans.stream()
+                .filter(p -> p.getPlanName().equals(pricePlanId))
+                .findFirst()
                 .get();
-
-        return BigDecimal.valueOf(Duration.between(first.getTime(), last.getTime()).getSeconds() / 3600.0);
     }
-
 }
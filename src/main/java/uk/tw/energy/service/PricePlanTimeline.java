@@ -0,0 +1,108 @@
+package uk.tw.energy.service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The price plans of one smart meter over time as a step function: plan {@code planIndexes[i]} applies from
+ * {@code switches[i]} until the next switch. Immutable; an assignment returns a new timeline.
+ */
+final class PricePlanTimeline {
+
+    static final short NO_PRICE_PLAN = -1;
+    static final PricePlanTimeline EMPTY = new PricePlanTimeline(new Instant[0], new short[0], 0, Instant.EPOCH);
+
+    private final Instant[] switches;
+    private final short[] planIndexes;
+    private final long version;
+    private final Instant assignedAt;
+
+    private PricePlanTimeline(Instant[] switches, short[] planIndexes, long version, Instant assignedAt) {
+        this.switches = switches;
+        this.planIndexes = planIndexes;
+        this.version = version;
+        this.assignedAt = assignedAt;
+    }
+
+    /**
+     * @return how many assignments led to this timeline
+     */
+    long version() {
+        return version;
+    }
+
+    Instant assignedAt() {
+        return assignedAt;
+    }
+
+    short planIndexAt(Instant time) {
+        int position = switchAtOrBefore(time);
+        return position < 0 ? NO_PRICE_PLAN : planIndexes[position];
+    }
+
+    /**
+     * @param from inclusive, {@link Instant#MIN} for since forever
+     * @param to exclusive, {@link Instant#MAX} for until further notice
+     */
+    PricePlanTimeline assign(short planIndex, Instant from, Instant to) {
+        short planAfter = planIndexAt(to);
+        List<Instant> newSwitches = new ArrayList<>(switches.length + 2);
+        List<Short> newPlanIndexes = new ArrayList<>(switches.length + 2);
+        for (int i = 0; i < switches.length && switches[i].isBefore(from); i++) {
+            append(newSwitches, newPlanIndexes, switches[i], planIndexes[i]);
+        }
+        append(newSwitches, newPlanIndexes, from, planIndex);
+        if (!to.equals(Instant.MAX)) {
+            append(newSwitches, newPlanIndexes, to, planAfter);
+            for (int i = 0; i < switches.length; i++) {
+                if (switches[i].isAfter(to)) {
+                    append(newSwitches, newPlanIndexes, switches[i], planIndexes[i]);
+                }
+            }
+        }
+        short[] indexes = new short[newPlanIndexes.size()];
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = newPlanIndexes.get(i);
+        }
+        return new PricePlanTimeline(newSwitches.toArray(new Instant[0]), indexes, version + 1, Instant.now());
+    }
+
+    /**
+     * Calls back once per stretch of {@code [from, to)} under a single plan, in time order, skipping stretches without
+     * a plan; costs O(log switches) to find the first stretch and O(1) per stretch after it.
+     */
+    void forEachStretch(Instant from, Instant to, StretchConsumer consumer) {
+        int position = Math.max(switchAtOrBefore(from), 0);
+        for (int i = position; i < switches.length && switches[i].isBefore(to); i++) {
+            Instant start = switches[i].isAfter(from) ? switches[i] : from;
+            Instant end = i + 1 < switches.length && switches[i + 1].isBefore(to) ? switches[i + 1] : to;
+            if (planIndexes[i] != NO_PRICE_PLAN && start.isBefore(end)) {
+                consumer.accept(planIndexes[i], start, end);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface StretchConsumer {
+        void accept(short planIndex, Instant from, Instant to);
+    }
+
+    private int switchAtOrBefore(Instant time) {
+        int position = Arrays.binarySearch(switches, time);
+        return position >= 0 ? position : -position - 2;
+    }
+
+    // adjacent stretches on the same plan are merged so the index only grows with real switches
+    private static void append(List<Instant> switches, List<Short> planIndexes, Instant at, short planIndex) {
+        if (!planIndexes.isEmpty() && planIndexes.get(planIndexes.size() - 1) == planIndex) {
+            return;
+        }
+        if (switches.isEmpty() && planIndex == NO_PRICE_PLAN) {
+            return;
+        }
+        switches.add(at);
+        planIndexes.add(planIndex);
+    }
+}
@@ -0,0 +1,231 @@
+package uk.tw.energy.service;
+
+import org.springframework.stereotype.Service;
+import uk.tw.energy.domain.FleetCost;
+import uk.tw.energy.domain.MeterCost;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.store.MeterReadingHistory;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Prices candidate plans against the history of every meter on this node without registering them, one shard per
+ * thread. Plans with peak time multipliers are priced per local day from the day windows of each meter's prefix sums,
+ * and plans with consumption bands per billing period.
+ */
+@Service
+public class TariffSimulationService {
+
+    private static final int HANDED_OVER_METER_COSTS = 1024;
+    private static final long POLL_MILLIS = 10;
+
+    private final MeterReadingStore meterReadingStore;
+    private final ConsumptionModel consumptionModel;
+
+    public TariffSimulationService(MeterReadingStore meterReadingStore, ConsumptionModel consumptionModel) {
+        this.meterReadingStore = meterReadingStore;
+        this.consumptionModel = consumptionModel;
+    }
+
+    public void checkCandidates(List<PricePlan> candidatePricePlans) {
+        if (candidatePricePlans == null || candidatePricePlans.isEmpty()) {
+            throw new IllegalArgumentException("At least one candidate price plan is needed");
+        }
+        Set<String> planNames = new HashSet<>();
+        for (PricePlan candidate : candidatePricePlans) {
+            if (candidate.getPlanName() == null || candidate.getUnitRate() == null) {
+                throw new IllegalArgumentException("A candidate price plan needs a plan name and a unit rate");
+            }
+            if (candidate.hasPeakTimeMultipliers() && candidate.hasConsumptionBands()) {
+                throw new IllegalArgumentException("A candidate price plan cannot have both peak time multipliers and consumption bands");
+            }
+            if (!planNames.add(candidate.getPlanName())) {
+                throw new IllegalArgumentException("Duplicate candidate price plan " + candidate.getPlanName());
+            }
+        }
+    }
+
+    /**
+     * Hands the costs of every meter with at least two readings to {@code meterCosts} on the calling thread as the
+     * shards work them out, and returns the fleet-wide summary per candidate plan. The shards hand the costs over
+     * through a bounded queue and keep only their totals, so a slow reader holds the shards back rather than the costs
+     * of the whole fleet piling up; once {@code meterCosts} throws, the shards stop handing costs over.
+     */
+    public Map<String, FleetCost> simulate(List<PricePlan> candidatePricePlans, Consumer<MeterCost> meterCosts) {
+        checkCandidates(candidatePricePlans);
+        BlockingQueue<MeterCost> handOver = new ArrayBlockingQueue<>(HANDED_OVER_METER_COSTS);
+        AtomicBoolean abandoned = new AtomicBoolean();
+        List<CompletableFuture<ShardCosts>> shardCosts = meterReadingStore.scanShardsAsync(shard -> {
+            ShardCosts costs = new ShardCosts(candidatePricePlans);
+            shard.forEach((smartMeterId, history) -> {
+                if (!abandoned.get()) {
+                    Map<String, BigDecimal> meterCost = costsOf(history, candidatePricePlans);
+                    if (meterCost != null) {
+                        costs.add(meterCost);
+                        handOver(handOver, new MeterCost(smartMeterId, meterCost), abandoned);
+                    }
+                }
+            });
+            return costs;
+        });
+
+        CompletableFuture<Void> scanned = CompletableFuture.allOf(shardCosts.toArray(CompletableFuture[]::new));
+        try {
+            // the queue is checked after the scans, so once they are done it holds every cost still to be read
+            while (!scanned.isDone() || !handOver.isEmpty()) {
+                MeterCost meterCost = handOver.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (meterCost != null) {
+                    meterCosts.accept(meterCost);
+                }
+            }
+        } catch (InterruptedException e) {
+            abandoned.set(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while simulating the candidate price plans", e);
+        } catch (RuntimeException e) {
+            abandoned.set(true);
+            throw e;
+        }
+
+        ShardCosts fleet = new ShardCosts(candidatePricePlans);
+        for (CompletableFuture<ShardCosts> shard : shardCosts) {
+            fleet.merge(shard.join());
+        }
+        return fleet.summary();
+    }
+
+    private static void handOver(BlockingQueue<MeterCost> handOver, MeterCost meterCost, AtomicBoolean abandoned) {
+        try {
+            while (!handOver.offer(meterCost, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (abandoned.get()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            abandoned.set(true);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Map<String, BigDecimal> costsOf(MeterReadingHistory history, List<PricePlan> candidatePricePlans) {
+        ReadingWindow all = history.window();
+        if (all.getCount() < 2) {
+            return null;
+        }
+        BigDecimal consumedKwh = consumptionModel.consumedKwh(all);
+        Map<LocalDateTime, ReadingWindow> days = null;
+        Map<String, BigDecimal> costs = new LinkedHashMap<>();
+        for (PricePlan candidate : candidatePricePlans) {
+            BigDecimal cost;
+            if (candidate.hasPeakTimeMultipliers()) {
+                days = days == null ? localDays(all) : days;
+                cost = BigDecimal.ZERO;
+                for (Map.Entry<LocalDateTime, ReadingWindow> day : days.entrySet()) {
+                    cost = cost.add(consumptionModel.consumedKwh(day.getValue()).multiply(candidate.getPrice(day.getKey())));
+                }
+            } else {
+                cost = BillingPeriodPricing.cost(candidate, all, consumedKwh, consumptionModel);
+            }
+            costs.put(candidate.getPlanName(), cost.setScale(1, RoundingMode.HALF_UP));
+        }
+        return costs;
+    }
+
+    // the windows of the days, by their midnight, each from the last reading before it so that, as with billing
+    // periods, the stretch across midnight is the later day's and the days add up to the whole history; days with
+    // fewer than two readings have no measurable consumption and are left out
+    private static Map<LocalDateTime, ReadingWindow> localDays(ReadingWindow all) {
+        ZoneId zone = ZoneId.systemDefault();
+        Map<LocalDateTime, ReadingWindow> days = new LinkedHashMap<>();
+        Instant end = all.getLast().plusNanos(1);
+        Instant from = all.getFirst();
+        while (from.isBefore(end)) {
+            ZonedDateTime midnight = from.atZone(zone).toLocalDate().atStartOfDay(zone);
+            Instant nextMidnight = midnight.plusDays(1).toInstant();
+            Instant to = nextMidnight.isBefore(end) ? nextMidnight : end;
+            Instant dayStart = from.equals(all.getFirst()) ? from : all.lastReadingBefore(midnight.toInstant()).orElse(from);
+            ReadingWindow day = all.within(dayStart, to);
+            if (day.getCount() > 1) {
+                days.put(midnight.toLocalDateTime(), day);
+            }
+            from = to;
+        }
+        return days;
+    }
+
+    private static class ShardCosts {
+
+        private final Map<String, PlanCosts> planCosts = new LinkedHashMap<>();
+
+        private ShardCosts(List<PricePlan> candidatePricePlans) {
+            candidatePricePlans.forEach(candidate -> planCosts.put(candidate.getPlanName(), new PlanCosts()));
+        }
+
+        private void add(Map<String, BigDecimal> costs) {
+            costs.forEach((planName, cost) -> planCosts.get(planName).add(cost));
+        }
+
+        private void merge(ShardCosts other) {
+            other.planCosts.forEach((planName, costs) -> planCosts.get(planName).merge(costs));
+        }
+
+        private Map<String, FleetCost> summary() {
+            Map<String, FleetCost> fleet = new LinkedHashMap<>();
+            planCosts.forEach((planName, costs) -> fleet.put(planName, costs.summary()));
+            return fleet;
+        }
+    }
+
+    private static class PlanCosts {
+
+        private long meters;
+        private BigDecimal total = BigDecimal.ZERO;
+        private BigDecimal min;
+        private BigDecimal max;
+
+        private void add(BigDecimal cost) {
+            meters++;
+            total = total.add(cost);
+            min = min == null || cost.compareTo(min) < 0 ? cost : min;
+            max = max == null || cost.compareTo(max) > 0 ? cost : max;
+        }
+
+        private void merge(PlanCosts other) {
+            if (other.meters == 0) {
+                return;
+            }
+            meters += other.meters;
+            total = total.add(other.total);
+            min = min == null || other.min.compareTo(min) < 0 ? other.min : min;
+            max = max == null || other.max.compareTo(max) > 0 ? other.max : max;
+        }
+
+        private FleetCost summary() {
+            return FleetCost.builder()
+                    .meters(meters)
+                    .totalCost(total)
+                    .averageCost(meters == 0 ? null : total.divide(BigDecimal.valueOf(meters), 1, RoundingMode.HALF_UP))
+                    .minCost(min)
+                    .maxCost(max)
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package uk.tw.energy.service;
+
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+
+/**
+ * Integrates power over time with the trapezoidal rule: each pair of consecutive readings contributes the mean of
+ * the two readings multiplied by the time between them. A pair further apart than the maximum gap is treated as the
+ * meter being offline and contributes nothing, instead of being bridged by a straight line. The history keeps the
+ * running integral as it indexes readings, with the {@code joi.consumption.max-gap} it was created with, so a window
+ * is priced from two of its sums.
+ */
+public class TrapezoidalConsumptionModel implements ConsumptionModel {
+
+    @Override
+    public BigDecimal consumedKwh(ReadingWindow readingWindow) {
+        return BigDecimal.valueOf(readingWindow.getTrapezoidalKwh());
+    }
+}
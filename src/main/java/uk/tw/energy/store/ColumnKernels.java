@@ -0,0 +1,45 @@
+package uk.tw.energy.store;
+
+/**
+ * Loops over the primitive columns of a meter's history. The Vector API implementation is used when the JVM was
+ * started with {@code --add-modules jdk.incubator.vector} on hardware with SIMD lanes wider than one double, and the
+ * scalar one otherwise.
+ */
+interface ColumnKernels {
+
+    /**
+     * Adds {@code delta} to every value in {@code [from, to)}.
+     */
+    void add(double[] values, int from, int to, double delta);
+
+    String name();
+
+    static ColumnKernels scalar() {
+        return ScalarColumnKernels.INSTANCE;
+    }
+
+    static ColumnKernels best() {
+        return Best.KERNELS;
+    }
+
+    final class Best {
+
+        private static final ColumnKernels KERNELS = select();
+
+        private Best() {
+        }
+
+        private static ColumnKernels select() {
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+                try {
+                    if (VectorColumnKernels.lanes() > 1) {
+                        return new VectorColumnKernels();
+                    }
+                } catch (LinkageError e) {
+                    // the incubator module changed under us; the scalar loops always work
+                }
+            }
+            return scalar();
+        }
+    }
+}
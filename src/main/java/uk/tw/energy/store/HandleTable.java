@@ -0,0 +1,50 @@
+package uk.tw.energy.store;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+
+/**
+ * Values indexed by meter handle, in fixed-size chunks so that growing never copies the values themselves. Reads
+ * take no lock.
+ */
+public final class HandleTable<V> {
+
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    private volatile AtomicReferenceArray<V>[] chunks = newChunks(0);
+
+    public V get(int handle) {
+        AtomicReferenceArray<V>[] current = chunks;
+        int chunk = handle >>> CHUNK_BITS;
+        return chunk < current.length ? current[chunk].get(handle & (CHUNK_SIZE - 1)) : null;
+    }
+
+    public synchronized V computeIfAbsent(int handle, IntFunction<V> create) {
+        V value = get(handle);
+        if (value != null) {
+            return value;
+        }
+        value = create.apply(handle);
+        set(handle, value);
+        return value;
+    }
+
+    public synchronized void set(int handle, V value) {
+        int chunk = handle >>> CHUNK_BITS;
+        if (chunk >= chunks.length) {
+            AtomicReferenceArray<V>[] grown = Arrays.copyOf(chunks, Math.max(chunk + 1, chunks.length * 2));
+            for (int i = chunks.length; i < grown.length; i++) {
+                grown[i] = new AtomicReferenceArray<>(CHUNK_SIZE);
+            }
+            chunks = grown;
+        }
+        chunks[chunk].set(handle & (CHUNK_SIZE - 1), value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> AtomicReferenceArray<V>[] newChunks(int count) {
+        return new AtomicReferenceArray[count];
+    }
+}
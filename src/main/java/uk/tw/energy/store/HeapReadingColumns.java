@@ -0,0 +1,145 @@
+package uk.tw.energy.store;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columns as plain arrays, keeping the very readings that were stored.
+ */
+final class HeapReadingColumns implements ReadingColumns {
+
+    private final ColumnKernels kernels;
+    private final List<ElectricityReading> readings = new ArrayList<>();
+    private long[] sortedTimestamps;
+    private double[] sortedReadings;
+    private double[] prefixSums;    // prefixSums[i] = sum of sortedReadings[0, i)
+    private double[] prefixKwh;     // prefixKwh[i] = trapezoidal kWh from sortedTimestamps[0] to [i]
+    private int[] maxima;
+    private int[] minima;
+
+    HeapReadingColumns(int capacity, ColumnKernels kernels) {
+        this.kernels = kernels;
+        this.sortedTimestamps = new long[capacity];
+        this.sortedReadings = new double[capacity];
+        this.prefixSums = new double[capacity + 1];
+        this.prefixKwh = new double[capacity];
+        allocateNodes(capacity);
+    }
+
+    @Override
+    public int capacity() {
+        return sortedTimestamps.length;
+    }
+
+    @Override
+    public void grow(int capacity, int count) {
+        sortedTimestamps = Arrays.copyOf(sortedTimestamps, capacity);
+        sortedReadings = Arrays.copyOf(sortedReadings, capacity);
+        prefixSums = Arrays.copyOf(prefixSums, capacity + 1);
+        prefixKwh = Arrays.copyOf(prefixKwh, capacity);
+        allocateNodes(capacity);
+    }
+
+    @Override
+    public long timestamp(int position) {
+        return sortedTimestamps[position];
+    }
+
+    @Override
+    public double reading(int position) {
+        return sortedReadings[position];
+    }
+
+    @Override
+    public double prefixSum(int index) {
+        return prefixSums[index];
+    }
+
+    @Override
+    public void setPrefixSum(int index, double sum) {
+        prefixSums[index] = sum;
+    }
+
+    @Override
+    public double prefixKwh(int position) {
+        return prefixKwh[position];
+    }
+
+    @Override
+    public void setPrefixKwh(int position, double kwh) {
+        prefixKwh[position] = kwh;
+    }
+
+    @Override
+    public void insert(int position, int count, long timestamp, double reading) {
+        System.arraycopy(sortedTimestamps, position, sortedTimestamps, position + 1, count - position);
+        System.arraycopy(sortedReadings, position, sortedReadings, position + 1, count - position);
+        System.arraycopy(prefixSums, position + 1, prefixSums, position + 2, count - position);
+        System.arraycopy(prefixKwh, position, prefixKwh, position + 1, count - position);
+        sortedTimestamps[position] = timestamp;
+        sortedReadings[position] = reading;
+    }
+
+    @Override
+    public void addToPrefixSums(int from, int to, double delta) {
+        kernels.add(prefixSums, from, to, delta);
+    }
+
+    @Override
+    public void addToPrefixKwh(int from, int to, double delta) {
+        kernels.add(prefixKwh, from, to, delta);
+    }
+
+    @Override
+    public int maxNode(int node) {
+        return maxima[node];
+    }
+
+    @Override
+    public void setMaxNode(int node, int position) {
+        maxima[node] = position;
+    }
+
+    @Override
+    public int minNode(int node) {
+        return minima[node];
+    }
+
+    @Override
+    public void setMinNode(int node, int position) {
+        minima[node] = position;
+    }
+
+    @Override
+    public void checkArrival(ElectricityReading electricityReading) {
+    }
+
+    @Override
+    public void addArrival(int index, ElectricityReading electricityReading) {
+        readings.add(electricityReading);
+    }
+
+    @Override
+    public List<ElectricityReading> arrivals(int count) {
+        return new ArrayList<>(readings);
+    }
+
+    @Override
+    public long heapBytes(int count) {
+        return count * MeterReadingHistory.ESTIMATED_HEAP_BYTES_PER_READING;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return 0;
+    }
+
+    private void allocateNodes(int capacity) {
+        maxima = new int[2 * capacity];
+        Arrays.fill(maxima, NO_POSITION);
+        minima = maxima.clone();
+    }
+}
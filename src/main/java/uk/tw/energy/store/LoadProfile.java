@@ -0,0 +1,91 @@
+package uk.tw.energy.store;
+
+import uk.tw.energy.domain.LoadProfileHour;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link QuantileSketch} of the readings taken in each hour of the day, local to the system time zone, so percentile
+ * demand by hour is read off at most 24 sketches instead of sorting the readings. Profiles of several meters merge into
+ * one of the same bounded size. Not thread-safe; the owner synchronises.
+ */
+public class LoadProfile {
+
+    public static final int HOURS_PER_DAY = 24;
+    private static final long ESTIMATED_PROFILE_BYTES = 24 + 16 + 4 * HOURS_PER_DAY; // the profile and its hours
+
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final QuantileSketch[] hours = new QuantileSketch[HOURS_PER_DAY];
+
+    public void add(Instant time, double reading) {
+        int secondOfDay = Math.floorMod(time.getEpochSecond() + zone.getRules().getOffset(time).getTotalSeconds(), 86_400);
+        sketch(secondOfDay / 3600).add(reading);
+    }
+
+    public void merge(LoadProfile other) {
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            if (other.hours[hour] != null) {
+                sketch(hour).merge(other.hours[hour]);
+            }
+        }
+    }
+
+    /**
+     * @return an estimate of the heap the profile takes up, the sketches of the hours that have readings included
+     */
+    public long heapBytes() {
+        long bytes = ESTIMATED_PROFILE_BYTES;
+        for (QuantileSketch sketch : hours) {
+            if (sketch != null) {
+                bytes += sketch.heapBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @param quantiles each between 0 and 1
+     * @return every hour of the day in order, with its readings at the quantiles; hours without readings have none
+     */
+    public List<LoadProfileHour> describe(List<Double> quantiles) {
+        if (quantiles == null || quantiles.isEmpty()) {
+            throw new IllegalArgumentException("At least one quantile is needed");
+        }
+        for (double quantile : quantiles) {
+            if (quantile < 0 || quantile > 1) {
+                throw new IllegalArgumentException("A quantile must be between 0 and 1");
+            }
+        }
+        List<LoadProfileHour> profile = new ArrayList<>(HOURS_PER_DAY);
+        for (int hour = 0; hour < HOURS_PER_DAY; hour++) {
+            QuantileSketch sketch = hours[hour];
+            Map<String, BigDecimal> values = new LinkedHashMap<>();
+            if (sketch != null && sketch.getCount() > 0) {
+                for (double quantile : quantiles) {
+                    values.put(String.valueOf(quantile),
+                            BigDecimal.valueOf(sketch.quantile(quantile)).setScale(3, RoundingMode.HALF_UP));
+                }
+            }
+            profile.add(LoadProfileHour.builder()
+                    .hourOfDay(hour)
+                    .readings(sketch == null ? 0 : sketch.getCount())
+                    .quantiles(values)
+                    .build());
+        }
+        return profile;
+    }
+
+    private QuantileSketch sketch(int hour) {
+        if (hours[hour] == null) {
+            hours[hour] = new QuantileSketch();
+        }
+        return hours[hour];
+    }
+}
@@ -0,0 +1,21 @@
+package uk.tw.energy.store;
+
+public final class MeterHashing {
+
+    private MeterHashing() { }
+
+    // FNV-1a over the UTF-16 chars followed by the murmur3 finaliser, stable across JVMs and nodes
+    public static long hash64(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53e2ca3L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,101 @@
+package uk.tw.energy.store;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Interns smart meter ids to dense int handles, 0 for the first meter seen, 1 for the next and so on, so that
+ * everything kept per meter can live in arrays indexed by handle instead of maps keyed by id. The id is hashed once
+ * per lookup into an open-addressing table; lookups take no lock, interning a new id does.
+ */
+public class MeterIdDictionary {
+
+    public static final int UNKNOWN = -1;
+
+    private volatile Table table = new Table(1024);
+    private volatile String[] idsByHandle = new String[512];
+    private int size;
+
+    public int handleOf(String smartMeterId) {
+        return table.get(smartMeterId, MeterHashing.hash64(smartMeterId));
+    }
+
+    public int intern(String smartMeterId) {
+        long hash = MeterHashing.hash64(smartMeterId);
+        int handle = table.get(smartMeterId, hash);
+        return handle != UNKNOWN ? handle : add(smartMeterId, hash);
+    }
+
+    public String idOf(int handle) {
+        return idsByHandle[handle];
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(String smartMeterId, long hash) {
+        int handle = table.get(smartMeterId, hash);
+        if (handle != UNKNOWN) {
+            return handle;
+        }
+        handle = size;
+        if (handle == idsByHandle.length) {
+            idsByHandle = Arrays.copyOf(idsByHandle, handle * 2);
+        }
+        idsByHandle[handle] = smartMeterId;
+        if ((size + 1) * 2 > table.capacity()) {
+            table = table.grow(idsByHandle, size);
+        }
+        table.put(smartMeterId, hash, handle);
+        size++;
+        return handle;
+    }
+
+    // linear probing at most half full; a key is published after its handle, so a reader seeing the key sees both
+    private static final class Table {
+
+        private final AtomicReferenceArray<String> keys;
+        private final int[] handles;
+        private final int mask;
+
+        private Table(int capacity) {
+            this.keys = new AtomicReferenceArray<>(capacity);
+            this.handles = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        private int capacity() {
+            return handles.length;
+        }
+
+        private int get(String smartMeterId, long hash) {
+            for (int slot = (int) hash & mask; ; slot = (slot + 1) & mask) {
+                String key = keys.get(slot);
+                if (key == null) {
+                    return UNKNOWN;
+                }
+                if (key.equals(smartMeterId)) {
+                    return handles[slot];
+                }
+            }
+        }
+
+        private void put(String smartMeterId, long hash, int handle) {
+            int slot = (int) hash & mask;
+            while (keys.get(slot) != null) {
+                slot = (slot + 1) & mask;
+            }
+            handles[slot] = handle;
+            keys.set(slot, smartMeterId);
+        }
+
+        private Table grow(String[] idsByHandle, int size) {
+            Table grown = new Table(capacity() * 2);
+            for (int handle = 0; handle < size; handle++) {
+                grown.put(idsByHandle[handle], MeterHashing.hash64(idsByHandle[handle]), handle);
+            }
+            return grown;
+        }
+    }
+}
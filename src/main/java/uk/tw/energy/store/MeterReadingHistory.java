@@ -0,0 +1,304 @@
+package uk.tw.energy.store;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * Readings of one smart meter in arrival order, indexed by time-sorted columns of timestamps and readings together
+ * with their prefix sums. A reading at or before the watermark (the newest timestamp) is a binary search away from
+ * being recognised as a replay, readings after it are appended in O(log n), readings before it shift and rebase the
+ * later prefix sums in one vectorisable pass, the sum, count and trapezoidal consumption of any time range are a
+ * subtraction of two prefix sums, and its largest and smallest reading are read off a range-extrema tree over the
+ * same columns in O(log n). The columns live on the heap, or off it in a slab of an {@link OffHeapArena}. Every
+ * accepted reading is also added to the meter's {@link LoadProfile}, which stays on the heap.
+ */
+public class MeterReadingHistory {
+
+    // on the heap: ElectricityReading + Instant + BigDecimal headers and fields, the list slot, and four index columns
+    public static final long ESTIMATED_HEAP_BYTES_PER_READING = 128;
+
+    private static final int REMEMBERED_BATCH_KEYS = 64;
+    private static final double NANOS_PER_HOUR = 3600 * 1_000_000_000.0;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final long maxGapNanos;
+    private final ReadingColumns columns;
+    private final RangeExtremaTree extrema;
+    private final LoadProfile loadProfile = new LoadProfile();
+    private int count;
+    private final long[] batchKeyHashes = new long[REMEMBERED_BATCH_KEYS];
+    private int batchKeysRemembered;
+    private int nextBatchKeySlot;
+    private volatile long version;
+    private volatile long lastModifiedMillis;
+
+    public MeterReadingHistory() {
+        this(Duration.ZERO);
+    }
+
+    /**
+     * @param maxGap consecutive readings further apart than this add no trapezoidal consumption (zero for no limit)
+     */
+    public MeterReadingHistory(Duration maxGap) {
+        this(maxGap, ColumnKernels.best());
+    }
+
+    /**
+     * @param offHeap the arena the meter's columns are kept in instead of the heap
+     */
+    public MeterReadingHistory(Duration maxGap, OffHeapArena offHeap) {
+        this(maxGap, new OffHeapReadingColumns(offHeap, INITIAL_CAPACITY));
+    }
+
+    MeterReadingHistory(Duration maxGap, ColumnKernels kernels) {
+        this(maxGap, new HeapReadingColumns(INITIAL_CAPACITY, kernels));
+    }
+
+    MeterReadingHistory(Duration maxGap, ReadingColumns columns) {
+        this.maxGapNanos = maxGap.isZero() || maxGap.isNegative() ? Long.MAX_VALUE : maxGap.toNanos();
+        this.columns = columns;
+        this.extrema = new RangeExtremaTree(columns);
+    }
+
+    public synchronized int append(List<ElectricityReading> electricityReadings) {
+        return append(electricityReadings, null);
+    }
+
+    /**
+     * @return the number of readings accepted; readings whose timestamp is already stored are dropped, and so is
+     * the whole batch when its idempotency key is one of the last {@value REMEMBERED_BATCH_KEYS} seen
+     * @throws StoreFullException when the columns cannot grow to hold the batch, before any of it is stored
+     * @throws IllegalArgumentException when a reading has no time or no value, or one the columns cannot keep, before
+     * any of the batch is stored
+     */
+    public synchronized int append(List<ElectricityReading> electricityReadings, String idempotencyKey) {
+        return append(electricityReadings, idempotencyKey, null);
+    }
+
+    /**
+     * Like {@link #append(List, String)}, handing the readings that were accepted, if any, to {@code onAccepted}
+     * before the lock is released, so that whatever it publishes of this meter is in the order it was stored.
+     */
+    public synchronized int append(List<ElectricityReading> electricityReadings, String idempotencyKey,
+                                   Consumer<List<ElectricityReading>> onAccepted) {
+        requireStorable(electricityReadings);
+        if (idempotencyKey != null && isRemembered(MeterHashing.hash64(idempotencyKey))) {
+            return 0;
+        }
+        ensureCapacity(count + electricityReadings.size());
+        if (idempotencyKey != null) {
+            rememberBatchKey(MeterHashing.hash64(idempotencyKey));
+        }
+        List<ElectricityReading> acceptedReadings = onAccepted == null ? null : new ArrayList<>(electricityReadings.size());
+        int accepted = 0;
+        for (ElectricityReading electricityReading : electricityReadings) {
+            if (index(electricityReading)) {
+                accepted++;
+                if (acceptedReadings != null) {
+                    acceptedReadings.add(electricityReading);
+                }
+            }
+        }
+        if (accepted > 0) {
+            lastModifiedMillis = System.currentTimeMillis();
+            version++;
+            if (onAccepted != null) {
+                onAccepted.accept(acceptedReadings);
+            }
+        }
+        return accepted;
+    }
+
+    /**
+     * @return how many appends have accepted readings so far; read without taking the lock
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @return when readings were last accepted, or the epoch when none have been
+     */
+    public Instant lastModified() {
+        return Instant.ofEpochMilli(lastModifiedMillis);
+    }
+
+    public synchronized List<ElectricityReading> snapshot() {
+        return columns.arrivals(count);
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * @return an estimate of the heap the meter takes up: its readings, which take none when they are kept off the
+     * heap, and its load profile
+     */
+    public synchronized long heapBytes() {
+        return columns.heapBytes(count) + loadProfile.heapBytes();
+    }
+
+    /**
+     * @return the part of {@link #heapBytes()} taken by the load profile
+     */
+    public synchronized long loadProfileHeapBytes() {
+        return loadProfile.heapBytes();
+    }
+
+    /**
+     * @return the direct memory held for the readings, which is none when they are kept on the heap
+     */
+    public synchronized long offHeapBytes() {
+        return columns.offHeapBytes();
+    }
+
+    public synchronized ReadingWindow window() {
+        return window(0, count);
+    }
+
+    /**
+     * @return the readings taken from {@code from} (inclusive) until {@code to} (exclusive)
+     */
+    public synchronized ReadingWindow window(Instant from, Instant to) {
+        return window(lowerBound(ReadingWindow.toEpochNanos(from)), lowerBound(ReadingWindow.toEpochNanos(to)));
+    }
+
+    /**
+     * Merges the meter's load profile into {@code profile}, which is the way to read it: the profile itself is only
+     * touched under the lock.
+     */
+    public synchronized void mergeLoadProfileInto(LoadProfile profile) {
+        profile.merge(loadProfile);
+    }
+
+    /**
+     * @return when the last reading before {@code time} was taken, or empty when there is none
+     */
+    public synchronized Optional<Instant> lastReadingBefore(Instant time) {
+        int position = lowerBound(ReadingWindow.toEpochNanos(time)) - 1;
+        return position < 0 ? Optional.empty() : Optional.of(ReadingWindow.toInstant(columns.timestamp(position)));
+    }
+
+    /**
+     * @return the largest and smallest reading taken from {@code from} (inclusive) until {@code to} (exclusive), or
+     * empty when there is none; a null bound leaves that end of the range open
+     */
+    public synchronized Optional<ReadingExtremes> extremes(Instant from, Instant to) {
+        int fromPosition = from == null ? 0 : lowerBound(ReadingWindow.toEpochNanos(from));
+        int toPosition = to == null ? count : lowerBound(ReadingWindow.toEpochNanos(to));
+        if (toPosition <= fromPosition) {
+            return Optional.empty();
+        }
+        int max = extrema.maxPosition(fromPosition, toPosition);
+        int min = extrema.minPosition(fromPosition, toPosition);
+        return Optional.of(new ReadingExtremes(columns.reading(max), columns.timestamp(max),
+                columns.reading(min), columns.timestamp(min)));
+    }
+
+    private ReadingWindow window(int from, int to) {
+        if (to <= from) {
+            return ReadingWindow.EMPTY;
+        }
+        return new ReadingWindow(this, to - from, columns.prefixSum(to) - columns.prefixSum(from),
+                columns.timestamp(from), columns.timestamp(to - 1), columns.prefixKwh(to - 1) - columns.prefixKwh(from));
+    }
+
+    // the tree's nodes are laid out by capacity, so growing rebuilds it
+    private void ensureCapacity(int needed) {
+        if (needed <= columns.capacity()) {
+            return;
+        }
+        columns.grow(Math.max(Integer.highestOneBit(needed - 1) << 1, columns.capacity() * 2), count);
+        if (count > 0) {
+            extrema.update(0, count);
+        }
+    }
+
+    // checked up front, as a batch is either taken whole or, bar readings already stored, not at all
+    private void requireStorable(List<ElectricityReading> electricityReadings) {
+        for (ElectricityReading electricityReading : electricityReadings) {
+            if (electricityReading == null || electricityReading.getTime() == null || electricityReading.getReading() == null) {
+                throw new IllegalArgumentException("A reading needs a time and a value");
+            }
+            columns.checkArrival(electricityReading);
+        }
+    }
+
+    private boolean index(ElectricityReading electricityReading) {
+        long timestamp = ReadingWindow.toEpochNanos(electricityReading.getTime());
+        int insertAt = count;
+        if (count > 0 && timestamp <= columns.timestamp(count - 1)) {
+            insertAt = lowerBound(timestamp);
+            if (columns.timestamp(insertAt) == timestamp) {
+                return false;
+            }
+        }
+        columns.insert(insertAt, count, timestamp, electricityReading.getReading().doubleValue());
+        updatePrefixSums(insertAt, count);
+        columns.addArrival(count, electricityReading);
+        loadProfile.add(electricityReading.getTime(), columns.reading(insertAt));
+        count++;
+        extrema.update(insertAt, count);
+        return true;
+    }
+
+    // Every prefix after an out-of-order reading grows by the same amount: the reading itself for the sums, and what
+    // its two segments add over the one segment they replace for the kWh. So the tail, already moved along by one, is
+    // rebased in one pass instead of being summed again.
+    private void updatePrefixSums(int at, int previousCount) {
+        columns.setPrefixSum(at + 1, columns.prefixSum(at) + columns.reading(at));
+        columns.addToPrefixSums(at + 2, previousCount + 2, columns.reading(at));
+
+        double replacedKwh = at < previousCount ? columns.prefixKwh(at + 1) : 0.0;
+        columns.setPrefixKwh(at, at == 0 ? 0.0 : columns.prefixKwh(at - 1) + segmentKwh(at - 1, at));
+        if (at < previousCount) {
+            columns.setPrefixKwh(at + 1, columns.prefixKwh(at) + segmentKwh(at, at + 1));
+            columns.addToPrefixKwh(at + 2, previousCount + 1, columns.prefixKwh(at + 1) - replacedKwh);
+        }
+    }
+
+    private double segmentKwh(int from, int to) {
+        long nanos = columns.timestamp(to) - columns.timestamp(from);
+        if (nanos > maxGapNanos) {
+            return 0.0;
+        }
+        return (columns.reading(from) + columns.reading(to)) / 2 * (nanos / NANOS_PER_HOUR);
+    }
+
+    private int lowerBound(long timestamp) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (columns.timestamp(middle) < timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private boolean isRemembered(long keyHash) {
+        for (int i = 0; i < batchKeysRemembered; i++) {
+            if (batchKeyHashes[i] == keyHash) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void rememberBatchKey(long keyHash) {
+        batchKeyHashes[nextBatchKeySlot] = keyHash;
+        nextBatchKeySlot = (nextBatchKeySlot + 1) % REMEMBERED_BATCH_KEYS;
+        batchKeysRemembered = Math.min(batchKeysRemembered + 1, REMEMBERED_BATCH_KEYS);
+    }
+}
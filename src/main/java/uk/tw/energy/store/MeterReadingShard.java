@@ -0,0 +1,68 @@
+package uk.tw.energy.store;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+public class MeterReadingShard {
+
+    private final int index;
+    private final MeterIdDictionary meterIds;
+    private final HandleTable<MeterReadingHistory> histories;
+    private final ExecutorService executor;
+    private int[] handles = new int[64];
+    private int handleCount;
+
+    MeterReadingShard(int index, MeterIdDictionary meterIds, HandleTable<MeterReadingHistory> histories) {
+        this.index = index;
+        this.meterIds = meterIds;
+        this.histories = histories;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "meter-shard-" + index);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public synchronized int size() {
+        return handleCount;
+    }
+
+    public void forEach(BiConsumer<String, MeterReadingHistory> action) {
+        int[] owned;
+        int count;
+        synchronized (this) {
+            owned = handles;
+            count = handleCount;
+        }
+        for (int i = 0; i < count; i++) {
+            MeterReadingHistory history = histories.get(owned[i]);
+            if (history != null) {
+                action.accept(meterIds.idOf(owned[i]), history);
+            }
+        }
+    }
+
+    // called once per meter, after its history is in the table
+    synchronized void add(int handle) {
+        if (handleCount == handles.length) {
+            handles = Arrays.copyOf(handles, handleCount * 2);
+        }
+        handles[handleCount++] = handle;
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<T> task) {
+        return CompletableFuture.supplyAsync(task, executor);
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,160 @@
+package uk.tw.energy.store;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Readings of every smart meter owned by this node, held in a table indexed by the meter's handle and partitioned by
+ * a hash of the meter id into shards that each know their own meters and have their own worker thread for
+ * fleet-wide scans. Meters keep their readings on the heap, or in an off-heap arena when the store is given one.
+ */
+public class MeterReadingStore {
+
+    private final MeterIdDictionary meterIds;
+    private final Duration maxGap;
+    private final OffHeapArena offHeap;
+    private final HandleTable<MeterReadingHistory> histories = new HandleTable<>();
+    private final MeterReadingShard[] shards;
+
+    public MeterReadingStore(int shardCount) {
+        this(shardCount, Duration.ZERO);
+    }
+
+    public MeterReadingStore(int shardCount, Duration maxGap) {
+        this(shardCount, maxGap, new MeterIdDictionary());
+    }
+
+    /**
+     * @param maxGap consecutive readings further apart than this add no trapezoidal consumption (zero for no limit)
+     */
+    public MeterReadingStore(int shardCount, Duration maxGap, MeterIdDictionary meterIds) {
+        this(shardCount, maxGap, meterIds, null);
+    }
+
+    /**
+     * @param offHeap the arena every meter keeps its readings in, or null to keep them on the heap
+     */
+    public MeterReadingStore(int shardCount, Duration maxGap, MeterIdDictionary meterIds, OffHeapArena offHeap) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("A store needs at least one shard");
+        }
+        this.meterIds = meterIds;
+        this.maxGap = maxGap;
+        this.offHeap = offHeap;
+        this.shards = new MeterReadingShard[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new MeterReadingShard(i, meterIds, histories);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public MeterReadingShard shardFor(String smartMeterId) {
+        return shards[Math.floorMod(MeterHashing.hash64(smartMeterId), shards.length)];
+    }
+
+    public Optional<MeterReadingHistory> find(String smartMeterId) {
+        return find(meterIds.handleOf(smartMeterId));
+    }
+
+    /**
+     * @param handle the smart meter's handle in the store's {@link MeterIdDictionary}, resolved once by the caller
+     */
+    public Optional<MeterReadingHistory> find(int handle) {
+        return handle == MeterIdDictionary.UNKNOWN ? Optional.empty() : Optional.ofNullable(histories.get(handle));
+    }
+
+    public MeterReadingHistory getOrCreate(String smartMeterId) {
+        int handle = meterIds.intern(smartMeterId);
+        MeterReadingHistory history = histories.get(handle);
+        if (history != null) {
+            return history;
+        }
+        MeterReadingHistory[] created = new MeterReadingHistory[1];
+        history = histories.computeIfAbsent(handle, absent -> created[0] =
+                offHeap == null ? new MeterReadingHistory(maxGap) : new MeterReadingHistory(maxGap, offHeap));
+        // the shard only learns of a meter once its history is in the table, and not at all if it could not be made
+        if (history == created[0]) {
+            shardFor(smartMeterId).add(handle);
+        }
+        return history;
+    }
+
+    /**
+     * @return how many meters and readings the store holds, and the heap and direct memory they take up
+     */
+    public StoreUsage usage() {
+        StoreUsage.StoreUsageBuilder usage = StoreUsage.builder()
+                .backend(offHeap == null ? "heap" : "off-heap");
+        if (offHeap != null) {
+            usage.offHeapCapacityBytes(offHeap.getCapacityBytes())
+                    .offHeapReservedBytes(offHeap.getReservedBytes())
+                    .offHeapUsedBytes(offHeap.getUsedBytes())
+                    .offHeapSlabs(offHeap.getSlabs());
+        }
+        long meters = 0;
+        long readings = 0;
+        long heapBytes = 0;
+        long loadProfileHeapBytes = 0;
+        for (long[] shard : scanShards(MeterReadingStore::usageOf)) {
+            meters += shard[0];
+            readings += shard[1];
+            heapBytes += shard[2];
+            loadProfileHeapBytes += shard[3];
+        }
+        return usage.meters(meters)
+                .readings(readings)
+                .heapBytes(heapBytes)
+                .loadProfileHeapBytes(loadProfileHeapBytes)
+                .build();
+    }
+
+    public <T> List<T> scanShards(Function<MeterReadingShard, T> scan) {
+        List<CompletableFuture<T>> scans = scanShardsAsync(scan);
+        List<T> results = new ArrayList<>(shards.length);
+        try {
+            scans.forEach(result -> results.add(result.join()));
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    /**
+     * Like {@link #scanShards(Function)}, for callers that consume each shard's result as soon as it is ready.
+     */
+    public <T> List<CompletableFuture<T>> scanShardsAsync(Function<MeterReadingShard, T> scan) {
+        List<CompletableFuture<T>> scans = new ArrayList<>(shards.length);
+        for (MeterReadingShard shard : shards) {
+            scans.add(shard.submit(() -> scan.apply(shard)));
+        }
+        return scans;
+    }
+
+    private static long[] usageOf(MeterReadingShard shard) {
+        long[] usage = new long[4];
+        shard.forEach((smartMeterId, history) -> {
+            usage[0]++;
+            usage[1] += history.size();
+            usage[2] += history.heapBytes();
+            usage[3] += history.loadProfileHeapBytes();
+        });
+        return usage;
+    }
+
+    public void shutdown() {
+        for (MeterReadingShard shard : shards) {
+            shard.shutdown();
+        }
+    }
+}
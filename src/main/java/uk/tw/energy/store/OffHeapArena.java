@@ -0,0 +1,98 @@
+package uk.tw.energy.store;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Direct memory for the columns of meters kept off the heap, reserved in chunks up to a fixed capacity and carved
+ * into one slab per meter. Slabs come in one size per column capacity, and the slab a meter grew out of goes on a free
+ * list for the next meter growing to that size, so reserved memory is reused rather than returned.
+ */
+public class OffHeapArena {
+
+    private final long capacityBytes;
+    private final int chunkBytes;
+    private final Map<Integer, ArrayDeque<ByteBuffer>> freeSlabs = new HashMap<>();
+    private ByteBuffer chunk;
+    private long reservedBytes;
+    private long usedBytes;
+    private long slabs;
+
+    /**
+     * @param capacityBytes the most direct memory the arena reserves, beyond which meters cannot grow
+     * @param chunkBytes    how much direct memory is reserved at a time; larger slabs get a chunk of their own
+     */
+    public OffHeapArena(long capacityBytes, int chunkBytes) {
+        if (capacityBytes <= 0 || chunkBytes <= 0) {
+            throw new IllegalArgumentException("An off-heap arena needs a positive capacity and chunk size");
+        }
+        this.capacityBytes = capacityBytes;
+        this.chunkBytes = chunkBytes;
+    }
+
+    synchronized ByteBuffer allocate(int bytes) {
+        ArrayDeque<ByteBuffer> free = freeSlabs.get(bytes);
+        ByteBuffer slab;
+        if (free != null && !free.isEmpty()) {
+            slab = free.pop();
+        } else if (bytes > chunkBytes) {
+            slab = reserve(bytes);
+        } else {
+            if (chunk == null || chunk.remaining() < bytes) {
+                chunk = reserve(chunkBytes);
+            }
+            slab = chunk.slice(chunk.position(), bytes);
+            chunk.position(chunk.position() + bytes);
+        }
+        usedBytes += bytes;
+        slabs++;
+        return slab.order(ByteOrder.nativeOrder());
+    }
+
+    synchronized void free(ByteBuffer slab) {
+        freeSlabs.computeIfAbsent(slab.capacity(), size -> new ArrayDeque<>()).push(slab);
+        usedBytes -= slab.capacity();
+        slabs--;
+    }
+
+    public long getCapacityBytes() {
+        return capacityBytes;
+    }
+
+    /**
+     * @return direct memory taken from the JVM so far, whether or not it is in a slab yet
+     */
+    public synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /**
+     * @return bytes in the slabs meters hold now
+     */
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized long getSlabs() {
+        return slabs;
+    }
+
+    private ByteBuffer reserve(int bytes) {
+        if (reservedBytes + bytes > capacityBytes) {
+            throw new StoreFullException("The off-heap store is full: " + reservedBytes + " of " + capacityBytes
+                    + " bytes reserved, " + bytes + " more needed");
+        }
+        ByteBuffer reserved;
+        try {
+            reserved = ByteBuffer.allocateDirect(bytes);
+        } catch (OutOfMemoryError e) {
+            throw new StoreFullException("The JVM has no direct memory left for the off-heap store;"
+                    + " -XX:MaxDirectMemorySize needs to be at least the store's capacity of " + capacityBytes + " bytes");
+        }
+        reservedBytes += bytes;
+        return reserved;
+    }
+}
@@ -0,0 +1,221 @@
+package uk.tw.energy.store;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Columns in one slab of an {@link OffHeapArena}, so a meter costs the heap a few objects however many readings it
+ * has. Readings in arrival order are kept as epoch nanos and a decimal's unscaled value and scale, 65 bytes a reading
+ * in all, and are turned back into {@link ElectricityReading}s only when asked for.
+ */
+final class OffHeapReadingColumns implements ReadingColumns {
+
+    private static final int BYTES_PER_READING = 65;
+    // the largest power of two whose slab stays under 2 GiB
+    private static final int MAX_CAPACITY = 1 << 24;
+    private static final MathContext LONG_DIGITS = new MathContext(18, RoundingMode.HALF_UP);
+
+    private final OffHeapArena arena;
+    private ByteBuffer slab;
+    private int capacity;
+    // byte offsets of the columns within the slab; timestamps start at zero
+    private int readingsAt;
+    private int prefixSumsAt;
+    private int prefixKwhAt;
+    private int maximaAt;
+    private int minimaAt;
+    private int arrivalTimesAt;
+    private int arrivalUnscaledAt;
+    private int arrivalScalesAt;
+
+    OffHeapReadingColumns(OffHeapArena arena, int capacity) {
+        this.arena = arena;
+        this.slab = arena.allocate(bytesFor(capacity));
+        layOut(capacity);
+        clearNodes();
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public void grow(int newCapacity, int count) {
+        if (newCapacity > MAX_CAPACITY) {
+            throw new StoreFullException("A meter holds at most " + MAX_CAPACITY + " readings off the heap");
+        }
+        ByteBuffer grown = arena.allocate(bytesFor(newCapacity));
+        ByteBuffer old = slab;
+        int[] from = {0, readingsAt, prefixSumsAt, prefixKwhAt, arrivalTimesAt, arrivalUnscaledAt, arrivalScalesAt};
+        layOut(newCapacity);
+        int[] to = {0, readingsAt, prefixSumsAt, prefixKwhAt, arrivalTimesAt, arrivalUnscaledAt, arrivalScalesAt};
+        int[] lengths = {8 * count, 8 * count, 8 * (count + 1), 8 * count, 8 * count, 8 * count, count};
+        for (int column = 0; column < from.length; column++) {
+            grown.put(to[column], old, from[column], lengths[column]);
+        }
+        slab = grown;
+        clearNodes();
+        arena.free(old);
+    }
+
+    @Override
+    public long timestamp(int position) {
+        return slab.getLong(8 * position);
+    }
+
+    @Override
+    public double reading(int position) {
+        return slab.getDouble(readingsAt + 8 * position);
+    }
+
+    @Override
+    public double prefixSum(int index) {
+        return slab.getDouble(prefixSumsAt + 8 * index);
+    }
+
+    @Override
+    public void setPrefixSum(int index, double sum) {
+        slab.putDouble(prefixSumsAt + 8 * index, sum);
+    }
+
+    @Override
+    public double prefixKwh(int position) {
+        return slab.getDouble(prefixKwhAt + 8 * position);
+    }
+
+    @Override
+    public void setPrefixKwh(int position, double kwh) {
+        slab.putDouble(prefixKwhAt + 8 * position, kwh);
+    }
+
+    @Override
+    public void insert(int position, int count, long timestamp, double reading) {
+        moveAlong(0, position, count);
+        moveAlong(readingsAt, position, count);
+        moveAlong(prefixSumsAt, position + 1, count + 1);
+        moveAlong(prefixKwhAt, position, count);
+        slab.putLong(8 * position, timestamp);
+        slab.putDouble(readingsAt + 8 * position, reading);
+    }
+
+    @Override
+    public void addToPrefixSums(int from, int to, double delta) {
+        add(prefixSumsAt, from, to, delta);
+    }
+
+    @Override
+    public void addToPrefixKwh(int from, int to, double delta) {
+        add(prefixKwhAt, from, to, delta);
+    }
+
+    @Override
+    public int maxNode(int node) {
+        return slab.getInt(maximaAt + 4 * node);
+    }
+
+    @Override
+    public void setMaxNode(int node, int position) {
+        slab.putInt(maximaAt + 4 * node, position);
+    }
+
+    @Override
+    public int minNode(int node) {
+        return slab.getInt(minimaAt + 4 * node);
+    }
+
+    @Override
+    public void setMinNode(int node, int position) {
+        slab.putInt(minimaAt + 4 * node, position);
+    }
+
+    @Override
+    public void checkArrival(ElectricityReading electricityReading) {
+        storable(electricityReading.getReading());
+    }
+
+    @Override
+    public void addArrival(int index, ElectricityReading electricityReading) {
+        BigDecimal reading = storable(electricityReading.getReading());
+        slab.putLong(arrivalTimesAt + 8 * index, ReadingWindow.toEpochNanos(electricityReading.getTime()));
+        slab.putLong(arrivalUnscaledAt + 8 * index, reading.unscaledValue().longValueExact());
+        slab.put(arrivalScalesAt + index, (byte) reading.scale());
+    }
+
+    // a decimal with more digits than a long holds is rounded to 18 significant digits
+    private static BigDecimal storable(BigDecimal reading) {
+        if (reading.precision() > LONG_DIGITS.getPrecision()) {
+            reading = reading.round(LONG_DIGITS);
+        }
+        if (reading.scale() > Byte.MAX_VALUE) {
+            reading = reading.setScale(Byte.MAX_VALUE, RoundingMode.HALF_UP);
+        }
+        if (reading.scale() < Byte.MIN_VALUE) {
+            throw new IllegalArgumentException("Reading " + reading + " is out of range");
+        }
+        return reading;
+    }
+
+    @Override
+    public List<ElectricityReading> arrivals(int count) {
+        List<ElectricityReading> readings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            readings.add(new ElectricityReading(
+                    ReadingWindow.toInstant(slab.getLong(arrivalTimesAt + 8 * i)),
+                    BigDecimal.valueOf(slab.getLong(arrivalUnscaledAt + 8 * i), slab.get(arrivalScalesAt + i))));
+        }
+        return readings;
+    }
+
+    @Override
+    public long heapBytes(int count) {
+        return 0;
+    }
+
+    @Override
+    public long offHeapBytes() {
+        return slab.capacity();
+    }
+
+    static int bytesFor(int capacity) {
+        return BYTES_PER_READING * capacity + 8;
+    }
+
+    private void layOut(int capacity) {
+        this.capacity = capacity;
+        readingsAt = 8 * capacity;
+        prefixSumsAt = 16 * capacity;
+        prefixKwhAt = 24 * capacity + 8;
+        maximaAt = 32 * capacity + 8;
+        minimaAt = 40 * capacity + 8;
+        arrivalTimesAt = 48 * capacity + 8;
+        arrivalUnscaledAt = 56 * capacity + 8;
+        arrivalScalesAt = 64 * capacity + 8;
+    }
+
+    // both trees sit next to each other and an empty node is all ones
+    private void clearNodes() {
+        for (int at = maximaAt; at < arrivalTimesAt; at += 8) {
+            slab.putLong(at, -1L);
+        }
+    }
+
+    // moves the 8-byte values of [from, to) one along, last first so nothing is overwritten before it is moved
+    private void moveAlong(int columnAt, int from, int to) {
+        for (int at = columnAt + 8 * to; at > columnAt + 8 * from; at -= 8) {
+            slab.putLong(at, slab.getLong(at - 8));
+        }
+    }
+
+    private void add(int columnAt, int from, int to, double delta) {
+        for (int at = columnAt + 8 * from, end = columnAt + 8 * to; at < end; at += 8) {
+            slab.putDouble(at, slab.getDouble(at) + delta);
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package uk.tw.energy.store;
+
+/**
+ * Mergeable quantile sketch with relative error guarantees: each reading is counted in the bin of its logarithm
+ * (base {@code (1 + a) / (1 - a)} for a relative accuracy {@code a}), so any quantile is within {@code a} of the
+ * true value, adding a reading is one logarithm and one increment, and two sketches merge by adding their bins. When a
+ * sign's bins would span more than {@value MAX_BINS} of them, some four orders of magnitude, the smallest magnitudes are
+ * collapsed into one bin, which keeps the sketch bounded at the cost of accuracy at the far low end only. Not
+ * thread-safe; the owner synchronises.
+ */
+public class QuantileSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.02;
+    static final int MAX_BINS = 256;
+
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    private static final double MIN_INDEXABLE = 1e-9; // smaller magnitudes count as zero
+    private static final long ESTIMATED_SKETCH_BYTES = 56;
+    private static final long ESTIMATED_BINS_BYTES = 32 + 16; // the bins and the header of their array
+
+    private final Bins positive = new Bins();
+    private final Bins negative = new Bins();
+    private long zeroCount;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public void add(double value) {
+        if (value >= MIN_INDEXABLE) {
+            positive.add(index(value), 1);
+        } else if (value <= -MIN_INDEXABLE) {
+            negative.add(index(-value), 1);
+        } else {
+            zeroCount++;
+        }
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(QuantileSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+        zeroCount += other.zeroCount;
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return an estimate of the heap the sketch takes up, which grows with the range of its readings up to
+     * {@value MAX_BINS} bins of each sign
+     */
+    public long heapBytes() {
+        return ESTIMATED_SKETCH_BYTES + positive.heapBytes() + negative.heapBytes();
+    }
+
+    /**
+     * @param quantile between 0 and 1
+     * @return the value at that quantile, within the relative accuracy, or NaN when nothing was added
+     */
+    public double quantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("A quantile must be between 0 and 1");
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        long rank = (long) (quantile * (count - 1));
+        // the extremes are kept exactly
+        if (rank == 0) {
+            return min;
+        }
+        if (rank == count - 1) {
+            return max;
+        }
+        double value;
+        if (rank < negative.total) {
+            value = -negative.valueAt(negative.total - 1 - rank);
+        } else if (rank < negative.total + zeroCount) {
+            value = 0.0;
+        } else {
+            value = positive.valueAt(rank - negative.total - zeroCount);
+        }
+        return Math.max(min, Math.min(max, value));
+    }
+
+    private static int index(double magnitude) {
+        return (int) Math.ceil(Math.log(magnitude) / LOG_GAMMA);
+    }
+
+    // the value every magnitude in bin i, (gamma^(i-1), gamma^i], is within the relative accuracy of
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    private static final class Bins {
+
+        private static final int SLACK = 16;
+
+        private long[] counts = new long[0];
+        private int offset; // the index of counts[0]
+        private long total;
+
+        void add(int index, long n) {
+            if (counts.length == 0) {
+                counts = new long[SLACK];
+                offset = index - SLACK / 2;
+            } else if (index < offset || index >= offset + counts.length) {
+                index = cover(index);
+            }
+            counts[index - offset] += n;
+            total += n;
+        }
+
+        long heapBytes() {
+            return ESTIMATED_BINS_BYTES + 8L * counts.length;
+        }
+
+        void merge(Bins other) {
+            for (int i = 0; i < other.counts.length; i++) {
+                if (other.counts[i] != 0) {
+                    add(other.offset + i, other.counts[i]);
+                }
+            }
+        }
+
+        // the magnitude of the reading of the given rank, counting up from the smallest
+        double valueAt(long rank) {
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen > rank) {
+                    return value(offset + i);
+                }
+            }
+            return value(offset + counts.length - 1);
+        }
+
+        // widens the bins to take the index, leaving room to grow the same way again, and returns the bin the
+        // index now falls in, which is the lowest one when the smallest magnitudes had to be collapsed
+        private int cover(int index) {
+            int high = Math.max(offset + counts.length - 1, index);
+            int low = Math.min(offset, index);
+            if (high - low + 1 > MAX_BINS) {
+                low = high - MAX_BINS + 1;
+            } else if (index < offset) {
+                low = Math.max(low - SLACK, high - MAX_BINS + 1);
+            } else {
+                high = Math.min(high + SLACK, low + MAX_BINS - 1);
+            }
+            long[] resized = new long[high - low + 1];
+            for (int i = 0; i < counts.length; i++) {
+                resized[Math.max(offset + i, low) - low] += counts[i];
+            }
+            counts = resized;
+            offset = low;
+            return Math.max(index, low);
+        }
+    }
+}
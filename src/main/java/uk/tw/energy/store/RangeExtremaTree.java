@@ -0,0 +1,99 @@
+package uk.tw.energy.store;
+
+/**
+ * Bottom-up segment trees of positions into the readings column, one keeping the position of the largest reading of
+ * each node and one the smallest, with their nodes kept in the meter's columns. Ties go to the earlier position. Not
+ * thread-safe; the owning history synchronises.
+ */
+class RangeExtremaTree {
+
+    private static final int NONE = ReadingColumns.NO_POSITION;
+
+    private final ReadingColumns columns;
+
+    RangeExtremaTree(ReadingColumns columns) {
+        this.columns = columns;
+    }
+
+    /**
+     * Re-reads positions {@code [from, count)} after they were written or shifted, pulling up only the nodes above
+     * them: O(log n) for one appended position and O(count - from) otherwise, which is what shifting the column
+     * already cost.
+     */
+    void update(int from, int count) {
+        int capacity = columns.capacity();
+        if (count - from == 1) {
+            set(capacity, from);
+            return;
+        }
+        for (int i = from; i < count; i++) {
+            columns.setMaxNode(capacity + i, i);
+            columns.setMinNode(capacity + i, i);
+        }
+        for (int low = (capacity + from) >> 1, high = (capacity + count - 1) >> 1; high > 0; low >>= 1, high >>= 1) {
+            for (int node = low; node <= high; node++) {
+                pull(node);
+            }
+        }
+    }
+
+    /**
+     * @return the position of the largest reading in {@code [from, to)}, or -1 for an empty range
+     */
+    int maxPosition(int from, int to) {
+        return query(from, to, true);
+    }
+
+    /**
+     * @return the position of the smallest reading in {@code [from, to)}, or -1 for an empty range
+     */
+    int minPosition(int from, int to) {
+        return query(from, to, false);
+    }
+
+    private int query(int from, int to, boolean largest) {
+        int capacity = columns.capacity();
+        int left = NONE;
+        int right = NONE;
+        for (int low = from + capacity, high = to + capacity; low < high; low >>= 1, high >>= 1) {
+            if ((low & 1) == 1) {
+                left = pick(left, node(low++, largest), largest);
+            }
+            if ((high & 1) == 1) {
+                right = pick(node(--high, largest), right, largest);
+            }
+        }
+        return pick(left, right, largest);
+    }
+
+    private void set(int capacity, int position) {
+        columns.setMaxNode(capacity + position, position);
+        columns.setMinNode(capacity + position, position);
+        for (int node = (capacity + position) >> 1; node > 0; node >>= 1) {
+            pull(node);
+        }
+    }
+
+    private void pull(int node) {
+        columns.setMaxNode(node, pick(columns.maxNode(2 * node), columns.maxNode(2 * node + 1), true));
+        columns.setMinNode(node, pick(columns.minNode(2 * node), columns.minNode(2 * node + 1), false));
+    }
+
+    private int node(int node, boolean largest) {
+        return largest ? columns.maxNode(node) : columns.minNode(node);
+    }
+
+    // the earlier of two positions wins ties, so it is always passed first
+    private int pick(int earlier, int later, boolean largest) {
+        if (earlier == NONE) {
+            return later;
+        }
+        if (later == NONE) {
+            return earlier;
+        }
+        if (largest) {
+            return columns.reading(later) > columns.reading(earlier) ? later : earlier;
+        }
+        return columns.reading(later) < columns.reading(earlier) ? later : earlier;
+    }
+}
@@ -0,0 +1,42 @@
+package uk.tw.energy.store;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.util.List;
+
+/**
+ * Readings of one smart meter accepted together, at their offset in the {@link ReadingChangeFeed}.
+ */
+public class ReadingBatch {
+
+    private final long offset;
+    private final String smartMeterId;
+    private final int shard;
+    private final List<ElectricityReading> electricityReadings;
+
+    ReadingBatch(long offset, String smartMeterId, int shard, List<ElectricityReading> electricityReadings) {
+        this.offset = offset;
+        this.smartMeterId = smartMeterId;
+        this.shard = shard;
+        this.electricityReadings = electricityReadings;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public String getSmartMeterId() {
+        return smartMeterId;
+    }
+
+    public int getShard() {
+        return shard;
+    }
+
+    /**
+     * @return the readings that were stored, without those dropped as already stored, in the order they arrived
+     */
+    public List<ElectricityReading> getElectricityReadings() {
+        return electricityReadings;
+    }
+}
@@ -0,0 +1,184 @@
+package uk.tw.energy.store;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Every batch of readings this node accepted, in the order they were stored and numbered by consecutive offsets, so
+ * consumers can page through what changed since the last offset they saw instead of re-reading whole histories.
+ * Batches are held in fixed-size segments, once in a log of all of them and once in a log per shard, so a page is a
+ * binary search and a sequential copy whether or not it is filtered by shard. The batches keep the readings as they
+ * arrived, as objects on the heap whichever backend the store uses, so once more than the retained number of readings
+ * or more than the retained estimate of heap is held, the oldest segment is dropped and its offsets are gone.
+ */
+public class ReadingChangeFeed {
+
+    public static final int ANY_SHARD = -1;
+    public static final int MAX_PAGE_BATCHES = 10_000;
+    // an ElectricityReading with its Instant and BigDecimal, and its slot in the batch's list
+    public static final long ESTIMATED_HEAP_BYTES_PER_READING = 96;
+    // the batch with its list, the smart meter id and its slots in the logs
+    public static final long ESTIMATED_HEAP_BYTES_PER_BATCH = 128;
+
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;
+
+    private final long retainedReadings;
+    private final long retainedBytes;
+    private final BatchLog batches = new BatchLog();
+    private final BatchLog[] shardBatches;
+    private long earliestOffset;
+    private long endOffset;
+    private long readingsHeld;
+    private long bytesHeld;
+
+    public ReadingChangeFeed(int shardCount, long retainedReadings) {
+        this(shardCount, retainedReadings, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param retainedReadings how many readings the feed holds before it drops its oldest batches; the newest
+     *                         segment of batches is always kept
+     * @param retainedBytes    how much heap the feed is estimated to hold before it drops its oldest batches
+     */
+    public ReadingChangeFeed(int shardCount, long retainedReadings, long retainedBytes) {
+        if (shardCount < 1 || retainedReadings < 1 || retainedBytes < 1) {
+            throw new IllegalArgumentException("A change feed needs at least one shard, one retained reading and one retained byte");
+        }
+        this.retainedReadings = retainedReadings;
+        this.retainedBytes = retainedBytes;
+        this.shardBatches = new BatchLog[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shardBatches[i] = new BatchLog();
+        }
+    }
+
+    /**
+     * @return the offset the batch was given
+     */
+    public synchronized long publish(String smartMeterId, int shard, List<ElectricityReading> electricityReadings) {
+        ReadingBatch batch = new ReadingBatch(endOffset++, smartMeterId, shard, electricityReadings);
+        batches.add(batch);
+        shardBatches[shard].add(batch);
+        readingsHeld += electricityReadings.size();
+        bytesHeld += heapBytesOf(batch);
+        while ((readingsHeld > retainedReadings || bytesHeld > retainedBytes) && batches.segmentCount() > 1) {
+            for (ReadingBatch dropped : batches.dropFirstSegment()) {
+                readingsHeld -= dropped.getElectricityReadings().size();
+                bytesHeld -= heapBytesOf(dropped);
+            }
+            earliestOffset = batches.get(0).getOffset();
+            for (BatchLog shardLog : shardBatches) {
+                shardLog.dropSegmentsBefore(earliestOffset);
+            }
+        }
+        return batch.getOffset();
+    }
+
+    /**
+     * @param from  the offset to read from; batches before the earliest retained one are gone, and reading from
+     *              before it starts at it
+     * @param limit the most batches to return, at most {@value MAX_PAGE_BATCHES}
+     * @param shard the shard whose batches to return, or {@link #ANY_SHARD}
+     */
+    public synchronized ReadingFeedPage read(long from, int limit, int shard) {
+        if (from < 0) {
+            throw new IllegalArgumentException("from must not be negative");
+        }
+        if (limit < 1 || limit > MAX_PAGE_BATCHES) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_BATCHES);
+        }
+        if (shard != ANY_SHARD && (shard < 0 || shard >= shardBatches.length)) {
+            throw new IllegalArgumentException("shard must be between 0 and " + (shardBatches.length - 1));
+        }
+        BatchLog log = shard == ANY_SHARD ? batches : shardBatches[shard];
+        long start = Math.max(from, earliestOffset);
+        int first = log.firstAtOrAfter(start);
+        int last = Math.min(log.size(), first + limit);
+        List<ReadingBatch> page = new ArrayList<>(last - first);
+        for (int i = first; i < last; i++) {
+            page.add(log.get(i));
+        }
+        // a short page reached the end of the log, so a filtered reader can skip past other shards' batches too
+        long nextOffset = page.size() == limit ? page.get(limit - 1).getOffset() + 1 : Math.max(start, endOffset);
+        return ReadingFeedPage.builder()
+                .batches(page)
+                .nextOffset(nextOffset)
+                .earliestOffset(earliestOffset)
+                .endOffset(endOffset)
+                .build();
+    }
+
+    public int getShardCount() {
+        return shardBatches.length;
+    }
+
+    public synchronized long getReadingsHeld() {
+        return readingsHeld;
+    }
+
+    /**
+     * @return the estimated heap taken by the batches held
+     */
+    public synchronized long heapBytes() {
+        return bytesHeld;
+    }
+
+    private static long heapBytesOf(ReadingBatch batch) {
+        return ESTIMATED_HEAP_BYTES_PER_BATCH + batch.getElectricityReadings().size() * ESTIMATED_HEAP_BYTES_PER_READING;
+    }
+
+    private static final class BatchLog {
+
+        private final List<ReadingBatch[]> segments = new ArrayList<>();
+        private int size;
+
+        void add(ReadingBatch batch) {
+            if ((size & (SEGMENT_SIZE - 1)) == 0) {
+                segments.add(new ReadingBatch[SEGMENT_SIZE]);
+            }
+            segments.get(size >>> SEGMENT_BITS)[size & (SEGMENT_SIZE - 1)] = batch;
+            size++;
+        }
+
+        ReadingBatch get(int index) {
+            return segments.get(index >>> SEGMENT_BITS)[index & (SEGMENT_SIZE - 1)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int segmentCount() {
+            return segments.size();
+        }
+
+        ReadingBatch[] dropFirstSegment() {
+            size -= SEGMENT_SIZE;
+            return segments.remove(0);
+        }
+
+        // only whole segments go, so a shard's log may still hold a few batches before the offset
+        void dropSegmentsBefore(long offset) {
+            while (segments.size() > 1 && segments.get(0)[SEGMENT_SIZE - 1].getOffset() < offset) {
+                dropFirstSegment();
+            }
+        }
+
+        int firstAtOrAfter(long offset) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (get(middle).getOffset() < offset) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+    }
+}
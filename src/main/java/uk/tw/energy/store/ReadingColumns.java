@@ -0,0 +1,70 @@
+package uk.tw.energy.store;
+
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.util.List;
+
+/**
+ * Storage behind one meter's history: the time-sorted timestamp and reading columns, their prefix sums, the nodes of
+ * the range-extrema trees and the readings in arrival order, all sized by one power-of-two capacity. Not thread-safe;
+ * the owning history synchronises.
+ */
+interface ReadingColumns {
+
+    int NO_POSITION = -1;
+
+    int capacity();
+
+    /**
+     * Moves to a larger capacity, keeping the first {@code count} positions and arrival entries. The extrema tree
+     * nodes are laid out by capacity, so they come back empty.
+     */
+    void grow(int capacity, int count);
+
+    long timestamp(int position);
+
+    double reading(int position);
+
+    /**
+     * @param index from zero, the sum of no readings, to {@code count}
+     */
+    double prefixSum(int index);
+
+    void setPrefixSum(int index, double sum);
+
+    double prefixKwh(int position);
+
+    void setPrefixKwh(int position, double kwh);
+
+    /**
+     * Writes a reading at {@code position}, moving the columns from there on along by one; the prefix sums move with
+     * them and are left for the caller to correct.
+     */
+    void insert(int position, int count, long timestamp, double reading);
+
+    void addToPrefixSums(int from, int to, double delta);
+
+    void addToPrefixKwh(int from, int to, double delta);
+
+    int maxNode(int node);
+
+    void setMaxNode(int node, int position);
+
+    int minNode(int node);
+
+    void setMinNode(int node, int position);
+
+    /**
+     * @throws IllegalArgumentException when the reading cannot be kept by {@link #addArrival}; called for a whole
+     * batch before any of it is inserted
+     */
+    void checkArrival(ElectricityReading electricityReading);
+
+    void addArrival(int index, ElectricityReading electricityReading);
+
+    List<ElectricityReading> arrivals(int count);
+
+    long heapBytes(int count);
+
+    long offHeapBytes();
+}
@@ -0,0 +1,38 @@
+package uk.tw.energy.store;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Largest and smallest reading of one smart meter within a time range, each with the time it was taken.
+ */
+public class ReadingExtremes {
+
+    private final double maxReading; // kW
+    private final long maxEpochNanos;
+    private final double minReading; // kW
+    private final long minEpochNanos;
+
+    ReadingExtremes(double maxReading, long maxEpochNanos, double minReading, long minEpochNanos) {
+        this.maxReading = maxReading;
+        this.maxEpochNanos = maxEpochNanos;
+        this.minReading = minReading;
+        this.minEpochNanos = minEpochNanos;
+    }
+
+    public BigDecimal getMaxReading() {
+        return BigDecimal.valueOf(maxReading);
+    }
+
+    public Instant getMaxReadingTime() {
+        return ReadingWindow.toInstant(maxEpochNanos);
+    }
+
+    public BigDecimal getMinReading() {
+        return BigDecimal.valueOf(minReading);
+    }
+
+    public Instant getMinReadingTime() {
+        return ReadingWindow.toInstant(minEpochNanos);
+    }
+}
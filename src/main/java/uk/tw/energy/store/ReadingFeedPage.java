@@ -0,0 +1,15 @@
+package uk.tw.energy.store;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Builder
+@Getter
+public class ReadingFeedPage {
+    private List<ReadingBatch> batches;
+    private long nextOffset;        // where the next page starts
+    private long earliestOffset;    // the oldest batch still retained
+    private long endOffset;         // the offset the next stored batch gets
+}
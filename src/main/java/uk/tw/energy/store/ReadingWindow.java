@@ -0,0 +1,79 @@
+package uk.tw.energy.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Summary of the readings of one smart meter within a time range, read off the prefix sums of the meter's history
+ * without visiting the readings themselves. A window remembers the history it was read off, so the readings around it
+ * can be summarised the same way.
+ */
+public class ReadingWindow {
+
+    public static final ReadingWindow EMPTY = new ReadingWindow(null, 0, 0.0, 0L, 0L, 0.0);
+
+    private final MeterReadingHistory history;
+
+    private final int count;
+    private final double summedReadings; // kW
+    private final long firstEpochNanos;
+    private final long lastEpochNanos;
+    private final double trapezoidalKwh;
+
+    ReadingWindow(MeterReadingHistory history, int count, double summedReadings, long firstEpochNanos, long lastEpochNanos, double trapezoidalKwh) {
+        this.history = history;
+        this.count = count;
+        this.summedReadings = summedReadings;
+        this.firstEpochNanos = firstEpochNanos;
+        this.lastEpochNanos = lastEpochNanos;
+        this.trapezoidalKwh = trapezoidalKwh;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public double getSummedReadings() {
+        return summedReadings;
+    }
+
+    public Instant getFirst() {
+        return toInstant(firstEpochNanos);
+    }
+
+    public Instant getLast() {
+        return toInstant(lastEpochNanos);
+    }
+
+    public Duration getTimeElapsed() {
+        return Duration.ofNanos(lastEpochNanos - firstEpochNanos);
+    }
+
+    public double getTrapezoidalKwh() {
+        return trapezoidalKwh;
+    }
+
+    /**
+     * @return the readings of the same meter taken from {@code from} (inclusive) until {@code to} (exclusive), which
+     * need not lie within this window, as they are now
+     */
+    public ReadingWindow within(Instant from, Instant to) {
+        return history == null ? EMPTY : history.window(from, to);
+    }
+
+    /**
+     * @return when the last reading of the same meter before {@code time} was taken, or empty when there is none
+     */
+    public Optional<Instant> lastReadingBefore(Instant time) {
+        return history == null ? Optional.empty() : history.lastReadingBefore(time);
+    }
+
+    static long toEpochNanos(Instant time) {
+        return time.getEpochSecond() * 1_000_000_000L + time.getNano();
+    }
+
+    static Instant toInstant(long epochNanos) {
+        return Instant.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L), Math.floorMod(epochNanos, 1_000_000_000L));
+    }
+}
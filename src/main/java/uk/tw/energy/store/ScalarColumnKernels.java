@@ -0,0 +1,21 @@
+package uk.tw.energy.store;
+
+final class ScalarColumnKernels implements ColumnKernels {
+
+    static final ScalarColumnKernels INSTANCE = new ScalarColumnKernels();
+
+    private ScalarColumnKernels() {
+    }
+
+    @Override
+    public void add(double[] values, int from, int to, double delta) {
+        for (int i = from; i < to; i++) {
+            values[i] += delta;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "scalar";
+    }
+}
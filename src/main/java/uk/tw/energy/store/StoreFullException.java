@@ -0,0 +1,11 @@
+package uk.tw.energy.store;
+
+/**
+ * Thrown before any reading of a batch is stored when the meter's columns cannot grow to hold it.
+ */
+public class StoreFullException extends RuntimeException {
+
+    public StoreFullException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,20 @@
+package uk.tw.energy.store;
+
+import lombok.Builder;
+import lombok.Getter;
+
+@Builder(toBuilder = true)
+@Getter
+public class StoreUsage {
+    private String backend;
+    private long meters;
+    private long readings;
+    private long heapBytes;             // estimated, for readings kept on the heap and the load profiles
+    private long loadProfileHeapBytes;  // estimated, the part of heapBytes taken by the load profiles
+    private long offHeapUsedBytes;      // in the slabs meters hold
+    private long offHeapReservedBytes;  // taken from the JVM's direct memory
+    private long offHeapCapacityBytes;
+    private long offHeapSlabs;
+    private long feedReadings;          // held by the change feed, on the heap whatever the backend
+    private long feedHeapBytes;         // estimated, for the change feed's batches
+}
@@ -0,0 +1,32 @@
+package uk.tw.energy.store;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Fails to load without the incubator module, so it is only reached through {@link ColumnKernels#best()}.
+ */
+final class VectorColumnKernels implements ColumnKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void add(double[] values, int from, int to, double delta) {
+        int i = from;
+        for (int bound = from + SPECIES.loopBound(to - from); i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, values, i).add(delta).intoArray(values, i);
+        }
+        for (; i < to; i++) {
+            values[i] += delta;
+        }
+    }
+
+    @Override
+    public String name() {
+        return "vector-" + SPECIES.vectorBitSize();
+    }
+}
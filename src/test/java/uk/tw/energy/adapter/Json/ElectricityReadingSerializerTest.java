@@ -0,0 +1,120 @@
+package uk.tw.energy.adapter.Json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.DayOfWeekCost;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ElectricityReadingSerializerTest {
+
+    private final ObjectMapper reflective = new ObjectMapper().findAndRegisterModules()
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    private final ObjectMapper tuned = new ObjectMapper().findAndRegisterModules()
+            .configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false)
+            .registerModule(new ReadingsJsonModule());
+
+    @Test
+    public void givenTimesWithAndWithoutFractionsOfASecondShouldWriteThemLikeTheJavaTimeModule() throws Exception {
+        List<ElectricityReading> readings = new ArrayList<>();
+        for (String time : List.of("1970-01-01T00:00:00Z", "2000-02-29T23:59:59Z", "2020-11-29T08:00:00.120Z",
+                "2023-03-01T00:00:00.000450Z", "2100-12-31T12:34:56.000000007Z", "9999-12-31T23:59:59.999999999Z",
+                "1969-12-31T23:59:59Z", "+10000-01-01T00:00:00Z")) {
+            readings.add(new ElectricityReading(Instant.parse(time), BigDecimal.ONE));
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 10_000; i++) {
+            readings.add(new ElectricityReading(Instant.ofEpochSecond(random.nextLong(253_402_300_800L), random.nextInt(1_000_000_000)),
+                    BigDecimal.ONE));
+        }
+
+        assertThat(tuned.writeValueAsString(readings)).isEqualTo(reflective.writeValueAsString(readings));
+    }
+
+    @Test
+    public void givenReadingsOfEveryScaleShouldWriteThemLikeBigDecimalDoes() throws Exception {
+        List<ElectricityReading> readings = new ArrayList<>();
+        Instant time = Instant.parse("2020-11-29T08:00:00Z");
+        for (String reading : List.of("0", "0.00", "0.0503", "-0.0503", "12", "-3.25", "1234567.891", "0.000001",
+                "0.0000001", "1E+3", "123456789012345678901.5", "-0.000000")) {
+            readings.add(new ElectricityReading(time, new BigDecimal(reading)));
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 10_000; i++) {
+            readings.add(new ElectricityReading(time,
+                    new BigDecimal(BigInteger.valueOf(random.nextLong() >> random.nextInt(64)), random.nextInt(-2, 24))));
+        }
+
+        assertThat(tuned.writeValueAsString(readings)).isEqualTo(reflective.writeValueAsString(readings));
+    }
+
+    @Test
+    public void givenMissingValuesOrReadingsWithinOtherResponsesShouldWriteTheSameShape() throws Exception {
+        DayOfWeekCost dayOfWeekCost = DayOfWeekCost.builder()
+                .dayOfWeek(DayOfWeek.MONDAY)
+                .cost(BigDecimal.TEN)
+                .dailyElectricityReadings(List.of(
+                        new ElectricityReading(null, BigDecimal.ONE),
+                        new ElectricityReading(Instant.parse("2020-11-29T08:00:00Z"), null)))
+                .build();
+
+        assertThat(tuned.writerWithDefaultPrettyPrinter().writeValueAsString(dayOfWeekCost))
+                .isEqualTo(reflective.writerWithDefaultPrettyPrinter().writeValueAsString(dayOfWeekCost));
+    }
+
+    @Test
+    public void givenFractionsOfASecondShouldFormatThemInGroupsOfThreeDigits() {
+        assertThat(formatInstant(Instant.parse("2020-11-29T08:00:00Z"))).isEqualTo("2020-11-29T08:00:00Z");
+        assertThat(formatInstant(Instant.parse("2020-11-29T08:00:00.5Z"))).isEqualTo("2020-11-29T08:00:00.500Z");
+        assertThat(formatInstant(Instant.parse("2020-11-29T08:00:00.123Z"))).isEqualTo("2020-11-29T08:00:00.123Z");
+        assertThat(formatInstant(Instant.parse("2020-11-29T08:00:00.000001Z"))).isEqualTo("2020-11-29T08:00:00.000001Z");
+        assertThat(formatInstant(Instant.parse("2020-11-29T08:00:00.100000001Z"))).isEqualTo("2020-11-29T08:00:00.100000001Z");
+    }
+
+    @Test
+    public void givenTimesOutsideTheFastRangeShouldLeaveThemToInstant() {
+        char[] buffer = new char[ElectricityReadingSerializer.BUFFER_LENGTH];
+
+        assertThat(ElectricityReadingSerializer.formatInstant(Instant.parse("1969-12-31T23:59:59.999Z"), buffer)).isEqualTo(-1);
+        assertThat(ElectricityReadingSerializer.formatInstant(Instant.parse("+10000-01-01T00:00:00Z"), buffer)).isEqualTo(-1);
+    }
+
+    @Test
+    public void givenZerosAndNegativeReadingsShouldFormatThemLikeBigDecimal() {
+        for (BigDecimal reading : List.of(BigDecimal.ZERO, BigDecimal.valueOf(0, 6), new BigDecimal("-5"),
+                new BigDecimal("-0.0503"), new BigDecimal("-1234567.891"), BigDecimal.valueOf(-1, 6),
+                BigDecimal.valueOf(Long.MAX_VALUE / 10, 18))) {
+            assertThat(formatDecimal(reading)).isEqualTo(reading.toString());
+        }
+    }
+
+    @Test
+    public void givenReadingsThatPrintInScientificNotationOrDoNotFitALongShouldLeaveThemToTheGenerator() {
+        char[] buffer = new char[ElectricityReadingSerializer.BUFFER_LENGTH];
+
+        for (BigDecimal reading : List.of(BigDecimal.valueOf(0, 7), BigDecimal.valueOf(0, 18), BigDecimal.valueOf(-1, 7),
+                new BigDecimal("1E+3"), BigDecimal.valueOf(Long.MIN_VALUE, 2), new BigDecimal("123456789012345678901.5"))) {
+            assertThat(ElectricityReadingSerializer.formatDecimal(reading, buffer)).as(reading.toString()).isEqualTo(-1);
+        }
+    }
+
+    private static String formatInstant(Instant time) {
+        char[] buffer = new char[ElectricityReadingSerializer.BUFFER_LENGTH];
+        return new String(buffer, 0, ElectricityReadingSerializer.formatInstant(time, buffer));
+    }
+
+    private static String formatDecimal(BigDecimal reading) {
+        char[] buffer = new char[ElectricityReadingSerializer.BUFFER_LENGTH];
+        return new String(buffer, 0, ElectricityReadingSerializer.formatDecimal(reading, buffer));
+    }
+}
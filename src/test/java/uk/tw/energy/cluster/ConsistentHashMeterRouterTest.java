@@ -0,0 +1,65 @@
+package uk.tw.energy.cluster;
+
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.adapter.Cluster.ConsistentHashMeterRouter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConsistentHashMeterRouterTest {
+
+    private static final String NODE_A = "http://localhost:8080";
+    private static final String NODE_B = "http://localhost:8090";
+    private static final String NODE_C = "http://localhost:8100";
+
+    @Test
+    public void givenMetersOwnedBySelfShouldNotRouteThem() {
+        ConsistentHashMeterRouter router = new ConsistentHashMeterRouter(List.of(NODE_A, NODE_B), NODE_A, 64);
+
+        IntStream.range(0, 100).mapToObj(i -> "smart-meter-" + i)
+                .forEach(smartMeterId -> assertThat(router.remoteOwnerOf(smartMeterId).isEmpty())
+                        .isEqualTo(router.ownerOf(smartMeterId).equals(NODE_A)));
+    }
+
+    @Test
+    public void givenTheSameClusterEveryNodeShouldAgreeOnTheOwner() {
+        ConsistentHashMeterRouter routerOfA = new ConsistentHashMeterRouter(List.of(NODE_A, NODE_B), NODE_A, 64);
+        ConsistentHashMeterRouter routerOfB = new ConsistentHashMeterRouter(List.of(NODE_A, NODE_B), NODE_B, 64);
+
+        IntStream.range(0, 100).mapToObj(i -> "smart-meter-" + i)
+                .forEach(smartMeterId -> assertThat(routerOfA.ownerOf(smartMeterId)).isEqualTo(routerOfB.ownerOf(smartMeterId)));
+    }
+
+    @Test
+    public void givenManyMetersShouldSplitTheFleetBetweenNodes() {
+        ConsistentHashMeterRouter router = new ConsistentHashMeterRouter(List.of(NODE_A, NODE_B, NODE_C), NODE_A, 64);
+
+        Map<String, Long> metersPerNode = IntStream.range(0, 3000).mapToObj(i -> "smart-meter-" + i)
+                .collect(Collectors.groupingBy(router::ownerOf, Collectors.counting()));
+
+        assertThat(metersPerNode).containsOnlyKeys(NODE_A, NODE_B, NODE_C);
+        assertThat(metersPerNode.values()).allMatch(meters -> meters > 600);
+    }
+
+    @Test
+    public void givenAnAddedNodeShouldOnlyMoveMetersToTheNewNode() {
+        ConsistentHashMeterRouter before = new ConsistentHashMeterRouter(List.of(NODE_A, NODE_B), NODE_A, 64);
+        ConsistentHashMeterRouter after = new ConsistentHashMeterRouter(List.of(NODE_A, NODE_B, NODE_C), NODE_A, 64);
+
+        Map<String, String> ownersBefore = IntStream.range(0, 1000).mapToObj(i -> "smart-meter-" + i)
+                .collect(Collectors.toMap(Function.identity(), before::ownerOf));
+
+        ownersBefore.forEach((smartMeterId, owner) -> assertThat(after.ownerOf(smartMeterId)).isIn(owner, NODE_C));
+    }
+
+    @Test
+    public void givenSelfOutsideTheClusterShouldFail() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashMeterRouter(List.of(NODE_A, NODE_B), NODE_C, 64));
+    }
+}
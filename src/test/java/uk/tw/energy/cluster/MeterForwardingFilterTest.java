@@ -0,0 +1,214 @@
+package uk.tw.energy.cluster;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import uk.tw.energy.adapter.Cluster.MeterForwardingFilter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MeterForwardingFilterTest {
+
+    private static final String REMOTE_METER = "smart-meter-remote";
+    private static final String LOCAL_METER = "smart-meter-local";
+    private static final String UNREACHABLE_METER = "smart-meter-unreachable";
+    private static final String UNREACHABLE_NODE = "http://localhost:1";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<String> forwardedRequests = new CopyOnWriteArrayList<>();
+    private HttpServer owner;
+    private HttpServer self;
+    private MeterForwardingFilter filter;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        owner = node("owner");
+        self = node("self");
+        String ownerUrl = "http://localhost:" + owner.getAddress().getPort();
+        filter = new MeterForwardingFilter(smartMeterId -> switch (smartMeterId) {
+            case REMOTE_METER -> Optional.of(ownerUrl);
+            case UNREACHABLE_METER -> Optional.of(UNREACHABLE_NODE);
+            default -> Optional.empty();
+        }, "http://localhost:" + self.getAddress().getPort(), objectMapper);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        owner.stop(0);
+        self.stop(0);
+    }
+
+    @Test
+    public void givenTheLoadProfileOfAMeterOwnedElsewhereShouldForwardItToTheOwner() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/readings/load-profile/" + REMOTE_METER);
+        request.setQueryString("quantiles=0.5");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(chain.getRequest()).isNull();
+        assertThat(forwardedRequests).containsExactly("owner GET /readings/load-profile/" + REMOTE_METER + "?quantiles=0.5 true");
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentAsString()).isEqualTo("{\"forwarded\":true}");
+    }
+
+    @Test
+    public void givenTheLoadProfileOfAMeterOwnedHereShouldPassItOn() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/readings/load-profile/" + LOCAL_METER);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isSameAs(request);
+        assertThat(forwardedRequests).isEmpty();
+    }
+
+    @Test
+    public void givenABatchOfMetersOfSeveralNodesShouldSplitItBetweenTheirOwners() throws Exception {
+        MockHttpServletRequest request = batchRequest("/price-plans/recommend", LOCAL_METER, REMOTE_METER, LOCAL_METER);
+        request.setQueryString("limit=1");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, response, chain);
+
+        assertThat(chain.getRequest()).isNull();
+        assertThat(forwardedRequests).containsExactlyInAnyOrder(
+                "owner POST /price-plans/recommend?limit=1 true [\"" + REMOTE_METER + "\"]",
+                "self POST /price-plans/recommend?limit=1 true [\"" + LOCAL_METER + "\"]");
+        assertThat(response.getContentType()).isEqualTo("application/x-ndjson");
+        assertThat(lines(response)).containsExactlyInAnyOrder(
+                Map.of("smartMeterId", LOCAL_METER, "node", "self"),
+                Map.of("smartMeterId", REMOTE_METER, "node", "owner"));
+    }
+
+    @Test
+    public void givenABatchWithMetersOfAnUnreachableNodeShouldAnswerThemWithBadGateway() throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(batchRequest("/smart-meters/costs", REMOTE_METER, UNREACHABLE_METER), response, new MockFilterChain());
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(lines(response)).containsExactlyInAnyOrder(
+                Map.of("smartMeterId", REMOTE_METER, "node", "owner"),
+                Map.of("smartMeterId", UNREACHABLE_METER, "status", 502,
+                        "error", "Owner node " + UNREACHABLE_NODE + " is unreachable"));
+    }
+
+    @Test
+    public void givenABatchOfMetersOwnedHereShouldPassItOn() throws Exception {
+        MockHttpServletRequest request = batchRequest("/price-plans/compare-all", LOCAL_METER);
+        MockFilterChain chain = new MockFilterChain();
+
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+
+        assertThat(chain.getRequest()).isNotNull();
+        assertThat(chain.getRequest().getInputStream().readAllBytes())
+                .isEqualTo(objectMapper.writeValueAsBytes(Map.of("smartMeterIds", List.of(LOCAL_METER))));
+        assertThat(forwardedRequests).isEmpty();
+    }
+
+    @Test
+    public void givenAPostPassedOnShouldHandItsBodyToAReadListener() throws Exception {
+        MockFilterChain chain = new MockFilterChain();
+        filter.doFilter(batchRequest("/price-plans/compare-all", LOCAL_METER), new MockHttpServletResponse(), chain);
+        ServletInputStream body = chain.getRequest().getInputStream();
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        List<String> events = new ArrayList<>();
+
+        body.setReadListener(new ReadListener() {
+            @Override
+            public void onDataAvailable() throws IOException {
+                events.add("data");
+                byte[] buffer = new byte[8];
+                while (body.isReady() && !body.isFinished()) {
+                    int length = body.read(buffer);
+                    if (length > 0) {
+                        read.write(buffer, 0, length);
+                    }
+                }
+            }
+
+            @Override
+            public void onAllDataRead() {
+                events.add("done");
+            }
+
+            @Override
+            public void onError(Throwable failure) {
+                events.add("error");
+            }
+        });
+
+        assertThat(events).containsExactly("data", "done");
+        assertThat(read.toByteArray()).isEqualTo(objectMapper.writeValueAsBytes(Map.of("smartMeterIds", List.of(LOCAL_METER))));
+    }
+
+    // answers a batch with a line per smart meter it was sent, naming itself, and anything else with one line
+    private HttpServer node(String name) throws IOException {
+        HttpServer node = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        node.createContext("/", exchange -> {
+            String request = name + " " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                    + " " + exchange.getRequestHeaders().getFirst(MeterForwardingFilter.FORWARDED_HEADER);
+            StringBuilder body = new StringBuilder();
+            if ("POST".equals(exchange.getRequestMethod())) {
+                JsonNode smartMeterIds = objectMapper.readTree(exchange.getRequestBody()).path("smartMeterIds");
+                request += " " + smartMeterIds;
+                for (JsonNode smartMeterId : smartMeterIds) {
+                    body.append(objectMapper.writeValueAsString(Map.of("smartMeterId", smartMeterId.asText(), "node", name)))
+                            .append('\n');
+                }
+            } else {
+                body.append("{\"forwarded\":true}");
+            }
+            forwardedRequests.add(request);
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, bytes.length);
+            exchange.getResponseBody().write(bytes);
+            exchange.close();
+        });
+        node.start();
+        return node;
+    }
+
+    private MockHttpServletRequest batchRequest(String path, String... smartMeterIds) throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", path);
+        request.setContentType("application/json");
+        request.setContent(objectMapper.writeValueAsBytes(Map.of("smartMeterIds", List.of(smartMeterIds))));
+        return request;
+    }
+
+    private List<Map<String, Object>> lines(MockHttpServletResponse response) throws IOException {
+        List<Map<String, Object>> lines = new ArrayList<>();
+        response.getContentAsString().lines().forEach(line -> {
+            try {
+                lines.add(objectMapper.readValue(line, new TypeReference<Map<String, Object>>() { }));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return lines;
+    }
+}
@@ -1,18 +1,36 @@
 package uk.tw.energy.controller;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
 import uk.tw.energy.adapter.SmartMeter.controller.MeterReadingController;
+import uk.tw.energy.adapter.SmartMeter.dto.response.SmartMeterLoadProfileResponse;
+import uk.tw.energy.adapter.SmartMeter.dto.response.SmartMeterPeakDemandResponse;
+import uk.tw.energy.adapter.SmartMeter.dto.response.SmartMeterReadingFeedResponse;
 import uk.tw.energy.builders.MeterReadingsBuilder;
 import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.LoadProfileHour;
 import uk.tw.energy.domain.MeterReadings;
+import uk.tw.energy.service.AccountService;
 import uk.tw.energy.service.MeterReadingService;
-
+import uk.tw.energy.service.MeterVersionService;
+import uk.tw.energy.store.MeterIdDictionary;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingChangeFeed;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 
@@ -24,8 +42,12 @@ public class MeterReadingControllerTest {
 
     @BeforeEach
     public void setUp() {
-        this.meterReadingService = new MeterReadingService(new HashMap<>());
-        this.meterReadingController = new MeterReadingController(meterReadingService);
+        MeterIdDictionary meterIds = new MeterIdDictionary();
+        MeterReadingStore meterReadingStore = new MeterReadingStore(2, Duration.ZERO, meterIds);
+        this.meterReadingService = new MeterReadingService(meterReadingStore,
+                new ReadingChangeFeed(meterReadingStore.getShardCount(), 1_000_000), new SimpleMeterRegistry());
+        this.meterReadingController = new MeterReadingController(meterReadingService,
+                new MeterVersionService(meterReadingStore, new AccountService(Map.of(), meterIds), meterIds));
     }
 
     @Test
@@ -82,8 +104,147 @@ public class MeterReadingControllerTest {
         assertThat(meterReadingService.getReadings(SMART_METER_ID).get()).isEqualTo(meterReadings.getElectricityReadings());
     }
 
+    @Test
+    public void givenTheSameBatchIsStoredTwiceShouldStoreItsReadingsOnce() {
+        MeterReadings meterReadings = new MeterReadingsBuilder().setSmartMeterId(SMART_METER_ID)
+                .generateElectricityReadings()
+                .build();
+
+        meterReadingController.storeReadings(meterReadings);
+        meterReadingController.storeReadings(meterReadings);
+
+        assertThat(meterReadingService.getReadings(SMART_METER_ID).get()).isEqualTo(meterReadings.getElectricityReadings());
+    }
+
+    @Test
+    public void givenARetriedBatchWithTheSameIdempotencyKeyShouldIgnoreTheRetry() {
+        MeterReadings meterReadings = new MeterReadings(SMART_METER_ID,
+                new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings(), "batch-1");
+        MeterReadings retry = new MeterReadings(SMART_METER_ID,
+                new MeterReadingsBuilder().generateElectricityReadings(5, Instant.now().plusSeconds(60)).build().getElectricityReadings(), "batch-1");
+
+        meterReadingController.storeReadings(meterReadings);
+        meterReadingController.storeReadings(retry);
+
+        assertThat(meterReadingService.getReadings(SMART_METER_ID).get()).isEqualTo(meterReadings.getElectricityReadings());
+    }
+
+    @Test
+    public void givenAReadingWithoutTimeShouldReturnErrorResponse() {
+        MeterReadings meterReadings = new MeterReadings(SMART_METER_ID, List.of(new ElectricityReading(null, BigDecimal.ONE)));
+        assertThat(meterReadingController.storeReadings(meterReadings).getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @Test
+    public void givenAReadingWithoutValueShouldReturnErrorResponseAndStoreNoneOfTheBatch() {
+        MeterReadings meterReadings = new MeterReadings(SMART_METER_ID, List.of(
+                new ElectricityReading(Instant.now(), BigDecimal.ONE), new ElectricityReading(Instant.now().plusSeconds(1), null)));
+        assertThat(meterReadingController.storeReadings(meterReadings).getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(meterReadingService.getReadings(SMART_METER_ID)).isEmpty();
+    }
+
     @Test
     public void givenMeterIdThatIsNotRecognisedShouldReturnNotFound() {
-        assertThat(meterReadingController.readReadings(SMART_METER_ID).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(meterReadingController.readReadings(SMART_METER_ID, webRequest(null)).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void givenTheETagOfUnchangedReadingsShouldReturnNotModified() {
+        meterReadingService.storeReadings(SMART_METER_ID, new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+        ServletWebRequest first = webRequest(null);
+        meterReadingController.readReadings(SMART_METER_ID, first);
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+
+        ServletWebRequest revalidation = webRequest(eTag);
+
+        assertThat(meterReadingController.readReadings(SMART_METER_ID, revalidation)).isNull();
+        assertThat(revalidation.getResponse().getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
+    }
+
+    @Test
+    public void givenTheETagOfReadingsThatHaveSinceChangedShouldReturnTheReadings() {
+        meterReadingService.storeReadings(SMART_METER_ID, new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+        ServletWebRequest first = webRequest(null);
+        meterReadingController.readReadings(SMART_METER_ID, first);
+        String eTag = first.getResponse().getHeader(HttpHeaders.ETAG);
+        meterReadingService.storeReadings(SMART_METER_ID, new MeterReadingsBuilder()
+                .generateElectricityReadings(5, Instant.now().plusSeconds(60)).build().getElectricityReadings());
+
+        ServletWebRequest revalidation = webRequest(eTag);
+
+        assertThat(meterReadingController.readReadings(SMART_METER_ID, revalidation).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(revalidation.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(eTag);
+    }
+
+    @Test
+    public void givenReadingsWithinTheRangeShouldReturnTheirPeakAndTrough() {
+        Instant start = Instant.parse("2023-04-10T10:00:00Z");
+        meterReadingService.storeReadings(SMART_METER_ID, List.of(
+                new ElectricityReading(start, BigDecimal.valueOf(0.9)),
+                new ElectricityReading(start.plusSeconds(60), BigDecimal.valueOf(0.4)),
+                new ElectricityReading(start.plusSeconds(120), BigDecimal.valueOf(0.7)),
+                new ElectricityReading(start.plusSeconds(180), BigDecimal.valueOf(0.2))));
+
+        SmartMeterPeakDemandResponse peak = meterReadingController
+                .readPeakDemand(SMART_METER_ID, start.plusSeconds(60), start.plusSeconds(180)).getBody();
+
+        assertThat(peak.getMaxReading()).isEqualTo(BigDecimal.valueOf(0.7));
+        assertThat(peak.getMaxReadingTime()).isEqualTo(start.plusSeconds(120));
+        assertThat(peak.getMinReading()).isEqualTo(BigDecimal.valueOf(0.4));
+        assertThat(peak.getMinReadingTime()).isEqualTo(start.plusSeconds(60));
+    }
+
+    @Test
+    public void givenARangeWithoutReadingsShouldReturnNotFoundForThePeak() {
+        Instant start = Instant.parse("2023-04-10T10:00:00Z");
+        meterReadingService.storeReadings(SMART_METER_ID, List.of(new ElectricityReading(start, BigDecimal.ONE)));
+
+        assertThat(meterReadingController.readPeakDemand(SMART_METER_ID, start.plusSeconds(1), null).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void givenStoredReadingsShouldReturnTheirLoadProfile() {
+        Instant start = Instant.parse("2023-04-10T10:00:00Z");
+        meterReadingService.storeReadings(SMART_METER_ID, List.of(
+                new ElectricityReading(start, BigDecimal.valueOf(2)),
+                new ElectricityReading(start.plusSeconds(60), BigDecimal.valueOf(4))));
+
+        SmartMeterLoadProfileResponse loadProfile = meterReadingController
+                .readLoadProfile(SMART_METER_ID, List.of(0.0, 1.0)).getBody();
+
+        LoadProfileHour hour = loadProfile.getHours().get(start.atZone(ZoneId.systemDefault()).getHour());
+        assertThat(hour.getReadings()).isEqualTo(2);
+        assertThat(hour.getQuantiles().get("0.0")).isEqualByComparingTo("2");
+        assertThat(hour.getQuantiles().get("1.0")).isEqualByComparingTo("4");
+    }
+
+    @Test
+    public void givenAnUnknownMeterShouldReturnNotFoundForTheLoadProfile() {
+        assertThat(meterReadingController.readLoadProfile(SMART_METER_ID, List.of(0.5)).getStatusCode())
+                .isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void givenStoredBatchesShouldReadThemFromTheFeedAfterTheOffsetAlreadySeen() {
+        Instant start = Instant.parse("2023-04-10T10:00:00Z");
+        meterReadingController.storeReadings(new MeterReadings(SMART_METER_ID, List.of(new ElectricityReading(start, BigDecimal.ONE))));
+        meterReadingController.storeReadings(new MeterReadings(SMART_METER_ID, List.of(new ElectricityReading(start.plusSeconds(60), BigDecimal.TEN))));
+
+        SmartMeterReadingFeedResponse feed = meterReadingController.readFeed(1, 1000, null).getBody();
+
+        assertThat(feed.getBatches().size()).isEqualTo(1);
+        assertThat(feed.getBatches().get(0).getOffset()).isEqualTo(1);
+        assertThat(feed.getBatches().get(0).getSmartMeterId()).isEqualTo(SMART_METER_ID);
+        assertThat(feed.getBatches().get(0).getElectricityReadings().get(0).getReading()).isEqualTo(BigDecimal.TEN);
+        assertThat(feed.getNextOffset()).isEqualTo(2);
+    }
+
+    private static ServletWebRequest webRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/readings/read/" + SMART_METER_ID);
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
     }
 }
@@ -6,8 +6,10 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import uk.tw.energy.adapter.SmartMeter.controller.exception.PricePlanNotMatchedException;
 import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundException;
@@ -21,10 +23,14 @@ import java.time.DayOfWeek;
 import java.time.Instant;
 import java.util.List;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @AutoConfigureMockMvc
@@ -32,7 +38,7 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @SpringBootTest
 class MeterReadingCostControllerTest {
     private static final String DURATION = "last-week";
-    @MockBean
+    @MockitoBean
     private MeterReadingCostService meterReadingCostService;
     @Autowired
     private MockMvc mockMvc;
@@ -138,6 +144,40 @@ class MeterReadingCostControllerTest {
                 .andExpect(jsonPath("$.costs").value(100.0));
     }
 
+    @Test
+    void shouldStreamLastWeekCostOrErrorOfEachMeterInABatch() throws Exception {
+        when(meterReadingCostService.getLastWeekCostOfTheDate(eq(DailyInfoBuilder.SMART_METER_ID), any(Instant.class))).thenReturn(BigDecimal.valueOf(100.0));
+        when(meterReadingCostService.getLastWeekCostOfTheDate(eq(DailyInfoBuilder.UNKNOWN_METER_ID), any(Instant.class)))
+                .thenThrow(new ReadingsNotFoundException());
+
+        MvcResult streaming = mockMvc.perform(MockMvcRequestBuilders
+                        .post("/smart-meters/costs")
+                        .param("duration", DURATION)
+                        .param("enteredDate", "2023-04-10")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"smartMeterIds\":[\"" + DailyInfoBuilder.SMART_METER_ID + "\",\"" + DailyInfoBuilder.UNKNOWN_METER_ID + "\"]}"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(streaming))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string(containsString(
+                        "{\"smartMeterId\":\"" + DailyInfoBuilder.SMART_METER_ID + "\",\"costs\":100.0}\n")))
+                .andExpect(content().string(containsString(
+                        "{\"smartMeterId\":\"" + DailyInfoBuilder.UNKNOWN_METER_ID + "\",\"status\":404,\"error\":\"No Readings Found.\"}\n")));
+    }
+
+    @Test
+    void shouldRefuseABatchWithoutMeters() throws Exception {
+        mockMvc.perform(MockMvcRequestBuilders
+                        .post("/smart-meters/costs")
+                        .param("duration", DURATION)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"smartMeterIds\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldReturnDayOfWeekCostsWhenGivenSmartMeterId() throws Exception {
         when(meterReadingCostService.getDayOfWeekCost(DailyInfoBuilder.SMART_METER_ID)).thenReturn(DailyInfoBuilder.buildDaysOfWeekCostsList());
@@ -1,21 +1,41 @@
 package uk.tw.energy.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import uk.tw.energy.adapter.PricePlan.PricePlanComparatorController;
+import uk.tw.energy.adapter.SmartMeter.controller.SmartMeterBatchStream;
+import uk.tw.energy.adapter.SmartMeter.dto.request.SmartMeterBatchRequest;
 import uk.tw.energy.domain.ElectricityReading;
 import uk.tw.energy.domain.PricePlan;
 import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.AverageConsumptionModel;
+import uk.tw.energy.service.CostComputationExecutor;
 import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.MeterVersionService;
 import uk.tw.energy.service.PricePlanService;
+import uk.tw.energy.store.MeterIdDictionary;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingChangeFeed;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.AbstractMap;
 import java.util.ArrayList;
@@ -23,8 +43,10 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest
@@ -35,28 +57,36 @@ public class PricePlanComparatorControllerTest {
     private static final String PRICE_PLAN_2_ID = "best-supplier";
     private static final String PRICE_PLAN_3_ID = "second-best-supplier";
     private static final String SMART_METER_ID = "smart-meter-id";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     @InjectMocks
     private PricePlanComparatorController controller;
     private MeterReadingService meterReadingService;
-    @MockBean
+    @MockitoBean
     private AccountService accountService;
 
 
     @BeforeEach
     public void setUp() {
-        meterReadingService = new MeterReadingService(new HashMap<>());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        MeterIdDictionary meterIds = new MeterIdDictionary();
+        int meterHandle = meterIds.intern(SMART_METER_ID);
+        MeterReadingStore meterReadingStore = new MeterReadingStore(2, Duration.ZERO, meterIds);
+        meterReadingService = new MeterReadingService(meterReadingStore,
+                new ReadingChangeFeed(meterReadingStore.getShardCount(), 1_000_000), meterRegistry);
         PricePlan pricePlan1 = new PricePlan(PRICE_PLAN_1_ID, null, BigDecimal.TEN, null);
         PricePlan pricePlan2 = new PricePlan(PRICE_PLAN_2_ID, null, BigDecimal.ONE, null);
         PricePlan pricePlan3 = new PricePlan(PRICE_PLAN_3_ID, null, BigDecimal.valueOf(2), null);
 
         List<PricePlan> pricePlans = Arrays.asList(pricePlan1, pricePlan2, pricePlan3);
-        PricePlanService tariffService = new PricePlanService(pricePlans, meterReadingService);
+        PricePlanService tariffService = new PricePlanService(pricePlans, meterReadingService, new AverageConsumptionModel(), meterRegistry);
 
         Map<String, String> meterToTariffs = new HashMap<>();
         meterToTariffs.put(SMART_METER_ID, PRICE_PLAN_1_ID);
-        when(accountService.getPricePlanIdForSmartMeterId(SMART_METER_ID)).thenReturn(PRICE_PLAN_1_ID);
+        when(accountService.getPricePlanIdForSmartMeterId(meterHandle)).thenReturn(PRICE_PLAN_1_ID);
+        when(accountService.getPricePlansAssignedAt(meterHandle)).thenReturn(Instant.EPOCH);
 
-        controller = new PricePlanComparatorController(tariffService, accountService);
+        controller = new PricePlanComparatorController(tariffService, accountService, new CostComputationExecutor(1, 16),
+                new MeterVersionService(meterReadingStore, accountService, meterIds), meterIds, OBJECT_MAPPER);
     }
 
     @Test
@@ -74,7 +104,7 @@ public class PricePlanComparatorControllerTest {
         Map<String, Object> expected = new HashMap<>();
         expected.put(PricePlanComparatorController.PRICE_PLAN_ID_KEY, PRICE_PLAN_1_ID);
         expected.put(PricePlanComparatorController.PRICE_PLAN_COMPARISONS_KEY, expectedPricePlanToCost);
-        assertThat(controller.calculatedCostForEachPricePlan(SMART_METER_ID).getBody()).isEqualTo(expected);
+        assertThat(controller.calculatedCostForEachPricePlan(SMART_METER_ID, webRequest(null)).getBody()).isEqualTo(expected);
     }
 
     @Test
@@ -89,7 +119,7 @@ public class PricePlanComparatorControllerTest {
         expectedPricePlanToCost.add(new AbstractMap.SimpleEntry<>(PRICE_PLAN_3_ID, BigDecimal.valueOf(19.0)));
         expectedPricePlanToCost.add(new AbstractMap.SimpleEntry<>(PRICE_PLAN_1_ID, BigDecimal.valueOf(95.0)));
 
-        assertThat(controller.recommendCheapestPricePlans(SMART_METER_ID, null).getBody()).isEqualTo(expectedPricePlanToCost);
+        assertThat(controller.recommendCheapestPricePlans(SMART_METER_ID, null, webRequest(null)).getBody()).isEqualTo(expectedPricePlanToCost);
     }
 
 
@@ -104,7 +134,7 @@ public class PricePlanComparatorControllerTest {
         expectedPricePlanToCost.add(new AbstractMap.SimpleEntry<>(PRICE_PLAN_2_ID, BigDecimal.valueOf(9.4)));
         expectedPricePlanToCost.add(new AbstractMap.SimpleEntry<>(PRICE_PLAN_3_ID, BigDecimal.valueOf(18.8)));
 
-        assertThat(controller.recommendCheapestPricePlans(SMART_METER_ID, 2).getBody()).isEqualTo(expectedPricePlanToCost);
+        assertThat(controller.recommendCheapestPricePlans(SMART_METER_ID, 2, webRequest(null)).getBody()).isEqualTo(expectedPricePlanToCost);
     }
 
     @Test
@@ -119,11 +149,109 @@ public class PricePlanComparatorControllerTest {
         expectedPricePlanToCost.add(new AbstractMap.SimpleEntry<>(PRICE_PLAN_3_ID, BigDecimal.valueOf(28.0)));
         expectedPricePlanToCost.add(new AbstractMap.SimpleEntry<>(PRICE_PLAN_1_ID, BigDecimal.valueOf(140.0)));
 
-        assertThat(controller.recommendCheapestPricePlans(SMART_METER_ID, 5).getBody()).isEqualTo(expectedPricePlanToCost);
+        assertThat(controller.recommendCheapestPricePlans(SMART_METER_ID, 5, webRequest(null)).getBody()).isEqualTo(expectedPricePlanToCost);
+    }
+
+    @Test
+    public void givenTheETagOfUnchangedReadingsShouldNotRecalculateCosts() {
+        meterReadingService.storeReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(Instant.now().minusSeconds(3600), BigDecimal.valueOf(15.0)),
+                new ElectricityReading(Instant.now(), BigDecimal.valueOf(5.0))));
+        ServletWebRequest first = webRequest(null);
+        controller.calculatedCostForEachPricePlan(SMART_METER_ID, first);
+
+        ServletWebRequest revalidation = webRequest(first.getResponse().getHeader(HttpHeaders.ETAG));
+
+        assertThat(controller.calculatedCostForEachPricePlan(SMART_METER_ID, revalidation)).isNull();
+        assertThat(revalidation.getResponse().getStatus()).isEqualTo(HttpStatus.NOT_MODIFIED.value());
     }
 
     @Test
     public void givenNoMatchingMeterIdShouldReturnNotFound() {
-        assertThat(controller.calculatedCostForEachPricePlan("not-found").getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        assertThat(controller.calculatedCostForEachPricePlan("not-found", webRequest(null)).getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void givenABatchOfMetersShouldStreamOneComparisonOrErrorLinePerMeter() throws Exception {
+        meterReadingService.storeReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(Instant.now().minusSeconds(3600), BigDecimal.valueOf(15.0)),
+                new ElectricityReading(Instant.now(), BigDecimal.valueOf(5.0))));
+
+        Map<String, JsonNode> lines = streamedLines(controller.calculatedCostForEachPricePlanOfEachMeter(
+                batchOf(SMART_METER_ID, "not-found", SMART_METER_ID)).getBody());
+
+        assertThat(lines.size()).isEqualTo(2);
+        assertThat(lines.get(SMART_METER_ID).path(PricePlanComparatorController.PRICE_PLAN_ID_KEY).asText()).isEqualTo(PRICE_PLAN_1_ID);
+        assertThat(lines.get(SMART_METER_ID).path(PricePlanComparatorController.PRICE_PLAN_COMPARISONS_KEY)
+                .path(PRICE_PLAN_2_ID).decimalValue()).isEqualTo(BigDecimal.valueOf(10.0));
+        assertThat(lines.get("not-found").path("status").asInt()).isEqualTo(HttpStatus.NOT_FOUND.value());
+    }
+
+    @Test
+    public void givenFailingMetersInABatchShouldAnswerEachAsItsSingleMeterRequestWouldBe() throws Exception {
+        StreamingResponseBody body = SmartMeterBatchStream.stream(List.of("bad-date", "too-busy", "broken"), smartMeterId -> {
+            switch (smartMeterId) {
+                case "bad-date" -> throw new IllegalArgumentException("Invalid reading");
+                case "too-busy" -> throw new RejectedExecutionException("queue full");
+                default -> throw new IllegalStateException("connection to 10.0.0.7 refused");
+            }
+        }, new CostComputationExecutor(1, 16), OBJECT_MAPPER).getBody();
+
+        Map<String, JsonNode> lines = streamedLines(body);
+
+        assertThat(lines.get("bad-date").path("status").asInt()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+        assertThat(lines.get("bad-date").path("error").asText()).isEqualTo("Invalid reading");
+        assertThat(lines.get("too-busy").path("status").asInt()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE.value());
+        assertThat(lines.get("too-busy").path("error").asText()).isEqualTo("Too many cost calculations in progress.");
+        assertThat(lines.get("broken").path("status").asInt()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        assertThat(lines.get("broken").path("error").asText()).doesNotContain("10.0.0.7");
+    }
+
+    @Test
+    public void givenABatchOfMetersShouldStreamTheLimitedRecommendationsOfEachMeter() throws Exception {
+        meterReadingService.storeReadings(SMART_METER_ID, Arrays.asList(
+                new ElectricityReading(Instant.now().minusSeconds(2700), BigDecimal.valueOf(5.0)),
+                new ElectricityReading(Instant.now(), BigDecimal.valueOf(20.0))));
+
+        Map<String, JsonNode> lines = streamedLines(controller.recommendCheapestPricePlansForEachMeter(
+                batchOf(SMART_METER_ID), 2).getBody());
+
+        JsonNode recommendations = lines.get(SMART_METER_ID).path(PricePlanComparatorController.RECOMMENDATIONS_KEY);
+        assertThat(recommendations.size()).isEqualTo(2);
+        assertThat(recommendations.get(0).path(PRICE_PLAN_2_ID).decimalValue()).isEqualTo(BigDecimal.valueOf(9.4));
+        assertThat(recommendations.get(1).path(PRICE_PLAN_3_ID).decimalValue()).isEqualTo(BigDecimal.valueOf(18.8));
+    }
+
+    @Test
+    public void givenTooManyMetersInABatchShouldRefuseIt() throws Exception {
+        String[] smartMeterIds = new String[SmartMeterBatchStream.MAX_SMART_METERS + 1];
+        Arrays.setAll(smartMeterIds, i -> "smart-meter-" + i);
+        SmartMeterBatchRequest batch = batchOf(smartMeterIds);
+
+        assertThrows(IllegalArgumentException.class, () -> controller.calculatedCostForEachPricePlanOfEachMeter(batch));
+    }
+
+    private static SmartMeterBatchRequest batchOf(String... smartMeterIds) throws IOException {
+        return OBJECT_MAPPER.readValue(OBJECT_MAPPER.writeValueAsBytes(Map.of("smartMeterIds", smartMeterIds)),
+                SmartMeterBatchRequest.class);
+    }
+
+    private static Map<String, JsonNode> streamedLines(StreamingResponseBody body) throws IOException {
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        body.writeTo(streamed);
+        Map<String, JsonNode> lines = new HashMap<>();
+        for (String line : streamed.toString(StandardCharsets.UTF_8).split("\n")) {
+            JsonNode json = OBJECT_MAPPER.readTree(line);
+            lines.put(json.path("smartMeterId").asText(), json);
+        }
+        return lines;
+    }
+
+    private static ServletWebRequest webRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/price-plans/compare-all/" + SMART_METER_ID);
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
     }
 }
@@ -10,8 +10,10 @@ import java.time.Month;
 import java.util.Arrays;
 import java.util.List;
 
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.AssertionsForInterfaceTypes.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class PricePlanTest {
 
@@ -58,4 +60,34 @@ public class PricePlanTest {
 
         assertThat(price).isCloseTo(BigDecimal.TEN, Percentage.withPercentage(1));
     }
+
+    @Test
+    public void givenConsumptionBandsShouldChargeEachKwhAtTheRateOfItsBand() {
+        PricePlan pricePlan = new PricePlan(null, null, BigDecimal.TEN, emptyList(), List.of(
+                new PricePlan.ConsumptionBand(BigDecimal.valueOf(100), BigDecimal.ONE),
+                new PricePlan.ConsumptionBand(BigDecimal.valueOf(200), BigDecimal.valueOf(2))));
+
+        assertThat(pricePlan.getCostOfConsumption(BigDecimal.ZERO, BigDecimal.valueOf(50))).isEqualByComparingTo("50");
+        assertThat(pricePlan.getCostOfConsumption(BigDecimal.valueOf(50), BigDecimal.valueOf(150))).isEqualByComparingTo("150");
+        assertThat(pricePlan.getCostOfConsumption(BigDecimal.valueOf(150), BigDecimal.valueOf(250))).isEqualByComparingTo("600");
+        assertThat(pricePlan.getCostOfConsumption(BigDecimal.ZERO, BigDecimal.valueOf(250))).isEqualByComparingTo("800");
+    }
+
+    @Test
+    public void givenNoConsumptionBandsShouldChargeEveryKwhAtTheUnitRate() {
+        PricePlan pricePlan = new PricePlan(null, null, BigDecimal.valueOf(3), emptyList());
+
+        assertThat(pricePlan.hasConsumptionBands()).isFalse();
+        assertThat(pricePlan.getCostOfConsumption(BigDecimal.ONE, BigDecimal.TEN)).isEqualByComparingTo("27");
+    }
+
+    @Test
+    public void givenConsumptionBandsOutOfOrderShouldRefuseThePlan() {
+        List<PricePlan.ConsumptionBand> consumptionBands = List.of(
+                new PricePlan.ConsumptionBand(BigDecimal.valueOf(200), BigDecimal.ONE),
+                new PricePlan.ConsumptionBand(BigDecimal.valueOf(100), BigDecimal.valueOf(2)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> new PricePlan(null, null, BigDecimal.TEN, emptyList(), consumptionBands));
+    }
 }
@@ -0,0 +1,90 @@
+package uk.tw.energy.generator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FleetGeneratorTest {
+
+    private static final Instant UNTIL = Instant.parse("2023-04-16T23:50:00Z");
+    private static final Duration INTERVAL = Duration.ofMinutes(10);
+
+    @Test
+    public void givenTheSameSeedShouldGenerateTheSameFleetWhateverTheNumberOfThreads() {
+        Map<String, List<ElectricityReading>> sequential = generate(new FleetGenerator(42, 50, 144, INTERVAL, UNTIL, 1));
+        Map<String, List<ElectricityReading>> parallel = generate(new FleetGenerator(42, 50, 144, INTERVAL, UNTIL, 4));
+
+        assertThat(parallel).hasSize(50);
+        assertThat(parallel).usingRecursiveComparison().isEqualTo(sequential);
+    }
+
+    @Test
+    public void givenADifferentSeedShouldGenerateDifferentReadings() {
+        List<ElectricityReading> readings = generate(new FleetGenerator(42, 1, 144, INTERVAL, UNTIL, 1)).get("fleet-meter-0");
+        List<ElectricityReading> otherReadings = generate(new FleetGenerator(43, 1, 144, INTERVAL, UNTIL, 1)).get("fleet-meter-0");
+
+        assertThat(otherReadings).extracting(ElectricityReading::getReading)
+                .isNotEqualTo(readings.stream().map(ElectricityReading::getReading).toList());
+    }
+
+    @Test
+    public void shouldGenerateReadingsEndingAtTheGivenTimeInTimeOrder() {
+        List<ElectricityReading> readings = generate(new FleetGenerator(42, 1, 1008, INTERVAL, UNTIL, 1)).get("fleet-meter-0");
+
+        assertThat(readings).hasSize(1008);
+        assertThat(readings.get(0).getTime()).isEqualTo(UNTIL.minus(INTERVAL.multipliedBy(1007)));
+        assertThat(readings.get(1007).getTime()).isEqualTo(UNTIL);
+        assertThat(readings).extracting(ElectricityReading::getTime).isSorted();
+        assertThat(readings).allMatch(reading -> reading.getReading().signum() >= 0);
+    }
+
+    @Test
+    public void shouldUseMoreElectricityInTheEveningThanAtNight() {
+        Map<String, List<ElectricityReading>> fleet = generate(new FleetGenerator(42, 200, 1008, INTERVAL, UNTIL, 2));
+
+        assertThat(averageBetween(fleet, 18, 21)).isGreaterThan(2 * averageBetween(fleet, 1, 4));
+    }
+
+    @Test
+    public void shouldWriteCsvTheBulkLoaderReads(@TempDir Path directory) throws IOException {
+        List<Path> files = new FleetGenerator(42, 10, 3, INTERVAL, UNTIL, 2).writeCsv(directory);
+
+        assertThat(files).hasSize(2);
+        List<String> lines = Files.readAllLines(files.get(0));
+        assertThat(lines).hasSize(1 + 5 * 3);
+        assertThat(lines.get(0)).isEqualTo("smartMeterId,time,reading");
+        assertThat(lines.get(1)).startsWith("fleet-meter-0,2023-04-16T23:30:00Z,");
+    }
+
+    private static Map<String, List<ElectricityReading>> generate(FleetGenerator fleetGenerator) {
+        Map<String, List<ElectricityReading>> fleet = new ConcurrentHashMap<>();
+        fleetGenerator.generate(fleet::put);
+        return fleet;
+    }
+
+    private static double averageBetween(Map<String, List<ElectricityReading>> fleet, int fromHour, int toHour) {
+        return fleet.values().stream()
+                .flatMap(List::stream)
+                .filter(reading -> {
+                    int hour = reading.getTime().atZone(ZoneOffset.UTC).getHour();
+                    return hour >= fromHour && hour < toHour;
+                })
+                .map(ElectricityReading::getReading)
+                .mapToDouble(BigDecimal::doubleValue)
+                .average()
+                .orElseThrow();
+    }
+}
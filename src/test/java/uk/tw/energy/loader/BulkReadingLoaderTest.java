@@ -0,0 +1,139 @@
+package uk.tw.energy.loader;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingChangeFeed;
+import uk.tw.energy.store.ReadingWindow;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+public class BulkReadingLoaderTest {
+
+    private static final Instant START = Instant.parse("2023-04-10T10:00:00Z");
+
+    @TempDir
+    private Path directory;
+    private MeterReadingStore meterReadingStore;
+    private MeterReadingService meterReadingService;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingStore = new MeterReadingStore(2);
+        meterReadingService = new MeterReadingService(meterReadingStore,
+                new ReadingChangeFeed(meterReadingStore.getShardCount(), 1_000_000), new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        meterReadingStore.shutdown();
+    }
+
+    @Test
+    public void givenACsvFileShouldStoreEveryReadingOfEveryMeter() throws IOException {
+        StringBuilder csv = new StringBuilder("smartMeterId,time,reading\n");
+        for (int meter = 0; meter < 10; meter++) {
+            for (int i = 0; i < 1000; i++) {
+                csv.append("smart-meter-").append(meter).append(',').append(START.plusSeconds(i * 60L))
+                        .append(',').append(i % 10).append(".25\r\n");
+            }
+        }
+        Path file = Files.writeString(directory.resolve("readings.csv"), csv);
+
+        BulkLoadResult result = new BulkReadingLoader(meterReadingService, smartMeterId -> true, 4).load(file);
+
+        assertThat(result.getStored()).isEqualTo(10_000);
+        assertThat(result.getRejected()).isZero();
+        ReadingWindow window = meterReadingService.getReadingWindow("smart-meter-7").get();
+        assertThat(window.getCount()).isEqualTo(1000);
+        assertThat(window.getFirst()).isEqualTo(START);
+        assertThat(window.getLast()).isEqualTo(START.plusSeconds(999 * 60L));
+        assertThat(window.getSummedReadings()).isEqualTo(100 * 45 + 1000 * 0.25);
+    }
+
+    @Test
+    public void givenNewlineDelimitedJsonShouldReadTheFieldsInAnyOrder() throws IOException {
+        Path file = Files.writeString(directory.resolve("readings.ndjson"), """
+                {"smartMeterId":"smart-meter-0","time":"2023-04-10T10:00:00Z","reading":0.5}
+                {"reading": "1.75", "time": "2023-04-10T11:00:00.123456789+01:00", "smartMeterId": "smart-meter-0"}
+                {"time":"2024-02-29T23:59:59.5Z","smartMeterId":"smart-meter-1","reading":-2}
+                """);
+
+        BulkLoadResult result = new BulkReadingLoader(meterReadingService, smartMeterId -> true, 2).load(file);
+
+        assertThat(result.getStored()).isEqualTo(3);
+        assertThat(meterReadingService.getReadings("smart-meter-0").get())
+                .extracting(ElectricityReading::getTime, ElectricityReading::getReading)
+                .containsExactly(
+                        tuple(START, new BigDecimal("0.5")),
+                        tuple(Instant.parse("2023-04-10T10:00:00.123456789Z"), new BigDecimal("1.75")));
+        assertThat(meterReadingService.getReadings("smart-meter-1").get().get(0).getTime())
+                .isEqualTo(Instant.parse("2024-02-29T23:59:59.500Z"));
+    }
+
+    @Test
+    public void givenMalformedLinesShouldRejectThemAndLoadTheRest() throws IOException {
+        Path file = Files.writeString(directory.resolve("readings.csv"), """
+                smart-meter-0,2023-04-10T10:00:00Z,0.5
+                smart-meter-0,2023-02-30T10:00:00Z,0.5
+                smart-meter-0,2023-04-10T10:00:00,0.5
+                smart-meter-0,2023-04-10T10:01:00Z,1e3
+                not a reading
+                {"smartMeterId":"smart-meter-0","time":"2023-04-10T10:02:00Z"}
+                smart-meter-0,2023-04-10T10:03:00Z,0.75
+                """);
+
+        BulkLoadResult result = new BulkReadingLoader(meterReadingService, smartMeterId -> true, 1).load(file);
+
+        assertThat(result.getStored()).isEqualTo(2);
+        assertThat(result.getRejected()).isEqualTo(5);
+    }
+
+    @Test
+    public void givenReadingsAlreadyStoredOrOwnedByAnotherNodeShouldNotStoreThem() throws IOException {
+        meterReadingService.storeReadings("smart-meter-0", List.of(new ElectricityReading(START, BigDecimal.ONE)));
+        Path file = Files.writeString(directory.resolve("readings.csv"), """
+                smart-meter-0,2023-04-10T10:00:00Z,0.5
+                smart-meter-0,2023-04-10T10:01:00Z,0.5
+                smart-meter-1,2023-04-10T10:00:00Z,0.5
+                """);
+
+        BulkLoadResult result = new BulkReadingLoader(meterReadingService, "smart-meter-0"::equals, 1).load(file);
+
+        assertThat(result.getStored()).isEqualTo(1);
+        assertThat(result.getDuplicates()).isEqualTo(1);
+        assertThat(result.getSkipped()).isEqualTo(1);
+        assertThat(meterReadingService.getReadings("smart-meter-1")).isEmpty();
+    }
+
+    @Test
+    public void givenAnImportShouldNeitherPublishItToTheChangeFeedNorTellTheReadingsListeners() throws IOException {
+        List<String> toldOf = new ArrayList<>();
+        meterReadingService.addReadingsListener(toldOf::add);
+        Path file = Files.writeString(directory.resolve("readings.csv"), """
+                smart-meter-0,2023-04-10T10:00:00Z,0.5
+                smart-meter-0,2023-04-10T10:01:00Z,0.5
+                smart-meter-1,2023-04-10T10:00:00Z,0.5
+                """);
+
+        BulkLoadResult result = new BulkReadingLoader(meterReadingService, smartMeterId -> true, 1).load(file);
+
+        assertThat(result.getStored()).isEqualTo(3);
+        assertThat(meterReadingService.getChanges(0, 10, null).getBatches()).isEmpty();
+        assertThat(toldOf).isEmpty();
+    }
+}
@@ -2,17 +2,23 @@ package uk.tw.energy.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.PricePlanAssignment;
+import uk.tw.energy.store.MeterIdDictionary;
 
+import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 public class AccountServiceTest {
 
     private static final String PRICE_PLAN_ID = "price-plan-id";
     private static final String SMART_METER_ID = "smart-meter-id";
 
+    private MeterIdDictionary meterIds;
     private AccountService accountService;
 
     @BeforeEach
@@ -20,11 +26,61 @@ public class AccountServiceTest {
         Map<String, String> smartMeterToPricePlanAccounts = new HashMap<>();
         smartMeterToPricePlanAccounts.put(SMART_METER_ID, PRICE_PLAN_ID);
 
-        accountService = new AccountService(smartMeterToPricePlanAccounts);
+        meterIds = new MeterIdDictionary();
+        accountService = new AccountService(smartMeterToPricePlanAccounts, meterIds);
     }
 
     @Test
     public void givenTheSmartMeterIdReturnsThePricePlanId() throws Exception {
         assertThat(accountService.getPricePlanIdForSmartMeterId(SMART_METER_ID)).isEqualTo(PRICE_PLAN_ID);
     }
+
+    @Test
+    public void givenAnUnknownSmartMeterIdReturnsNoPricePlanId() {
+        assertThat(accountService.getPricePlanIdForSmartMeterId("unknown-meter")).isNull();
+    }
+
+    @Test
+    public void givenTheHandleOfTheSmartMeterReturnsWhatItsIdDoes() {
+        int meterHandle = meterIds.handleOf(SMART_METER_ID);
+
+        assertThat(accountService.getPricePlanIdForSmartMeterId(meterHandle)).isEqualTo(PRICE_PLAN_ID);
+        assertThat(accountService.getPricePlanVersion(meterHandle)).isEqualTo(accountService.getPricePlanVersion(SMART_METER_ID));
+        assertThat(accountService.getPricePlansAssignedAt(meterHandle)).isEqualTo(accountService.getPricePlansAssignedAt(SMART_METER_ID));
+        assertThat(accountService.getPricePlanIdForSmartMeterId(MeterIdDictionary.UNKNOWN)).isNull();
+    }
+
+    @Test
+    public void givenASwitchOfPricePlanReturnsThePlanInForceAtEachTime() {
+        Instant switchedAt = Instant.parse("2023-04-05T00:00:00Z");
+        accountService.assignPricePlan(SMART_METER_ID, "price-plan-other", switchedAt, null);
+
+        assertThat(accountService.getPricePlanIdForSmartMeterId(SMART_METER_ID, switchedAt.minusNanos(1))).isEqualTo(PRICE_PLAN_ID);
+        assertThat(accountService.getPricePlanIdForSmartMeterId(SMART_METER_ID, switchedAt)).isEqualTo("price-plan-other");
+        assertThat(accountService.getPricePlanIdForSmartMeterId(SMART_METER_ID)).isEqualTo("price-plan-other");
+    }
+
+    @Test
+    public void givenATemporaryPricePlanReturnsTheStretchesOfEachPlanWithinARange() {
+        Instant from = Instant.parse("2023-04-03T00:00:00Z");
+        Instant to = Instant.parse("2023-04-04T00:00:00Z");
+        accountService.assignPricePlan(SMART_METER_ID, "price-plan-other", from, to);
+
+        List<PricePlanAssignment> assignments = accountService.getPricePlanAssignments(SMART_METER_ID,
+                Instant.parse("2023-04-01T00:00:00Z"), Instant.parse("2023-04-08T00:00:00Z"));
+
+        assertThat(assignments).extracting(PricePlanAssignment::getPricePlanId)
+                .containsExactly(PRICE_PLAN_ID, "price-plan-other", PRICE_PLAN_ID);
+        assertThat(assignments.get(0).getEffectiveFrom()).isEqualTo(Instant.parse("2023-04-01T00:00:00Z"));
+        assertThat(assignments.get(1).getEffectiveFrom()).isEqualTo(from);
+        assertThat(assignments.get(1).getEffectiveTo()).isEqualTo(to);
+        assertThat(assignments.get(2).getEffectiveTo()).isEqualTo(Instant.parse("2023-04-08T00:00:00Z"));
+    }
+
+    @Test
+    public void givenAnAssignmentEndingBeforeItStartsShouldRefuseIt() {
+        Instant from = Instant.parse("2023-04-03T00:00:00Z");
+        assertThrows(IllegalArgumentException.class,
+                () -> accountService.assignPricePlan(SMART_METER_ID, PRICE_PLAN_ID, from, from));
+    }
 }
@@ -0,0 +1,35 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.store.MeterReadingHistory;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AverageConsumptionModelTest {
+
+    private static final Instant START = Instant.parse("2023-04-10T00:00:00Z");
+
+    private final AverageConsumptionModel model = new AverageConsumptionModel();
+
+    @Test
+    public void givenReadingsShouldMultiplyTheAverageReadingByTheTimeElapsed() {
+        MeterReadingHistory history = new MeterReadingHistory();
+        history.append(List.of(reading(0, 5.0), reading(1800, 20.0), reading(2700, 5.0)));
+
+        assertThat(model.consumedKwh(history.window())).isEqualByComparingTo("7.5");
+    }
+
+    @Test
+    public void givenNoReadingsShouldHaveConsumedNothing() {
+        assertThat(model.consumedKwh(new MeterReadingHistory().window())).isEqualByComparingTo("0");
+    }
+
+    private static ElectricityReading reading(long secondsAfterStart, double reading) {
+        return new ElectricityReading(START.plusSeconds(secondsAfterStart), BigDecimal.valueOf(reading));
+    }
+}
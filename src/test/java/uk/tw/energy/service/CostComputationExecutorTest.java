@@ -0,0 +1,153 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundException;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CostComputationExecutorTest {
+
+    private CostComputationExecutor costComputationExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        costComputationExecutor = new CostComputationExecutor(1, 1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        costComputationExecutor.shutdown();
+    }
+
+    @Test
+    public void shouldReturnResultOfComputation() {
+        assertThat(costComputationExecutor.compute(() -> 21 * 2)).isEqualTo(42);
+    }
+
+    @Test
+    public void shouldRunComputationOnComputePool() {
+        assertThat(costComputationExecutor.compute(() -> Thread.currentThread().getName())).startsWith("cost-compute-");
+    }
+
+    @Test
+    public void shouldRethrowExceptionOfComputationUnwrapped() {
+        assertThrows(ReadingsNotFoundException.class, () -> costComputationExecutor.compute(() -> {
+            throw new ReadingsNotFoundException();
+        }));
+    }
+
+    @Test
+    public void shouldRejectComputationWhenPoolAndQueueAreFull() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread busyWorker = new Thread(() -> costComputationExecutor.compute(() -> {
+            started.countDown();
+            awaitQuietly(release);
+            return null;
+        }));
+        Thread queued = new Thread(() -> costComputationExecutor.compute(() -> null));
+        busyWorker.start();
+        started.await();
+        queued.start();
+        while (queued.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        assertThrows(RejectedExecutionException.class, () -> costComputationExecutor.compute(() -> null));
+
+        release.countDown();
+        busyWorker.join();
+        queued.join();
+    }
+
+    @Test
+    public void shouldShareOneRunningComputationBetweenCallersWithTheSameKey() throws InterruptedException {
+        CostComputationExecutor executor = new CostComputationExecutor(2, 16);
+        AtomicInteger computations = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Object> slowComputation = () -> {
+            computations.incrementAndGet();
+            started.countDown();
+            awaitQuietly(release);
+            return new Object();
+        };
+        Object[] results = new Object[2];
+        Thread first = new Thread(() -> results[0] = executor.compute("costs/smart-meter-0/v1", slowComputation));
+        Thread second = new Thread(() -> results[1] = executor.compute("costs/smart-meter-0/v1", slowComputation));
+        first.start();
+        started.await();
+        second.start();
+        while (second.getState() != Thread.State.WAITING) {
+            Thread.onSpinWait();
+        }
+
+        Object otherVersion = executor.compute("costs/smart-meter-0/v2", Object::new);
+        release.countDown();
+        first.join();
+        second.join();
+
+        assertThat(computations.get()).isEqualTo(1);
+        assertThat(results[1]).isSameAs(results[0]);
+        assertThat(otherVersion).isNotSameAs(results[0]);
+        assertThat(executor.compute("costs/smart-meter-0/v1", Object::new)).isNotSameAs(results[0]);
+        executor.shutdown();
+    }
+
+    @Test
+    public void shouldRethrowExceptionOfSharedComputationAndComputeAgainAfterwards() {
+        assertThrows(ReadingsNotFoundException.class, () -> costComputationExecutor.compute("costs/unknown/v1", () -> {
+            throw new ReadingsNotFoundException();
+        }));
+
+        assertThat(costComputationExecutor.compute("costs/unknown/v1", () -> 42)).isEqualTo(42);
+    }
+
+    @Test
+    public void shouldComputeEachItemOfABatchLargerThanTheQueueWithoutRejectingAny() {
+        CostComputationExecutor executor = new CostComputationExecutor(2, 1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger mostRunning = new AtomicInteger();
+        List<Integer> items = IntStream.range(0, 50).boxed().collect(Collectors.toList());
+        Map<Integer, Object> results = new HashMap<>();
+
+        executor.computeEach(items, item -> {
+            mostRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                if (item == 7) {
+                    throw new ReadingsNotFoundException();
+                }
+                return item * 2;
+            } finally {
+                running.decrementAndGet();
+            }
+        }, (item, result, failure) -> results.put(item, failure == null ? result : failure));
+
+        assertThat(results).hasSize(50);
+        assertThat(results.get(21)).isEqualTo(42);
+        assertThat(results.get(7)).isInstanceOf(ReadingsNotFoundException.class);
+        assertThat(mostRunning.get()).isLessThanOrEqualTo(2);
+        executor.shutdown();
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.FleetAggregate;
+import uk.tw.energy.domain.LoadProfileHour;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.store.MeterIdDictionary;
+import uk.tw.energy.store.MeterReadingStore;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class FleetAggregateServiceTest {
+
+    private static final Instant START = Instant.parse("2023-04-03T00:00:00Z");
+    private static final Instant END = START.plus(Duration.ofDays(7));
+
+    private MeterReadingStore meterReadingStore;
+    private AccountService accountService;
+    private FleetAggregateService fleetAggregateService;
+
+    @BeforeEach
+    public void setUp() {
+        MeterIdDictionary meterIds = new MeterIdDictionary();
+        meterReadingStore = new MeterReadingStore(4, Duration.ZERO, meterIds);
+        accountService = new AccountService(Map.of(
+                "smart-meter-0", "price-plan-0",
+                "smart-meter-1", "price-plan-1",
+                "smart-meter-2", "price-plan-2"), meterIds);
+        List<PricePlan> pricePlans = List.of(
+                new PricePlan("price-plan-0", "Dr Evil's Dark Energy", BigDecimal.TEN, emptyList()),
+                new PricePlan("price-plan-1", "The Green Eco", BigDecimal.valueOf(2), emptyList()),
+                new PricePlan("price-plan-2", "The Green Eco", BigDecimal.ONE, emptyList()));
+        // 1 kW for an hour, so one kWh per meter
+        for (String smartMeterId : List.of("smart-meter-0", "smart-meter-1", "smart-meter-2")) {
+            meterReadingStore.getOrCreate(smartMeterId).append(List.of(
+                    reading(START.plus(Duration.ofHours(10)), 1.0),
+                    reading(START.plus(Duration.ofHours(11)), 1.0)));
+        }
+        fleetAggregateService = new FleetAggregateService(meterReadingStore, accountService, new AverageConsumptionModel(), pricePlans);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        meterReadingStore.shutdown();
+    }
+
+    @Test
+    public void givenGroupingBySupplierShouldAddUpTheMetersOfEachSupplier() {
+        List<FleetAggregate> aggregates = fleetAggregateService.aggregate(FleetAggregateService.Grouping.SUPPLIER, START, END);
+
+        assertThat(aggregates).extracting(FleetAggregate::getKey).containsExactly("Dr Evil's Dark Energy", "The Green Eco");
+        FleetAggregate greenEco = aggregates.get(1);
+        assertThat(greenEco.getMeters()).isEqualTo(2);
+        assertThat(greenEco.getConsumedKwh()).isEqualByComparingTo("2.0");
+        assertThat(greenEco.getCost()).isEqualByComparingTo("3.0");
+    }
+
+    @Test
+    public void givenAPlanSwitchWithinTheRangeShouldSplitTheMeterBetweenPlans() {
+        meterReadingStore.getOrCreate("smart-meter-2").append(List.of(
+                reading(START.plus(Duration.ofDays(2)), 2.0),
+                reading(START.plus(Duration.ofDays(2)).plus(Duration.ofHours(1)), 2.0)));
+        accountService.assignPricePlan("smart-meter-2", "price-plan-0", START.plus(Duration.ofDays(1)), null);
+
+        List<FleetAggregate> aggregates = fleetAggregateService.aggregate(FleetAggregateService.Grouping.PRICE_PLAN, START, END);
+
+        FleetAggregate mostEvil = aggregates.get(0);
+        assertThat(mostEvil.getKey()).isEqualTo("price-plan-0");
+        assertThat(mostEvil.getMeters()).isEqualTo(2);
+        assertThat(mostEvil.getConsumedKwh()).isEqualByComparingTo("3.0");
+        assertThat(mostEvil.getCost()).isEqualByComparingTo("30.0");
+        assertThat(aggregates.get(2).getConsumedKwh()).isEqualByComparingTo("1.0");
+    }
+
+    @Test
+    public void givenARangeEndingBeforeItStartsShouldRefuseToAggregate() {
+        assertThrows(IllegalArgumentException.class,
+                () -> fleetAggregateService.aggregate(FleetAggregateService.Grouping.PRICE_PLAN, END, START));
+    }
+
+    @Test
+    public void givenSeveralMetersShouldMergeTheirLoadProfiles() {
+        int hour = START.plus(Duration.ofHours(10)).atZone(ZoneId.systemDefault()).getHour();
+
+        List<LoadProfileHour> hours = fleetAggregateService.loadProfile().describe(List.of(0.5));
+
+        assertThat(hours.get(hour).getReadings()).isEqualTo(3);
+        assertThat(hours.get(hour).getQuantiles().get("0.5")).isEqualByComparingTo("1.0");
+        assertThat(hours.stream().mapToLong(LoadProfileHour::getReadings).sum()).isEqualTo(6);
+    }
+
+    private static ElectricityReading reading(Instant time, double reading) {
+        return new ElectricityReading(time, BigDecimal.valueOf(reading));
+    }
+}
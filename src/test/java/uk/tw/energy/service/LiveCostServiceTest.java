@@ -0,0 +1,147 @@
+package uk.tw.energy.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundException;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.LiveCost;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.store.MeterIdDictionary;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingChangeFeed;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class LiveCostServiceTest {
+
+    private static final String SMART_METER_ID = "smart-meter-0";
+    private static final Instant START = Instant.parse("2023-04-03T10:00:00Z");
+
+    private MeterReadingStore meterReadingStore;
+    private MeterReadingService meterReadingService;
+    private SimpleMeterRegistry meterRegistry;
+    private LiveCostService liveCostService;
+
+    @BeforeEach
+    public void setUp() {
+        MeterIdDictionary meterIds = new MeterIdDictionary();
+        meterReadingStore = new MeterReadingStore(2, Duration.ZERO, meterIds);
+        meterRegistry = new SimpleMeterRegistry();
+        meterReadingService = new MeterReadingService(meterReadingStore,
+                new ReadingChangeFeed(meterReadingStore.getShardCount(), 1_000_000), meterRegistry);
+        List<PricePlan> pricePlans = List.of(
+                new PricePlan("price-plan-0", "Dr Evil's Dark Energy", BigDecimal.TEN, emptyList()),
+                new PricePlan("price-plan-1", "The Green Eco", BigDecimal.ONE, emptyList()));
+        PricePlanService pricePlanService = new PricePlanService(pricePlans, meterReadingService,
+                new AverageConsumptionModel(), meterRegistry);
+        AccountService accountService = new AccountService(Map.of(SMART_METER_ID, "price-plan-0"), meterIds);
+        liveCostService = new LiveCostService(meterReadingService, pricePlanService, accountService, meterRegistry);
+        meterReadingService.storeReadings(SMART_METER_ID, List.of(reading(START, 1.0)));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        liveCostService.shutdown();
+        meterReadingStore.shutdown();
+    }
+
+    @Test
+    public void givenNewReadingsShouldPushTheUpdatedCostToSubscribers() throws InterruptedException {
+        BlockingQueue<LiveCost> updates = new LinkedBlockingQueue<>();
+        liveCostService.subscribe(SMART_METER_ID, updates::add);
+
+        LiveCost initial = updates.poll(5, TimeUnit.SECONDS);
+        assertThat(initial.getReadings()).isEqualTo(1);
+        assertThat(initial.getCurrentCost()).isNull();
+
+        meterReadingService.storeReadings(SMART_METER_ID, List.of(reading(START.plus(Duration.ofHours(1)), 1.0)));
+
+        LiveCost updated = updates.poll(5, TimeUnit.SECONDS);
+        assertThat(updated.getReadings()).isEqualTo(2);
+        assertThat(updated.getPricePlanId()).isEqualTo("price-plan-0");
+        assertThat(updated.getCurrentCost()).isEqualByComparingTo("10");
+        assertThat(updated.getPricePlanComparisons().get("price-plan-1")).isEqualByComparingTo("1");
+    }
+
+    @Test
+    public void givenReadingsStoredWhileAnUpdateIsBeingSentShouldSendTheUpdatesOneAtATimeInOrder() throws InterruptedException {
+        BlockingQueue<LiveCost> updates = new LinkedBlockingQueue<>();
+        AtomicInteger sending = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        liveCostService.subscribe(SMART_METER_ID, liveCost -> {
+            if (sending.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sending.decrementAndGet();
+            updates.add(liveCost);
+        });
+
+        for (int hour = 1; hour <= 20; hour++) {
+            meterReadingService.storeReadings(SMART_METER_ID, List.of(reading(START.plus(Duration.ofHours(hour)), 1.0)));
+            Thread.sleep(5);
+        }
+
+        int readings = 0;
+        LiveCost update;
+        while (readings < 21 && (update = updates.poll(5, TimeUnit.SECONDS)) != null) {
+            assertThat(update.getReadings()).isGreaterThanOrEqualTo(readings);
+            readings = update.getReadings();
+        }
+        assertThat(readings).isEqualTo(21);
+        assertThat(overlaps.get()).isZero();
+    }
+
+    @Test
+    public void givenCancelledSubscriptionShouldStopPushingUpdates() throws InterruptedException {
+        BlockingQueue<LiveCost> updates = new LinkedBlockingQueue<>();
+        Runnable cancel = liveCostService.subscribe(SMART_METER_ID, updates::add);
+        updates.poll(5, TimeUnit.SECONDS);
+
+        cancel.run();
+        meterReadingService.storeReadings(SMART_METER_ID, List.of(reading(START.plus(Duration.ofHours(1)), 1.0)));
+
+        assertThat(updates.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(meterRegistry.get("joi.live.subscribers").gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void givenFailingSubscriberShouldDropIt() throws InterruptedException {
+        liveCostService.subscribe(SMART_METER_ID, liveCost -> {
+            throw new IllegalStateException("client went away");
+        });
+
+        for (int i = 0; i < 50 && meterRegistry.get("joi.live.subscribers").gauge().value() > 0; i++) {
+            Thread.sleep(10);
+        }
+
+        assertThat(meterRegistry.get("joi.live.subscribers").gauge().value()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void givenUnknownMeterShouldRefuseSubscription() {
+        assertThrows(ReadingsNotFoundException.class, () -> liveCostService.subscribe("unknown-id", liveCost -> { }));
+    }
+
+    private static ElectricityReading reading(Instant time, double kw) {
+        return new ElectricityReading(time, BigDecimal.valueOf(kw));
+    }
+}
@@ -1,5 +1,6 @@
 package uk.tw.energy.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -12,6 +13,9 @@ import uk.tw.energy.adapter.SmartMeter.controller.exception.ReadingsNotFoundExce
 import uk.tw.energy.builders.DailyInfoBuilder;
 import uk.tw.energy.domain.DayOfWeekCost;
 import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.PricePlanAssignment;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingWindow;
 
 import java.math.BigDecimal;
 import java.time.DayOfWeek;
@@ -23,16 +27,18 @@ import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
 import java.util.Arrays;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -42,6 +48,7 @@ class MeterReadingCostServiceTest {
     private static final Instant TEST_ONE_WEEK_AGO = DailyInfoBuilder.TEST_DATE.minus(Duration.ofDays(7));
     private static final Instant TEST_THIS_WEEK_SUNDAY = LocalDateTime.ofInstant(DailyInfoBuilder.TEST_DATE, ZoneId.systemDefault())
             .with(TemporalAdjusters.previousOrSame(DayOfWeek.SUNDAY)).toInstant(ZoneOffset.UTC);
+    private static final List<PricePlanAssignment> SINGLE_PLAN = List.of(new PricePlanAssignment(DailyInfoBuilder.PRICE_PLAN_ID, null, null));
 
     List<ElectricityReading> customizeReadings = Arrays.asList(
             new ElectricityReading(DailyInfoBuilder.TEST_DATE, BigDecimal.valueOf(0.2)),
@@ -55,6 +62,7 @@ class MeterReadingCostServiceTest {
     @Mock
     private AccountService accountService;
     private MeterReadingCostService meterReadingCostService;
+    private MeterReadingStore meterReadingStore;
     @Mock
     private PricePlanService pricePlanService;
 
@@ -71,17 +79,17 @@ class MeterReadingCostServiceTest {
                     DailyInfoBuilder.saturdayReadings)
                 .flatMap(List::stream)
                 .collect(Collectors.toList());
-        Map<String, List<ElectricityReading>> meterAssociatedReadings = new HashMap<>();
-        meterAssociatedReadings.put(DailyInfoBuilder.SMART_METER_ID, testReadings);
+        meterReadingStore = new MeterReadingStore(2);
+        meterReadingStore.getOrCreate(DailyInfoBuilder.SMART_METER_ID).append(testReadings);
 
-        meterReadingCostService = new MeterReadingCostService(meterAssociatedReadings, accountService, pricePlanService);
+        meterReadingCostService = new MeterReadingCostService(meterReadingStore, accountService, pricePlanService, new SimpleMeterRegistry());
     }
 
 
     @Test
     void shouldThrowPricePlanNotMatchedException() {
-        when(accountService.getPricePlanIdForSmartMeterId(DailyInfoBuilder.SMART_METER_ID))
-                .thenReturn(null);
+        when(accountService.getPricePlanAssignments(eq(DailyInfoBuilder.SMART_METER_ID), any(), any()))
+                .thenReturn(List.of());
         Assertions.assertThrows(
                 PricePlanNotMatchedException.class,
                 () -> meterReadingCostService.getLastWeekCostOfTheDate(DailyInfoBuilder.SMART_METER_ID, DailyInfoBuilder.TEST_DATE));
@@ -96,16 +104,16 @@ class MeterReadingCostServiceTest {
 
     @Test
     void shouldReturnCorrectCosts() {
-        when(accountService.getPricePlanIdForSmartMeterId(DailyInfoBuilder.SMART_METER_ID)).thenReturn(DailyInfoBuilder.PRICE_PLAN_ID);
-        when(pricePlanService.calculateCost(anyList(), eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(BigDecimal.valueOf(1848.0));
+        when(accountService.getPricePlanAssignments(eq(DailyInfoBuilder.SMART_METER_ID), any(), any())).thenReturn(SINGLE_PLAN);
+        when(pricePlanService.calculateCost(any(ReadingWindow.class), eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(BigDecimal.valueOf(1848.0));
         BigDecimal lastWeekCosts = meterReadingCostService.getLastWeekCostOfTheDate(DailyInfoBuilder.SMART_METER_ID, DailyInfoBuilder.TEST_DATE);
         assertEquals(BigDecimal.valueOf(1848.0), lastWeekCosts);
     }
 
     @Test
     void shouldReturnCorrectCostsFromLastWeekOfTheDay() {
-        when(accountService.getPricePlanIdForSmartMeterId(DailyInfoBuilder.SMART_METER_ID)).thenReturn(DailyInfoBuilder.PRICE_PLAN_ID);
-        when(pricePlanService.calculateCost(anyList(), eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(BigDecimal.valueOf(1248.0));
+        when(accountService.getPricePlanAssignments(eq(DailyInfoBuilder.SMART_METER_ID), any(), any())).thenReturn(SINGLE_PLAN);
+        when(pricePlanService.calculateCost(any(ReadingWindow.class), eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(BigDecimal.valueOf(1248.0));
         BigDecimal lastWeekOfTheDayCosts = meterReadingCostService.getLastWeekCostOfTheDate(DailyInfoBuilder.SMART_METER_ID, TEST_THIS_WEEK_SUNDAY);
         assertEquals(BigDecimal.valueOf(1248.0), lastWeekOfTheDayCosts);
     }
@@ -113,6 +121,7 @@ class MeterReadingCostServiceTest {
     @Test
     void shouldReturnDailyCostForWeek() {
         when(accountService.getPricePlanIdForSmartMeterId(DailyInfoBuilder.SMART_METER_ID)).thenReturn(DailyInfoBuilder.PRICE_PLAN_ID);
+        when(accountService.getPricePlanAssignments(eq(DailyInfoBuilder.SMART_METER_ID), any(), any())).thenReturn(SINGLE_PLAN);
         when(pricePlanService.calculateCostByDateAndAddUp(anyList(), eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(
                 BigDecimal.valueOf(120.0), BigDecimal.valueOf(140.0),
                 BigDecimal.valueOf(160.0), BigDecimal.valueOf(180.0),
@@ -140,6 +149,8 @@ class MeterReadingCostServiceTest {
     @Test
     void shouldReturnRankForAllPricePlansWhenGivenCostsOfBondedPricePlan() {
         when(accountService.getPricePlanIdForSmartMeterId(DailyInfoBuilder.SMART_METER_ID)).thenReturn(DailyInfoBuilder.PRICE_PLAN_ID);
+        when(accountService.getPricePlanAssignments(eq(DailyInfoBuilder.SMART_METER_ID), any(), any())).thenReturn(SINGLE_PLAN);
+        when(pricePlanService.calculateCostByDateAndAddUp(anyList(), eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(BigDecimal.valueOf(130.0));
         when(pricePlanService.getRankForCurrentPricePlan(anyList(), eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(2);
 
         DayOfWeekCost sundayCost = DayOfWeekCost.builder()
@@ -153,4 +164,54 @@ class MeterReadingCostServiceTest {
 
         assertEquals(buildDaysOfWeekCostsList.get(0).getCurrentPricePlanRank(), dailyCostOfWeek.get(0).getCurrentPricePlanRank());
     }
+
+    @Test
+    void shouldPriceEachPartOfLastWeekOnThePlanInForceAtTheTime() {
+        String switchingMeterId = "smart-meter-switching";
+        Instant switchedAt = Instant.parse("2023-04-05T00:00:00Z");
+        meterReadingStore.getOrCreate(switchingMeterId).append(List.of(
+                new ElectricityReading(Instant.parse("2023-04-03T10:00:00Z"), BigDecimal.valueOf(0.5)),
+                new ElectricityReading(Instant.parse("2023-04-03T11:00:00Z"), BigDecimal.valueOf(0.7)),
+                new ElectricityReading(Instant.parse("2023-04-06T10:00:00Z"), BigDecimal.valueOf(0.2)),
+                new ElectricityReading(Instant.parse("2023-04-06T11:00:00Z"), BigDecimal.valueOf(0.4))));
+        when(accountService.getPricePlanAssignments(eq(switchingMeterId), any(), any())).thenReturn(List.of(
+                new PricePlanAssignment("price-plan-0", null, switchedAt),
+                new PricePlanAssignment(DailyInfoBuilder.PRICE_PLAN_ID, switchedAt, null)));
+        when(pricePlanService.calculateCost(argThat(window -> window != null && window.getFirst().isBefore(switchedAt)), eq("price-plan-0")))
+                .thenReturn(BigDecimal.valueOf(10.0));
+        when(pricePlanService.calculateCost(argThat(window -> window != null && !window.getFirst().isBefore(switchedAt)), eq(DailyInfoBuilder.PRICE_PLAN_ID)))
+                .thenReturn(BigDecimal.valueOf(5.0));
+
+        BigDecimal lastWeekCosts = meterReadingCostService.getLastWeekCostOfTheDate(switchingMeterId, Instant.parse("2023-04-12T12:00:00Z"));
+
+        assertEquals(BigDecimal.valueOf(15.0), lastWeekCosts);
+    }
+
+    @Test
+    void givenAPlanSwitchLeavingOneReadingShouldBillTheStretchAcrossItToTheLaterPlan() {
+        String switchingMeterId = "smart-meter-switching-daily";
+        Instant firstReading = Instant.parse("2023-04-05T10:00:00Z");
+        Instant switchedAt = firstReading.plus(30, ChronoUnit.MINUTES);
+        meterReadingStore.getOrCreate(switchingMeterId).append(List.of(
+                new ElectricityReading(firstReading, BigDecimal.valueOf(0.5)),
+                new ElectricityReading(firstReading.plus(1, ChronoUnit.HOURS), BigDecimal.valueOf(0.7)),
+                new ElectricityReading(firstReading.plus(2, ChronoUnit.HOURS), BigDecimal.valueOf(0.2))));
+        when(accountService.getPricePlanIdForSmartMeterId(switchingMeterId)).thenReturn(DailyInfoBuilder.PRICE_PLAN_ID);
+        when(accountService.getPricePlanAssignments(eq(switchingMeterId), any(), any())).thenReturn(List.of(
+                new PricePlanAssignment("price-plan-0", null, switchedAt),
+                new PricePlanAssignment(DailyInfoBuilder.PRICE_PLAN_ID, switchedAt, null)));
+        when(pricePlanService.calculateCostByDateAndAddUp(
+                argThat(windows -> windows.size() == 1 && windows.get(0).getCount() == 3 && windows.get(0).getFirst().equals(firstReading)),
+                eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(BigDecimal.valueOf(5.0));
+        when(pricePlanService.getRankForCurrentPricePlan(
+                argThat(windows -> windows.size() == 1 && windows.get(0).getCount() == 3),
+                eq(DailyInfoBuilder.PRICE_PLAN_ID))).thenReturn(1);
+
+        List<DayOfWeekCost> dailyCostOfWeek = meterReadingCostService.getDayOfWeekCost(switchingMeterId);
+
+        assertEquals(1, dailyCostOfWeek.size());
+        assertEquals(BigDecimal.valueOf(5.0), dailyCostOfWeek.get(0).getCost());
+        assertEquals(1, dailyCostOfWeek.get(0).getCurrentPricePlanRank());
+        verify(pricePlanService, never()).calculateCostByDateAndAddUp(anyList(), eq("price-plan-0"));
+    }
 }
@@ -1,21 +1,34 @@
 package uk.tw.energy.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.store.MeterReadingHistory;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingChangeFeed;
+import uk.tw.energy.store.ReadingFeedPage;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Optional;
 
-import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
+import static org.assertj.core.api.Assertions.assertThat;
 
 public class MeterReadingServiceTest {
 
     private MeterReadingService meterReadingService;
+    private SimpleMeterRegistry meterRegistry;
+    private MeterReadingStore meterReadingStore;
 
     @BeforeEach
     public void setUp() {
-        meterReadingService = new MeterReadingService(new HashMap<>());
+        meterRegistry = new SimpleMeterRegistry();
+        meterReadingStore = new MeterReadingStore(2);
+        meterReadingService = new MeterReadingService(meterReadingStore,
+                new ReadingChangeFeed(2, 1_000_000), meterRegistry);
     }
 
     @Test
@@ -28,4 +41,41 @@ public class MeterReadingServiceTest {
         meterReadingService.storeReadings("random-id", new ArrayList<>());
         assertThat(meterReadingService.getReadings("random-id")).isEqualTo(Optional.of(new ArrayList<>()));
     }
+
+    @Test
+    public void givenStoredReadingsShouldCountReadingsIngested() {
+        meterReadingService.storeReadings("random-id", new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+        meterReadingService.storeReadings("other-id", new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+
+        assertThat(meterRegistry.get("joi.readings.ingested").counter().count()).isEqualTo(10.0);
+    }
+
+    @Test
+    public void givenStoredReadingsShouldReportReadingCountAndHeapEstimatePerMeter() {
+        meterReadingService.storeReadings("random-id", new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+
+        assertThat(meterRegistry.get("joi.meter.readings").tag("smartMeterId", "random-id").gauge().value()).isEqualTo(5.0);
+        assertThat(meterRegistry.get("joi.meter.heap.estimate").tag("smartMeterId", "random-id").gauge().value())
+                .isEqualTo(5.0 * MeterReadingHistory.ESTIMATED_HEAP_BYTES_PER_READING
+                        + meterReadingStore.find("random-id").get().loadProfileHeapBytes());
+        assertThat(meterRegistry.get("joi.meter.off-heap").tag("smartMeterId", "random-id").gauge().value()).isZero();
+    }
+
+    @Test
+    public void givenReadingsAlreadyStoredShouldPublishOnlyTheNewOnesToTheChangeFeed() {
+        List<ElectricityReading> readings = new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings();
+        List<ElectricityReading> morePlusRepeat = new ArrayList<>(readings.subList(4, 5));
+        morePlusRepeat.add(new ElectricityReading(readings.get(4).getTime().plusSeconds(60), BigDecimal.ONE));
+
+        meterReadingService.storeReadings("random-id", readings.subList(0, 4), "batch-1");
+        meterReadingService.storeReadings("random-id", readings.subList(0, 4), "batch-1");
+        meterReadingService.storeReadings("random-id", morePlusRepeat, "batch-2");
+        meterReadingService.storeReadings("random-id", morePlusRepeat, "batch-3");
+
+        ReadingFeedPage page = meterReadingService.getChanges(0, 10, null);
+        assertThat(page.getBatches()).hasSize(2);
+        assertThat(page.getBatches().get(0).getElectricityReadings()).isEqualTo(readings.subList(0, 4));
+        assertThat(page.getBatches().get(1).getElectricityReadings()).isEqualTo(morePlusRepeat);
+        assertThat(meterReadingService.getChanges(0, 10, 1 - page.getBatches().get(0).getShard()).getBatches()).isEmpty();
+    }
 }
@@ -0,0 +1,213 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.FleetCost;
+import uk.tw.energy.domain.MeterCost;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.store.MeterReadingStore;
+
+import java.math.BigDecimal;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TariffSimulationServiceTest {
+
+    // a Wednesday, at noon local time so that no reading crosses midnight
+    private static final Instant NOON = LocalDate.of(2023, 4, 5).atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant();
+    private static final PricePlan FLAT = new PricePlan("flat", null, BigDecimal.ONE, emptyList());
+    // the first 3 kWh of a month at 1, the rest at 10
+    private static final PricePlan BANDED = new PricePlan("banded", null, BigDecimal.TEN, emptyList(),
+            singletonList(new PricePlan.ConsumptionBand(BigDecimal.valueOf(3), BigDecimal.ONE)));
+    private static final PricePlan PEAK_WEDNESDAY = new PricePlan("peak-wednesday", null, BigDecimal.ONE,
+            singletonList(new PricePlan.PeakTimeMultiplier(DayOfWeek.WEDNESDAY, BigDecimal.valueOf(3))));
+
+    private MeterReadingStore meterReadingStore;
+    private TariffSimulationService tariffSimulationService;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingStore = new MeterReadingStore(2);
+        meterReadingStore.getOrCreate("smart-meter-0").append(List.of(reading(0, 1.0), reading(1, 1.0)));
+        meterReadingStore.getOrCreate("smart-meter-1").append(List.of(reading(0, 2.0), reading(2, 2.0)));
+        meterReadingStore.getOrCreate("smart-meter-2").append(List.of(reading(0, 5.0)));
+        tariffSimulationService = new TariffSimulationService(meterReadingStore, new AverageConsumptionModel());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        meterReadingStore.shutdown();
+    }
+
+    @Test
+    public void givenCandidatePlansShouldCostEveryMeterWithEnoughReadings() {
+        List<MeterCost> meterCosts = new ArrayList<>();
+
+        tariffSimulationService.simulate(List.of(FLAT, PEAK_WEDNESDAY), meterCosts::add);
+
+        assertThat(meterCosts).extracting(MeterCost::getSmartMeterId).containsExactlyInAnyOrder("smart-meter-0", "smart-meter-1");
+        MeterCost secondMeter = meterCosts.stream().filter(cost -> cost.getSmartMeterId().equals("smart-meter-1")).findFirst().get();
+        assertThat(secondMeter.getCosts().get("flat")).isEqualByComparingTo("4.0");
+        assertThat(secondMeter.getCosts().get("peak-wednesday")).isEqualByComparingTo("12.0");
+    }
+
+    @Test
+    public void givenCandidatePlansShouldSummariseTheFleet() {
+        Map<String, FleetCost> fleet = tariffSimulationService.simulate(List.of(FLAT, PEAK_WEDNESDAY), meterCost -> { });
+
+        FleetCost flat = fleet.get("flat");
+        assertThat(flat.getMeters()).isEqualTo(2);
+        assertThat(flat.getTotalCost()).isEqualByComparingTo("5.0");
+        assertThat(flat.getAverageCost()).isEqualByComparingTo("2.5");
+        assertThat(flat.getMinCost()).isEqualByComparingTo("1.0");
+        assertThat(flat.getMaxCost()).isEqualByComparingTo("4.0");
+        assertThat(fleet.get("peak-wednesday").getTotalCost()).isEqualByComparingTo("15.0");
+    }
+
+    @Test
+    public void givenTwoCandidatesWithTheSameNameShouldRefuseToSimulate() {
+        assertThrows(IllegalArgumentException.class,
+                () -> tariffSimulationService.simulate(List.of(FLAT, FLAT), meterCost -> { }));
+    }
+
+    @Test
+    public void givenConsumptionBandsShouldChargeTheFirstKwhAtTheirBandRate() {
+        List<MeterCost> meterCosts = new ArrayList<>();
+
+        tariffSimulationService.simulate(List.of(FLAT, BANDED), meterCosts::add);
+
+        MeterCost firstMeter = meterCosts.stream().filter(cost -> cost.getSmartMeterId().equals("smart-meter-0")).findFirst().get();
+        MeterCost secondMeter = meterCosts.stream().filter(cost -> cost.getSmartMeterId().equals("smart-meter-1")).findFirst().get();
+        assertThat(firstMeter.getCosts().get("banded")).isEqualByComparingTo("1.0");
+        assertThat(secondMeter.getCosts().get("banded")).isEqualByComparingTo("13.0");
+    }
+
+    @Test
+    public void givenMoreMetersThanCanBeHandedOverAtOnceShouldHandEveryCostOver() {
+        MeterReadingStore store = new MeterReadingStore(4);
+        try {
+            for (int meter = 0; meter < 5000; meter++) {
+                store.getOrCreate("smart-meter-" + meter).append(List.of(reading(0, 1.0), reading(1, 1.0)));
+            }
+            TariffSimulationService simulation = new TariffSimulationService(store, new AverageConsumptionModel());
+            List<MeterCost> meterCosts = new ArrayList<>();
+
+            Map<String, FleetCost> fleet = simulation.simulate(List.of(FLAT), meterCosts::add);
+
+            assertThat(meterCosts).hasSize(5000);
+            assertThat(fleet.get("flat").getMeters()).isEqualTo(5000);
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void givenAReaderThatFailsShouldStopHandingCostsOver() {
+        MeterReadingStore store = new MeterReadingStore(2);
+        try {
+            for (int meter = 0; meter < 5000; meter++) {
+                store.getOrCreate("smart-meter-" + meter).append(List.of(reading(0, 1.0), reading(1, 1.0)));
+            }
+            TariffSimulationService simulation = new TariffSimulationService(store, new AverageConsumptionModel());
+
+            assertThrows(IllegalStateException.class, () -> simulation.simulate(List.of(FLAT), meterCost -> {
+                throw new IllegalStateException("client went away");
+            }));
+
+            // the shards are free again rather than stuck on a full queue
+            assertThat(store.scanShards(shard -> 1)).hasSize(2);
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void givenReadingsAcrossTheStartOfAMonthShouldStartTheBandsOver() {
+        ZoneId zone = ZoneId.systemDefault();
+        Instant endOfMarch = LocalDate.of(2023, 3, 31).atTime(18, 0).atZone(zone).toInstant();
+        MeterReadingStore store = new MeterReadingStore(1);
+        try {
+            store.getOrCreate("smart-meter-0").append(List.of(
+                    new ElectricityReading(endOfMarch, BigDecimal.ONE),
+                    new ElectricityReading(endOfMarch.plusSeconds(2 * 3600), BigDecimal.ONE),
+                    new ElectricityReading(endOfMarch.plusSeconds(8 * 3600), BigDecimal.ONE)));
+            TariffSimulationService simulation = new TariffSimulationService(store, new TrapezoidalConsumptionModel());
+            List<MeterCost> meterCosts = new ArrayList<>();
+
+            simulation.simulate(List.of(BANDED), meterCosts::add);
+
+            // 2 kWh in March, then 6 kWh in April of which 3 are in the band again
+            assertThat(meterCosts.get(0).getCosts().get("banded")).isEqualByComparingTo("35.0");
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void givenMultipliersOfOneOnEveryDayShouldCostTheSameAsTheFlatPlan() {
+        List<PricePlan.PeakTimeMultiplier> ones = new ArrayList<>();
+        for (DayOfWeek dayOfWeek : DayOfWeek.values()) {
+            ones.add(new PricePlan.PeakTimeMultiplier(dayOfWeek, BigDecimal.ONE));
+        }
+        PricePlan flatByDay = new PricePlan("flat-by-day", null, BigDecimal.ONE, ones);
+        MeterReadingStore store = new MeterReadingStore(1);
+        try {
+            List<ElectricityReading> readings = new ArrayList<>();
+            for (int hours = 0; hours <= 72; hours += 5) {
+                readings.add(reading(hours, 1 + hours % 4));
+            }
+            store.getOrCreate("smart-meter-0").append(readings);
+            TariffSimulationService simulation = new TariffSimulationService(store, new TrapezoidalConsumptionModel());
+            List<MeterCost> meterCosts = new ArrayList<>();
+
+            simulation.simulate(List.of(FLAT, flatByDay), meterCosts::add);
+
+            assertThat(meterCosts.get(0).getCosts().get("flat-by-day")).isEqualByComparingTo(meterCosts.get(0).getCosts().get("flat"));
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void givenReadingsEitherSideOfMidnightShouldChargeTheStretchToTheLaterDay() {
+        MeterReadingStore store = new MeterReadingStore(1);
+        try {
+            // from Tuesday evening to Wednesday morning
+            store.getOrCreate("smart-meter-0").append(List.of(reading(-18, 1.0), reading(-12, 1.0)));
+            TariffSimulationService simulation = new TariffSimulationService(store, new TrapezoidalConsumptionModel());
+            List<MeterCost> meterCosts = new ArrayList<>();
+
+            simulation.simulate(List.of(PEAK_WEDNESDAY), meterCosts::add);
+
+            assertThat(meterCosts.get(0).getCosts().get("peak-wednesday")).isEqualByComparingTo("18.0");
+        } finally {
+            store.shutdown();
+        }
+    }
+
+    @Test
+    public void givenACandidateWithBothPeakTimeMultipliersAndConsumptionBandsShouldRefuseToSimulate() {
+        PricePlan both = new PricePlan("both", null, BigDecimal.ONE,
+                singletonList(new PricePlan.PeakTimeMultiplier(DayOfWeek.WEDNESDAY, BigDecimal.TEN)),
+                singletonList(new PricePlan.ConsumptionBand(BigDecimal.ONE, BigDecimal.ONE)));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> tariffSimulationService.simulate(List.of(both), meterCost -> { }));
+    }
+
+    private static ElectricityReading reading(long hoursAfterNoon, double reading) {
+        return new ElectricityReading(NOON.plusSeconds(hoursAfterNoon * 3600), BigDecimal.valueOf(reading));
+    }
+}
@@ -0,0 +1,83 @@
+package uk.tw.energy.service;
+
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.store.MeterReadingHistory;
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+public class TrapezoidalConsumptionModelTest {
+
+    private static final Instant START = Instant.parse("2023-04-10T00:00:00Z");
+    private static final Duration MAX_GAP = Duration.ofHours(1);
+
+    private final TrapezoidalConsumptionModel model = new TrapezoidalConsumptionModel();
+
+    @Test
+    public void givenTwoReadingsShouldIntegrateTheirMeanOverTheTimeBetweenThem() {
+        ReadingWindow window = history(MAX_GAP, reading(0, 15.0), reading(60, 5.0)).window();
+
+        assertThat(model.consumedKwh(window)).isEqualByComparingTo("10");
+    }
+
+    @Test
+    public void givenABurstOfDenseReadingsShouldWeightThemByTheTimeTheyCover() {
+        ReadingWindow window = history(MAX_GAP,
+                reading(0, 1.0), reading(1, 9.0), reading(2, 9.0), reading(3, 9.0), reading(30, 1.0), reading(60, 1.0)).window();
+
+        BigDecimal expected = BigDecimal.valueOf((5.0 + 9.0 + 9.0) / 60 + 5.0 * 27 / 60 + 1.0 * 30 / 60);
+        assertThat(model.consumedKwh(window)).isCloseTo(expected, within(BigDecimal.valueOf(1e-9)));
+    }
+
+    @Test
+    public void givenAGapLongerThanTheMaximumShouldNotCountTheTimeTheMeterWasOffline() {
+        ReadingWindow window = history(MAX_GAP,
+                reading(0, 2.0), reading(60, 2.0), reading(60 * 6, 2.0), reading(60 * 7, 2.0)).window();
+
+        assertThat(model.consumedKwh(window)).isEqualByComparingTo("4");
+    }
+
+    @Test
+    public void givenNoMaximumGapShouldBridgeEveryGap() {
+        ReadingWindow window = history(Duration.ZERO,
+                reading(0, 2.0), reading(60, 2.0), reading(60 * 6, 2.0), reading(60 * 7, 2.0)).window();
+
+        assertThat(model.consumedKwh(window)).isEqualByComparingTo("14");
+    }
+
+    @Test
+    public void givenReadingsOutOfOrderShouldIntegrateThemInTimeOrder() {
+        ReadingWindow window = history(MAX_GAP, reading(60, 5.0), reading(0, 15.0)).window();
+
+        assertThat(model.consumedKwh(window)).isEqualByComparingTo("10");
+    }
+
+    @Test
+    public void givenWindowsThatMeetAtAReadingShouldAddUpToTheWhole() {
+        MeterReadingHistory history = history(MAX_GAP,
+                reading(0, 1.0), reading(20, 3.0), reading(40, 2.0), reading(80, 4.0), reading(100, 1.0));
+        Instant middle = START.plus(Duration.ofMinutes(40));
+
+        BigDecimal morning = model.consumedKwh(history.window(START, middle.plusNanos(1)));
+        BigDecimal afternoon = model.consumedKwh(history.window(middle, START.plus(Duration.ofMinutes(101))));
+
+        assertThat(morning.add(afternoon)).isCloseTo(model.consumedKwh(history.window()), within(BigDecimal.valueOf(1e-9)));
+    }
+
+    private static MeterReadingHistory history(Duration maxGap, ElectricityReading... readings) {
+        MeterReadingHistory history = new MeterReadingHistory(maxGap);
+        history.append(List.of(readings));
+        return history;
+    }
+
+    private static ElectricityReading reading(long minutesAfterStart, double reading) {
+        return new ElectricityReading(START.plus(Duration.ofMinutes(minutesAfterStart)), BigDecimal.valueOf(reading));
+    }
+}
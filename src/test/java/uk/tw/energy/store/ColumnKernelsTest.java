@@ -0,0 +1,34 @@
+package uk.tw.energy.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ColumnKernelsTest {
+
+    @Test
+    public void givenTheVectorModuleShouldPickTheVectorKernels() {
+        assertThat(ModuleLayer.boot().findModule("jdk.incubator.vector")).isPresent();
+
+        assertThat(ColumnKernels.best().name()).startsWith("vector-");
+    }
+
+    @Test
+    public void givenAnyRangeShouldAddLikeTheScalarKernels() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < 200; i++) {
+            double[] values = random.doubles(random.nextInt(1, 100)).toArray();
+            int from = random.nextInt(values.length);
+            int to = random.nextInt(from, values.length + 1);
+            double delta = random.nextDouble(-10, 10);
+            double[] expected = values.clone();
+
+            ColumnKernels.scalar().add(expected, from, to, delta);
+            ColumnKernels.best().add(values, from, to, delta);
+
+            assertThat(values).containsExactly(expected);
+        }
+    }
+}
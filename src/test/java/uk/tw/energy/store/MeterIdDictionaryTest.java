@@ -0,0 +1,49 @@
+package uk.tw.energy.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MeterIdDictionaryTest {
+
+    private final MeterIdDictionary meterIds = new MeterIdDictionary();
+
+    @Test
+    public void givenNewMeterIdsShouldHandThemOutDenseHandles() {
+        assertThat(meterIds.intern("smart-meter-0")).isZero();
+        assertThat(meterIds.intern("smart-meter-1")).isEqualTo(1);
+        assertThat(meterIds.intern("smart-meter-0")).isZero();
+        assertThat(meterIds.idOf(1)).isEqualTo("smart-meter-1");
+    }
+
+    @Test
+    public void givenAMeterIdNeverInternedShouldReturnUnknown() {
+        meterIds.intern("smart-meter-0");
+
+        assertThat(meterIds.handleOf("smart-meter-1")).isEqualTo(MeterIdDictionary.UNKNOWN);
+    }
+
+    @Test
+    public void givenMoreMetersThanTheInitialTableShouldKeepEveryHandle() {
+        for (int i = 0; i < 5000; i++) {
+            meterIds.intern("smart-meter-" + i);
+        }
+
+        assertThat(meterIds.size()).isEqualTo(5000);
+        assertThat(IntStream.range(0, 5000)).allMatch(i -> meterIds.handleOf("smart-meter-" + i) == i);
+    }
+
+    @Test
+    public void givenConcurrentInternsOfTheSameIdsShouldAgreeOnTheirHandles() {
+        Set<String> handles = ConcurrentHashMap.newKeySet();
+        IntStream.range(0, 20_000).parallel()
+                .forEach(i -> handles.add((i % 2000) + "=" + meterIds.intern("smart-meter-" + i % 2000)));
+
+        assertThat(meterIds.size()).isEqualTo(2000);
+        assertThat(handles).hasSize(2000);
+    }
+}
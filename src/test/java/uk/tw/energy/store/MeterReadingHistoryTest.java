@@ -0,0 +1,278 @@
+package uk.tw.energy.store;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.LoadProfileHour;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MeterReadingHistoryTest {
+
+    private static final Instant NOW = Instant.parse("2023-04-10T10:00:00Z");
+
+    private MeterReadingHistory history;
+
+    @BeforeEach
+    public void setUp() {
+        history = new MeterReadingHistory();
+    }
+
+    @Test
+    public void givenReadingsAfterTheWatermarkShouldAcceptThemAll() {
+        assertThat(history.append(List.of(reading(0, 1.0), reading(10, 2.0)))).isEqualTo(2);
+        assertThat(history.append(List.of(reading(20, 3.0), reading(30, 4.0)))).isEqualTo(2);
+
+        assertThat(history.size()).isEqualTo(4);
+    }
+
+    @Test
+    public void givenAReplayedBatchShouldDropReadingsWithIdenticalTimestamps() {
+        List<ElectricityReading> batch = List.of(reading(0, 1.0), reading(10, 2.0), reading(20, 3.0));
+        history.append(batch);
+
+        assertThat(history.append(batch)).isZero();
+        assertThat(history.snapshot()).isEqualTo(batch);
+    }
+
+    @Test
+    public void givenOutOfOrderReadingsShouldAcceptNewTimestampsBeforeTheWatermark() {
+        history.append(List.of(reading(0, 1.0), reading(30, 4.0)));
+
+        assertThat(history.append(List.of(reading(10, 2.0), reading(30, 9.0), reading(20, 3.0), reading(0, 9.0)))).isEqualTo(2);
+        assertThat(history.snapshot()).extracting(ElectricityReading::getReading)
+                .containsExactly(BigDecimal.valueOf(1.0), BigDecimal.valueOf(4.0), BigDecimal.valueOf(2.0), BigDecimal.valueOf(3.0));
+    }
+
+    @Test
+    public void givenABatchWithNothingNewShouldKeepTheVersion() {
+        history.append(List.of(reading(0, 1.0), reading(10, 2.0)));
+        long version = history.version();
+
+        history.append(List.of(reading(10, 2.0)));
+        assertThat(history.version()).isEqualTo(version);
+
+        history.append(List.of(reading(20, 3.0)));
+        assertThat(history.version()).isGreaterThan(version);
+    }
+
+    @Test
+    public void givenDuplicateTimestampsWithinABatchShouldKeepTheFirst() {
+        assertThat(history.append(List.of(reading(0, 1.0), reading(0, 2.0)))).isEqualTo(1);
+        assertThat(history.snapshot().get(0).getReading()).isEqualTo(BigDecimal.valueOf(1.0));
+    }
+
+    @Test
+    public void givenARepeatedIdempotencyKeyShouldIgnoreTheWholeBatch() {
+        history.append(List.of(reading(0, 1.0)), "batch-1");
+
+        assertThat(history.append(List.of(reading(10, 2.0)), "batch-1")).isZero();
+        assertThat(history.append(List.of(reading(10, 2.0)), "batch-2")).isEqualTo(1);
+    }
+
+    @Test
+    public void givenManyLaterBatchesShouldForgetTheOldestIdempotencyKey() {
+        history.append(List.of(reading(0, 1.0)), "batch-0");
+        for (int i = 1; i <= 64; i++) {
+            history.append(List.of(reading(i, 1.0)), "batch-" + i);
+        }
+
+        assertThat(history.append(List.of(reading(100, 1.0)), "batch-0")).isEqualTo(1);
+    }
+
+    @Test
+    public void givenARangeShouldSummariseOnlyTheReadingsWithinIt() {
+        history.append(List.of(reading(0, 1.0), reading(3600, 2.0), reading(7200, 3.0), reading(10800, 4.0)));
+
+        ReadingWindow window = history.window(NOW.plusSeconds(3600), NOW.plusSeconds(10800));
+
+        assertThat(window.getCount()).isEqualTo(2);
+        assertThat(window.getSummedReadings()).isEqualTo(5.0);
+        assertThat(window.getFirst()).isEqualTo(NOW.plusSeconds(3600));
+        assertThat(window.getLast()).isEqualTo(NOW.plusSeconds(7200));
+        assertThat(window.getTrapezoidalKwh()).isEqualTo(2.5);
+    }
+
+    @Test
+    public void givenOutOfOrderReadingsShouldKeepTheWindowInTimeOrder() {
+        history.append(List.of(reading(0, 1.0), reading(7200, 3.0)));
+        history.append(List.of(reading(3600, 2.0)));
+
+        ReadingWindow window = history.window();
+
+        assertThat(window.getCount()).isEqualTo(3);
+        assertThat(window.getSummedReadings()).isEqualTo(6.0);
+        assertThat(window.getTimeElapsed()).isEqualTo(Duration.ofHours(2));
+        assertThat(window.getTrapezoidalKwh()).isEqualTo(4.0);
+    }
+
+    @Test
+    public void givenARangeWithoutReadingsShouldReturnAnEmptyWindow() {
+        history.append(List.of(reading(0, 1.0), reading(3600, 2.0)));
+
+        assertThat(history.window(NOW.plusSeconds(10), NOW.plusSeconds(20)).getCount()).isZero();
+    }
+
+    @Test
+    public void givenAGapLongerThanTheMaximumShouldAddNoTrapezoidalConsumptionForIt() {
+        history = new MeterReadingHistory(Duration.ofHours(1));
+        history.append(List.of(reading(0, 1.0), reading(3600, 3.0), reading(4 * 3600, 5.0), reading(5 * 3600, 5.0)));
+
+        assertThat(history.window().getTrapezoidalKwh()).isEqualTo(7.0);
+    }
+
+    @Test
+    public void givenReadingsInAnyOrderShouldFindTheSameExtremesAsAFullScan() {
+        Random random = new Random(42);
+        List<ElectricityReading> stored = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            ElectricityReading electricityReading = reading(random.nextInt(1000), random.nextInt(50) / 10.0);
+            if (history.append(List.of(electricityReading)) == 1) {
+                stored.add(electricityReading);
+            }
+        }
+
+        for (int i = 0; i < 200; i++) {
+            Instant from = NOW.plusSeconds(random.nextInt(1000));
+            Instant to = from.plusSeconds(random.nextInt(300));
+            List<ElectricityReading> inRange = stored.stream()
+                    .filter(r -> !r.getTime().isBefore(from) && r.getTime().isBefore(to))
+                    .sorted(Comparator.comparing(ElectricityReading::getTime))
+                    .toList();
+            Optional<ReadingExtremes> extremes = history.extremes(from, to);
+
+            assertThat(extremes.isPresent()).isEqualTo(!inRange.isEmpty());
+            extremes.ifPresent(found -> {
+                ElectricityReading max = inRange.stream().max(Comparator.comparing(ElectricityReading::getReading)).get();
+                assertThat(found.getMaxReading()).isEqualByComparingTo(max.getReading());
+                assertThat(found.getMinReading()).isEqualByComparingTo(
+                        inRange.stream().map(ElectricityReading::getReading).min(Comparator.naturalOrder()).get());
+                assertThat(inRange.stream().filter(r -> r.getReading().compareTo(max.getReading()) == 0).findFirst().get().getTime())
+                        .isEqualTo(found.getMaxReadingTime());
+            });
+        }
+    }
+
+    @Test
+    public void givenReadingsInAnyOrderShouldSummariseLikeReadingsInTimeOrderWithEitherKernels() {
+        List<ElectricityReading> inTimeOrder = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 500; i++) {
+            inTimeOrder.add(reading(60L * i + random.nextInt(60), random.nextInt(50) / 10.0));
+        }
+        List<ElectricityReading> shuffled = new ArrayList<>(inTimeOrder);
+        Collections.shuffle(shuffled, random);
+        MeterReadingHistory expected = new MeterReadingHistory(Duration.ofMinutes(90), ColumnKernels.scalar());
+        expected.append(inTimeOrder);
+
+        for (ColumnKernels kernels : List.of(ColumnKernels.scalar(), ColumnKernels.best())) {
+            history = new MeterReadingHistory(Duration.ofMinutes(90), kernels);
+            shuffled.forEach(electricityReading -> history.append(List.of(electricityReading)));
+
+            for (int i = 0; i < 100; i++) {
+                Instant from = NOW.plusSeconds(random.nextInt(30_000));
+                Instant to = from.plusSeconds(random.nextInt(10_000));
+                ReadingWindow window = history.window(from, to);
+                ReadingWindow expectedWindow = expected.window(from, to);
+                assertThat(window.getCount()).isEqualTo(expectedWindow.getCount());
+                assertThat(window.getSummedReadings()).isCloseTo(expectedWindow.getSummedReadings(), within(1e-9));
+                assertThat(window.getTrapezoidalKwh()).isCloseTo(expectedWindow.getTrapezoidalKwh(), within(1e-9));
+            }
+        }
+    }
+
+    @Test
+    public void givenReadingsKeptOffTheHeapShouldAnswerLikeReadingsKeptOnIt() {
+        List<ElectricityReading> readings = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            readings.add(new ElectricityReading(NOW.plusSeconds(random.nextInt(100_000)),
+                    BigDecimal.valueOf(random.nextInt(50_000), random.nextInt(5))));
+        }
+        MeterReadingHistory offHeap = new MeterReadingHistory(Duration.ofMinutes(90), new OffHeapArena(1 << 20, 1 << 16));
+        history = new MeterReadingHistory(Duration.ofMinutes(90));
+        for (int from = 0; from < readings.size(); from += 7) {
+            List<ElectricityReading> batch = readings.subList(from, Math.min(from + 7, readings.size()));
+            assertThat(offHeap.append(batch)).isEqualTo(history.append(batch));
+        }
+
+        assertThat(offHeap.size()).isEqualTo(history.size());
+        assertThat(offHeap.heapBytes()).isEqualTo(offHeap.loadProfileHeapBytes());
+        assertThat(offHeap.offHeapBytes()).isPositive();
+        assertThat(offHeap.snapshot()).usingRecursiveComparison().isEqualTo(history.snapshot());
+        for (int i = 0; i < 100; i++) {
+            Instant from = NOW.plusSeconds(random.nextInt(100_000));
+            Instant to = from.plusSeconds(random.nextInt(20_000));
+            assertThat(offHeap.window(from, to)).usingRecursiveComparison().ignoringFields("history").isEqualTo(history.window(from, to));
+            assertThat(offHeap.extremes(from, to)).usingRecursiveComparison().isEqualTo(history.extremes(from, to));
+        }
+    }
+
+    @Test
+    public void givenABatchTheOffHeapStoreHasNoRoomForShouldStoreNoneOfItAndForgetItsKey() {
+        history = new MeterReadingHistory(Duration.ZERO, new OffHeapArena(2 * OffHeapReadingColumns.bytesFor(16), OffHeapReadingColumns.bytesFor(16)));
+        history.append(List.of(reading(0, 1.0)));
+        List<ElectricityReading> batch = new ArrayList<>();
+        for (int i = 1; i <= 32; i++) {
+            batch.add(reading(i, 1.0));
+        }
+
+        assertThrows(StoreFullException.class, () -> history.append(batch, "batch-1"));
+        assertThat(history.size()).isEqualTo(1);
+        assertThat(history.append(batch.subList(0, 15), "batch-1")).isEqualTo(15);
+    }
+
+    @Test
+    public void givenAcceptedReadingsShouldProfileThemByHourOfDay() {
+        history.append(List.of(reading(0, 1.0), reading(60, 3.0), reading(3600, 8.0)));
+        history.append(List.of(reading(60, 5.0)));
+        LoadProfile loadProfile = new LoadProfile();
+
+        history.mergeLoadProfileInto(loadProfile);
+
+        int hour = NOW.atZone(ZoneId.systemDefault()).getHour();
+        List<LoadProfileHour> hours = loadProfile.describe(List.of(1.0));
+        assertThat(hours).hasSize(LoadProfile.HOURS_PER_DAY);
+        assertThat(hours.get(hour).getReadings()).isEqualTo(2);
+        assertThat(hours.get(hour).getQuantiles().get("1.0")).isEqualByComparingTo("3.0");
+        assertThat(hours.get((hour + 1) % LoadProfile.HOURS_PER_DAY).getReadings()).isEqualTo(1);
+    }
+
+    @Test
+    public void givenABatchWithAReadingWithoutValueShouldStoreNoneOfItNorRememberItsKey() {
+        List<ElectricityReading> batch = List.of(reading(0, 1.0), new ElectricityReading(NOW.plusSeconds(10), null));
+
+        assertThrows(IllegalArgumentException.class, () -> history.append(batch, "batch-1"));
+        assertThat(history.size()).isZero();
+        assertThat(history.version()).isZero();
+        assertThat(history.append(batch.subList(0, 1), "batch-1")).isEqualTo(1);
+    }
+
+    @Test
+    public void givenAReadingTheOffHeapStoreCannotKeepShouldStoreNoneOfTheBatch() {
+        history = new MeterReadingHistory(Duration.ZERO, new OffHeapArena(1 << 20, 1 << 16));
+        List<ElectricityReading> batch = List.of(reading(10, 1.0), new ElectricityReading(NOW, new BigDecimal("1E+200")));
+
+        assertThrows(IllegalArgumentException.class, () -> history.append(batch));
+        assertThat(history.size()).isZero();
+        assertThat(history.append(List.of(reading(0, 2.0), reading(10, 1.0)))).isEqualTo(2);
+        assertThat(history.snapshot()).usingRecursiveComparison().isEqualTo(List.of(reading(0, 2.0), reading(10, 1.0)));
+    }
+
+    private static ElectricityReading reading(long secondsAfterNow, double reading) {
+        return new ElectricityReading(NOW.plusSeconds(secondsAfterNow), BigDecimal.valueOf(reading));
+    }
+}
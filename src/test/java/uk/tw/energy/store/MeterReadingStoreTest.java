@@ -0,0 +1,127 @@
+package uk.tw.energy.store;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.builders.MeterReadingsBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MeterReadingStoreTest {
+
+    private MeterReadingStore meterReadingStore;
+
+    @BeforeEach
+    public void setUp() {
+        meterReadingStore = new MeterReadingStore(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        meterReadingStore.shutdown();
+    }
+
+    @Test
+    public void givenTheSameMeterIdShouldAlwaysPickTheSameShard() {
+        MeterReadingShard shard = meterReadingStore.shardFor("smart-meter-0");
+
+        assertThat(meterReadingStore.shardFor("smart-meter-0")).isSameAs(shard);
+        assertThat(new MeterReadingStore(4).shardFor("smart-meter-0").getIndex()).isEqualTo(shard.getIndex());
+    }
+
+    @Test
+    public void givenManyMetersShouldSpreadThemOverAllShards() {
+        for (int i = 0; i < 1000; i++) {
+            meterReadingStore.getOrCreate("smart-meter-" + i);
+        }
+
+        List<Integer> metersPerShard = meterReadingStore.scanShards(MeterReadingShard::size);
+
+        assertThat(metersPerShard).hasSize(4).allMatch(meters -> meters > 150);
+        assertThat(metersPerShard.stream().mapToInt(Integer::intValue).sum()).isEqualTo(1000);
+    }
+
+    @Test
+    public void givenStoredReadingsShouldFindThemInTheOwningShardOnly() {
+        meterReadingStore.getOrCreate("smart-meter-0")
+                .append(new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+
+        assertThat(meterReadingStore.find("smart-meter-0").get().size()).isEqualTo(5);
+        assertThat(meterReadingStore.scanShards(shard -> {
+            List<String> meterIds = new ArrayList<>();
+            shard.forEach((meterId, history) -> meterIds.add(meterId));
+            return meterIds.contains("smart-meter-0");
+        })).containsOnlyOnce(true);
+    }
+
+    @Test
+    public void givenReadingsOnTheHeapShouldReportTheirEstimatedHeapAndNoOffHeap() {
+        meterReadingStore.getOrCreate("smart-meter-0")
+                .append(new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+        meterReadingStore.getOrCreate("smart-meter-1");
+
+        StoreUsage usage = meterReadingStore.usage();
+
+        assertThat(usage.getBackend()).isEqualTo("heap");
+        assertThat(usage.getMeters()).isEqualTo(2);
+        assertThat(usage.getReadings()).isEqualTo(5);
+        assertThat(usage.getLoadProfileHeapBytes()).isPositive();
+        assertThat(usage.getHeapBytes())
+                .isEqualTo(5 * MeterReadingHistory.ESTIMATED_HEAP_BYTES_PER_READING + usage.getLoadProfileHeapBytes());
+        assertThat(usage.getOffHeapUsedBytes()).isZero();
+    }
+
+    @Test
+    public void givenReadingsOffTheHeapShouldReportTheSlabsTheyTakeUp() {
+        MeterReadingStore offHeapStore = new MeterReadingStore(2, Duration.ZERO, new MeterIdDictionary(),
+                new OffHeapArena(1 << 20, 1 << 16));
+        try {
+            offHeapStore.getOrCreate("smart-meter-0")
+                    .append(new MeterReadingsBuilder().generateElectricityReadings().build().getElectricityReadings());
+            offHeapStore.getOrCreate("smart-meter-1");
+
+            StoreUsage usage = offHeapStore.usage();
+
+            assertThat(usage.getBackend()).isEqualTo("off-heap");
+            assertThat(usage.getReadings()).isEqualTo(5);
+            assertThat(usage.getLoadProfileHeapBytes()).isPositive();
+            assertThat(usage.getHeapBytes()).isEqualTo(usage.getLoadProfileHeapBytes());
+            assertThat(usage.getOffHeapUsedBytes()).isEqualTo(2L * OffHeapReadingColumns.bytesFor(16));
+            assertThat(usage.getOffHeapReservedBytes()).isEqualTo(1 << 16);
+            assertThat(usage.getOffHeapCapacityBytes()).isEqualTo(1 << 20);
+            assertThat(usage.getOffHeapSlabs()).isEqualTo(2);
+        } finally {
+            offHeapStore.shutdown();
+        }
+    }
+
+    @Test
+    public void givenAMeterTheOffHeapStoreHasNoRoomForShouldLeaveScansOfTheOthersWorking() {
+        MeterReadingStore offHeapStore = new MeterReadingStore(1, Duration.ZERO, new MeterIdDictionary(),
+                new OffHeapArena(OffHeapReadingColumns.bytesFor(16), OffHeapReadingColumns.bytesFor(16)));
+        try {
+            offHeapStore.getOrCreate("smart-meter-0");
+
+            assertThrows(StoreFullException.class, () -> offHeapStore.getOrCreate("smart-meter-1"));
+            List<String> scanned = new ArrayList<>();
+            offHeapStore.scanShards(shard -> {
+                shard.forEach((smartMeterId, history) -> scanned.add(smartMeterId + ":" + history.size()));
+                return null;
+            });
+            assertThat(scanned).containsExactly("smart-meter-0:0");
+            assertThat(offHeapStore.usage().getMeters()).isEqualTo(1);
+        } finally {
+            offHeapStore.shutdown();
+        }
+    }
+
+    @Test
+    public void givenNoShardsShouldRefuseToCreateStore() {
+        assertThrows(IllegalArgumentException.class, () -> new MeterReadingStore(0));
+    }
+}
@@ -0,0 +1,59 @@
+package uk.tw.energy.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class OffHeapArenaTest {
+
+    @Test
+    public void givenSlabsShouldCarveThemOutOfOneChunk() {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+
+        ByteBuffer first = arena.allocate(256);
+        ByteBuffer second = arena.allocate(512);
+
+        assertThat(first.isDirect()).isTrue();
+        assertThat(first.capacity()).isEqualTo(256);
+        assertThat(second.capacity()).isEqualTo(512);
+        assertThat(arena.getReservedBytes()).isEqualTo(1024);
+        assertThat(arena.getUsedBytes()).isEqualTo(768);
+        assertThat(arena.getSlabs()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenAFreedSlabShouldHandItToTheNextRequestOfItsSize() {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+        ByteBuffer slab = arena.allocate(512);
+        slab.putLong(0, 42L);
+
+        arena.free(slab);
+        ByteBuffer reused = arena.allocate(512);
+
+        assertThat(reused.getLong(0)).isEqualTo(42L);
+        assertThat(arena.getUsedBytes()).isEqualTo(512);
+        assertThat(arena.getReservedBytes()).isEqualTo(1024);
+    }
+
+    @Test
+    public void givenASlabLargerThanAChunkShouldReserveItOnItsOwn() {
+        OffHeapArena arena = new OffHeapArena(4096, 1024);
+
+        arena.allocate(3000);
+
+        assertThat(arena.getReservedBytes()).isEqualTo(3000);
+    }
+
+    @Test
+    public void givenNoRoomLeftShouldRefuseToReserveMore() {
+        OffHeapArena arena = new OffHeapArena(2048, 1024);
+        arena.allocate(1024);
+        arena.allocate(1024);
+
+        assertThrows(StoreFullException.class, () -> arena.allocate(8));
+        assertThat(arena.getReservedBytes()).isEqualTo(2048);
+    }
+}
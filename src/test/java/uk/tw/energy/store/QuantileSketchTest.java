@@ -0,0 +1,76 @@
+package uk.tw.energy.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class QuantileSketchTest {
+
+    @Test
+    public void givenReadingsShouldAnswerQuantilesWithinTheRelativeAccuracy() {
+        Random random = new Random(42);
+        double[] readings = new double[10_000];
+        QuantileSketch sketch = new QuantileSketch();
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = 0.1 + random.nextDouble() * 5;
+            sketch.add(readings[i]);
+        }
+        Arrays.sort(readings);
+
+        for (double quantile : new double[]{0.0, 0.5, 0.95, 0.99, 1.0}) {
+            double exact = readings[(int) (quantile * (readings.length - 1))];
+            assertThat(sketch.quantile(quantile)).isCloseTo(exact, within(exact * QuantileSketch.RELATIVE_ACCURACY));
+        }
+    }
+
+    @Test
+    public void givenSketchesOfDifferentReadingsShouldMergeIntoOneOfAllOfThem() {
+        QuantileSketch low = new QuantileSketch();
+        QuantileSketch high = new QuantileSketch();
+        for (int i = 1; i <= 100; i++) {
+            low.add(i);
+            high.add(100 + i);
+        }
+
+        low.merge(high);
+
+        assertThat(low.getCount()).isEqualTo(200);
+        assertThat(low.quantile(0.5)).isCloseTo(100.0, within(100 * QuantileSketch.RELATIVE_ACCURACY));
+        assertThat(low.quantile(1.0)).isCloseTo(200.0, within(200 * QuantileSketch.RELATIVE_ACCURACY));
+    }
+
+    @Test
+    public void givenZeroAndNegativeReadingsShouldOrderThemBeforeThePositiveOnes() {
+        QuantileSketch sketch = new QuantileSketch();
+        sketch.add(-2.0);
+        sketch.add(0.0);
+        sketch.add(3.0);
+
+        assertThat(sketch.quantile(0.0)).isCloseTo(-2.0, within(2 * QuantileSketch.RELATIVE_ACCURACY));
+        assertThat(sketch.quantile(0.5)).isZero();
+        assertThat(sketch.quantile(1.0)).isCloseTo(3.0, within(3 * QuantileSketch.RELATIVE_ACCURACY));
+    }
+
+    @Test
+    public void givenReadingsSpanningMoreThanTheBinsShouldStayBoundedAndKeepTheHighQuantiles() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (int exponent = -9; exponent <= 9; exponent++) {
+            sketch.add(Math.pow(10, exponent));
+        }
+
+        assertThat(sketch.quantile(1.0)).isCloseTo(1e9, within(1e9 * QuantileSketch.RELATIVE_ACCURACY));
+        assertThat(sketch.quantile(0.9)).isCloseTo(1e7, within(1e7 * QuantileSketch.RELATIVE_ACCURACY));
+        assertThat(sketch.heapBytes()).isLessThanOrEqualTo(new QuantileSketch().heapBytes() + 8L * QuantileSketch.MAX_BINS);
+    }
+
+    @Test
+    public void givenNoReadingsShouldHaveNoQuantile() {
+        assertThat(new QuantileSketch().quantile(0.5)).isNaN();
+        assertThrows(IllegalArgumentException.class, () -> new QuantileSketch().quantile(1.5));
+    }
+}
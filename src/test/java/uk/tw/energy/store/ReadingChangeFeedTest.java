@@ -0,0 +1,107 @@
+package uk.tw.energy.store;
+
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.ElectricityReading;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ReadingChangeFeedTest {
+
+    private static final List<ElectricityReading> ONE_READING =
+            List.of(new ElectricityReading(Instant.parse("2020-11-29T08:00:00Z"), BigDecimal.ONE));
+
+    @Test
+    public void givenPublishedBatchesShouldNumberThemInTheOrderTheyWerePublished() {
+        ReadingChangeFeed changeFeed = new ReadingChangeFeed(2, 1_000);
+
+        assertThat(changeFeed.publish("smart-meter-0", 0, ONE_READING)).isZero();
+        assertThat(changeFeed.publish("smart-meter-1", 1, ONE_READING)).isEqualTo(1);
+
+        ReadingFeedPage page = changeFeed.read(0, 10, ReadingChangeFeed.ANY_SHARD);
+        assertThat(page.getBatches()).extracting(ReadingBatch::getSmartMeterId)
+                .containsExactly("smart-meter-0", "smart-meter-1");
+        assertThat(page.getBatches().get(1).getShard()).isEqualTo(1);
+        assertThat(page.getBatches().get(1).getElectricityReadings()).isEqualTo(ONE_READING);
+        assertThat(page.getNextOffset()).isEqualTo(2);
+        assertThat(page.getEndOffset()).isEqualTo(2);
+    }
+
+    @Test
+    public void givenPagesReadFromEachNextOffsetShouldReadEveryBatchOnce() {
+        ReadingChangeFeed changeFeed = new ReadingChangeFeed(1, 1_000_000);
+        for (int i = 0; i < 2_500; i++) {
+            changeFeed.publish("smart-meter-" + i, 0, ONE_READING);
+        }
+
+        List<Long> offsets = new ArrayList<>();
+        long next = 0;
+        do {
+            ReadingFeedPage page = changeFeed.read(next, 1_000, ReadingChangeFeed.ANY_SHARD);
+            page.getBatches().forEach(batch -> offsets.add(batch.getOffset()));
+            next = page.getNextOffset();
+        } while (next < 2_500);
+
+        assertThat(offsets).hasSize(2_500).doesNotHaveDuplicates().isSorted();
+        assertThat(changeFeed.read(next, 1_000, ReadingChangeFeed.ANY_SHARD).getBatches()).isEmpty();
+    }
+
+    @Test
+    public void givenAShardShouldReadOnlyItsBatchesAndThenSkipToTheEnd() {
+        ReadingChangeFeed changeFeed = new ReadingChangeFeed(3, 1_000_000);
+        for (int i = 0; i < 3_000; i++) {
+            changeFeed.publish("smart-meter-" + i, i % 3, ONE_READING);
+        }
+
+        ReadingFeedPage page = changeFeed.read(1_500, 2_000, 2);
+
+        assertThat(page.getBatches()).hasSize(500).allMatch(batch -> batch.getShard() == 2 && batch.getOffset() >= 1_500);
+        assertThat(page.getNextOffset()).isEqualTo(3_000);
+    }
+
+    @Test
+    public void givenMoreHeapThanRetainedShouldDropTheOldestBatches() {
+        long batchBytes = ReadingChangeFeed.ESTIMATED_HEAP_BYTES_PER_BATCH + ReadingChangeFeed.ESTIMATED_HEAP_BYTES_PER_READING;
+        ReadingChangeFeed changeFeed = new ReadingChangeFeed(1, 1_000_000, 1_500 * batchBytes);
+        for (int i = 0; i < 3_000; i++) {
+            changeFeed.publish("smart-meter-" + i, 0, ONE_READING);
+        }
+
+        ReadingFeedPage page = changeFeed.read(0, 10, ReadingChangeFeed.ANY_SHARD);
+
+        assertThat(page.getEarliestOffset()).isEqualTo(2_048);
+        assertThat(changeFeed.getReadingsHeld()).isEqualTo(3_000 - 2_048);
+        assertThat(changeFeed.heapBytes()).isEqualTo((3_000 - 2_048) * batchBytes);
+    }
+
+    @Test
+    public void givenMoreReadingsThanRetainedShouldDropTheOldestBatches() {
+        ReadingChangeFeed changeFeed = new ReadingChangeFeed(2, 1_500);
+        for (int i = 0; i < 3_000; i++) {
+            changeFeed.publish("smart-meter-" + i, i % 2, ONE_READING);
+        }
+
+        ReadingFeedPage page = changeFeed.read(0, 10, ReadingChangeFeed.ANY_SHARD);
+        ReadingFeedPage shardPage = changeFeed.read(0, 10, 1);
+
+        assertThat(page.getEarliestOffset()).isEqualTo(2_048);
+        assertThat(page.getBatches().get(0).getOffset()).isEqualTo(2_048);
+        assertThat(shardPage.getBatches().get(0).getOffset()).isEqualTo(2_049);
+    }
+
+    @Test
+    public void givenALimitOrShardOutOfRangeShouldRefuseToRead() {
+        ReadingChangeFeed changeFeed = new ReadingChangeFeed(2, 1_000);
+
+        assertThrows(IllegalArgumentException.class, () -> changeFeed.read(0, 0, ReadingChangeFeed.ANY_SHARD));
+        assertThrows(IllegalArgumentException.class,
+                () -> changeFeed.read(0, ReadingChangeFeed.MAX_PAGE_BATCHES + 1, ReadingChangeFeed.ANY_SHARD));
+        assertThrows(IllegalArgumentException.class, () -> changeFeed.read(0, 10, 2));
+        assertThrows(IllegalArgumentException.class, () -> changeFeed.read(-1, 10, ReadingChangeFeed.ANY_SHARD));
+    }
+}
@@ -0,0 +1,261 @@
+package uk.tw.energy.stress;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.tw.energy.domain.DayOfWeekCost;
+import uk.tw.energy.domain.ElectricityReading;
+import uk.tw.energy.domain.PricePlan;
+import uk.tw.energy.service.AccountService;
+import uk.tw.energy.service.AverageConsumptionModel;
+import uk.tw.energy.service.MeterReadingCostService;
+import uk.tw.energy.service.MeterReadingService;
+import uk.tw.energy.service.PricePlanService;
+import uk.tw.energy.store.MeterIdDictionary;
+import uk.tw.energy.store.MeterReadingStore;
+import uk.tw.energy.store.ReadingChangeFeed;
+import uk.tw.energy.store.ReadingWindow;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Writers and readers released at the same moment onto the same and different meters. Every reading is 1 kW and
+ * readings are whole hours apart, so any consistent view of a meter has as many kW summed as it has readings and
+ * costs a whole number of hours times each plan's unit rate; a torn or lost update breaks one of those.
+ */
+public class IngestAndQueryStressTest {
+
+    private static final Instant START = Instant.parse("2023-04-03T00:00:00Z");
+    private static final int WRITERS = 8;
+    private static final int READERS = 4;
+    private static final int BATCHES_PER_WRITER = 100;
+    private static final int BATCH_SIZE = 5;
+
+    private MeterReadingStore meterReadingStore;
+    private MeterReadingService meterReadingService;
+    private PricePlanService pricePlanService;
+    private MeterReadingCostService meterReadingCostService;
+    private AccountService accountService;
+    private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+    @BeforeEach
+    public void setUp() {
+        MeterIdDictionary meterIds = new MeterIdDictionary();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        meterReadingStore = new MeterReadingStore(4, Duration.ZERO, meterIds);
+        meterReadingService = new MeterReadingService(meterReadingStore,
+                new ReadingChangeFeed(meterReadingStore.getShardCount(), 1_000_000), meterRegistry);
+        List<PricePlan> pricePlans = List.of(
+                new PricePlan("price-plan-0", "Dr Evil's Dark Energy", BigDecimal.TEN, emptyList()),
+                new PricePlan("price-plan-1", "The Green Eco", BigDecimal.valueOf(2), emptyList()),
+                new PricePlan("price-plan-2", "Power for Everyone", BigDecimal.ONE, emptyList()));
+        pricePlanService = new PricePlanService(pricePlans, meterReadingService, new AverageConsumptionModel(), meterRegistry);
+        Map<String, String> accounts = new HashMap<>();
+        for (int meter = 0; meter < WRITERS; meter++) {
+            accounts.put(meterId(meter), "price-plan-" + meter % 3);
+        }
+        accountService = new AccountService(accounts, meterIds);
+        meterReadingCostService = new MeterReadingCostService(meterReadingStore, accountService, pricePlanService, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        meterReadingStore.shutdown();
+    }
+
+    @Test
+    public void givenWritersInterleavingReadingsOfOneMeterShouldLoseNoneAndNeverShowATornView() throws InterruptedException {
+        String smartMeterId = meterId(0);
+        // writer w stores hours w, w + WRITERS, w + 2 * WRITERS, ..., so most readings land before the watermark
+        runConcurrently(writer -> {
+            for (int batch = 0; batch < BATCHES_PER_WRITER; batch++) {
+                List<ElectricityReading> readings = new ArrayList<>(BATCH_SIZE);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    readings.add(reading((long) (batch * BATCH_SIZE + i) * WRITERS + writer));
+                }
+                meterReadingService.storeReadings(smartMeterId, readings);
+            }
+        }, () -> {
+            int seen = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                ReadingWindow window = meterReadingService.getReadingWindow(smartMeterId).orElse(ReadingWindow.EMPTY);
+                assertThat(window.getSummedReadings()).isEqualTo(window.getCount());
+                assertThat(window.getCount()).isGreaterThanOrEqualTo(seen);
+                seen = window.getCount();
+                pricePlanService.getCostOfElectricityReadingsForEachPricePlan(smartMeterId)
+                        .ifPresent(IngestAndQueryStressTest::assertCostsOfTheSameWholeHours);
+            }
+        });
+
+        int total = WRITERS * BATCHES_PER_WRITER * BATCH_SIZE;
+        ReadingWindow window = meterReadingService.getReadingWindow(smartMeterId).get();
+        assertThat(window.getCount()).isEqualTo(total);
+        assertThat(window.getFirst()).isEqualTo(START);
+        assertThat(window.getLast()).isEqualTo(START.plus(Duration.ofHours(total - 1)));
+        assertThat(meterReadingService.getReadings(smartMeterId).get()).hasSize(total);
+        assertThat(meterReadingService.getReadingWindow(smartMeterId, START, START.plus(Duration.ofHours(100))).get().getCount())
+                .isEqualTo(100);
+        assertThat(pricePlanService.getCostOfElectricityReadingsForEachPricePlan(smartMeterId).get().get("price-plan-2"))
+                .isEqualByComparingTo(BigDecimal.valueOf(total - 1));
+    }
+
+    @Test
+    public void givenWritersOnDifferentMetersShouldKeepEachMetersReadingsApart() throws InterruptedException {
+        // writer w stores every meter's hours w, w + WRITERS, ..., starting with a different meter from its neighbours
+        runConcurrently(writer -> {
+            for (int batch = 0; batch < BATCHES_PER_WRITER; batch++) {
+                String smartMeterId = meterId((writer + batch) % WRITERS);
+                List<ElectricityReading> readings = new ArrayList<>(BATCH_SIZE);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    readings.add(reading((long) (batch / WRITERS * BATCH_SIZE + i) * WRITERS + writer));
+                }
+                meterReadingService.storeReadings(smartMeterId, readings);
+            }
+        }, () -> {
+            AtomicInteger meter = new AtomicInteger();
+            while (!Thread.currentThread().isInterrupted()) {
+                String smartMeterId = meterId(meter.getAndIncrement() % WRITERS);
+                meterReadingService.getReadingWindow(smartMeterId).ifPresent(window ->
+                        assertThat(window.getSummedReadings()).isEqualTo(window.getCount()));
+                pricePlanService.getCostOfElectricityReadingsForEachPricePlan(smartMeterId)
+                        .ifPresent(IngestAndQueryStressTest::assertCostsOfTheSameWholeHours);
+            }
+        });
+
+        for (int meter = 0; meter < WRITERS; meter++) {
+            assertThat(meterReadingService.getReadingWindow(meterId(meter)).get().getCount())
+                    .as("readings of %s", meterId(meter))
+                    .isEqualTo(BATCHES_PER_WRITER * BATCH_SIZE);
+        }
+    }
+
+    @Test
+    public void givenDailyCostQueriesDuringIngestShouldEndWithTheCostsOfTheStoredReadings() throws InterruptedException {
+        String smartMeterId = meterId(0);
+        runConcurrently(writer -> {
+            for (int batch = 0; batch < BATCHES_PER_WRITER; batch++) {
+                List<ElectricityReading> readings = new ArrayList<>(BATCH_SIZE);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    readings.add(reading((long) (batch * BATCH_SIZE + i) * WRITERS + writer));
+                }
+                meterReadingService.storeReadings(smartMeterId, readings);
+            }
+        }, () -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                if (meterReadingStore.find(smartMeterId).isPresent()) {
+                    meterReadingCostService.getDayOfWeekCost(smartMeterId);
+                }
+            }
+        });
+
+        MeterReadingStore sequentialStore = new MeterReadingStore(1);
+        try {
+            MeterReadingService sequentialReadings = new MeterReadingService(sequentialStore,
+                    new ReadingChangeFeed(sequentialStore.getShardCount(), 1_000_000), new SimpleMeterRegistry());
+            sequentialReadings.storeReadings(smartMeterId, meterReadingService.getReadings(smartMeterId).get());
+            PricePlanService sequentialPricePlans = new PricePlanService(List.of(
+                    new PricePlan("price-plan-0", "Dr Evil's Dark Energy", BigDecimal.TEN, emptyList()),
+                    new PricePlan("price-plan-1", "The Green Eco", BigDecimal.valueOf(2), emptyList()),
+                    new PricePlan("price-plan-2", "Power for Everyone", BigDecimal.ONE, emptyList())),
+                    sequentialReadings, new AverageConsumptionModel(), new SimpleMeterRegistry());
+            List<DayOfWeekCost> expected = new MeterReadingCostService(sequentialStore, accountService, sequentialPricePlans,
+                    new SimpleMeterRegistry()).getDayOfWeekCost(smartMeterId);
+
+            assertThat(meterReadingCostService.getDayOfWeekCost(smartMeterId)).usingRecursiveComparison().isEqualTo(expected);
+        } finally {
+            sequentialStore.shutdown();
+        }
+    }
+
+    @Test
+    public void givenTheSameBatchRetriedByEveryWriterShouldStoreItOnce() throws InterruptedException {
+        String smartMeterId = meterId(0);
+        // fewer batches than a meter remembers keys of, so no retry comes after its key was forgotten
+        int batches = 50;
+        runConcurrently(writer -> {
+            for (int batch = 0; batch < batches; batch++) {
+                // a retry carries the same key but, being resent later, fresh timestamps
+                List<ElectricityReading> readings = List.of(reading((long) batch * WRITERS + writer));
+                meterReadingService.storeReadings(smartMeterId, readings, "batch-" + batch);
+            }
+        }, () -> { });
+
+        assertThat(meterReadingService.getReadingWindow(smartMeterId).get().getCount()).isEqualTo(batches);
+    }
+
+    /**
+     * Starts the writers and readers together, stops the readers once every writer is done and fails with the first
+     * error any of them hit.
+     */
+    private void runConcurrently(WriterTask writerTask, Runnable readerTask) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> writers = new ArrayList<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int writer = 0; writer < WRITERS; writer++) {
+            int thisWriter = writer;
+            writers.add(startThread(start, () -> writerTask.write(thisWriter)));
+        }
+        for (int reader = 0; reader < READERS; reader++) {
+            readers.add(startThread(start, readerTask));
+        }
+        start.countDown();
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        readers.forEach(Thread::interrupt);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertThat(failures).isEmpty();
+    }
+
+    private Thread startThread(CountDownLatch start, Runnable task) {
+        Thread thread = new Thread(() -> {
+            try {
+                start.await();
+                task.run();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                failures.add(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    // the plans' unit rates are 10, 2 and 1, and every meter uses 1 kWh per hour
+    private static void assertCostsOfTheSameWholeHours(Map<String, BigDecimal> costs) {
+        BigDecimal hours = costs.get("price-plan-2");
+        assertThat(hours.stripTrailingZeros().scale()).isLessThanOrEqualTo(0);
+        assertThat(costs.get("price-plan-1")).isEqualByComparingTo(hours.multiply(BigDecimal.valueOf(2)));
+        assertThat(costs.get("price-plan-0")).isEqualByComparingTo(hours.multiply(BigDecimal.TEN));
+    }
+
+    private static ElectricityReading reading(long hoursAfterStart) {
+        return new ElectricityReading(START.plus(Duration.ofHours(hoursAfterStart)), BigDecimal.ONE);
+    }
+
+    private static String meterId(int meter) {
+        return "stress-meter-" + meter;
+    }
+
+    @FunctionalInterface
+    private interface WriterTask {
+        void write(int writer);
+    }
+}